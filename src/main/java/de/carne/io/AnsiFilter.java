@@ -19,66 +19,20 @@ package de.carne.io;
 import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.function.IntFunction;
 
 import org.eclipse.jdt.annotation.Nullable;
 
 /**
  * {@linkplain Writer} implementation used to remove ANSI escape codes from output (e.g. to write color enriched output
  * to a dumb terminal).
+ * <p>
+ * Escape free runs of characters are passed to the underlying {@linkplain Writer} with a single write call.
+ *
+ * @see AnsiFilterOutputStream
  */
 public class AnsiFilter extends FilterWriter {
 
-	private enum State {
-
-		STANDARD(State::standardState),
-
-		ESC(State::escState),
-
-		UNKNOWN_ESC(State::finalState),
-
-		CSI(State::csiOrParameterState),
-
-		PARAMETER(State::csiOrParameterState),
-
-		INTERMEDIATE(State::intermediateState),
-
-		FINAL(State::finalState);
-
-		private final IntFunction<State> transition;
-
-		State(IntFunction<State> transition) {
-			this.transition = transition;
-		}
-
-		private static State standardState(int c) {
-			return (c == 0x1b ? ESC : STANDARD);
-		}
-
-		private static State escState(int c) {
-			return (c == 0x9b ? CSI : UNKNOWN_ESC);
-		}
-
-		private static State csiOrParameterState(int c) {
-			return (0x30 <= c && c <= 0x3f ? PARAMETER : intermediateState(c));
-		}
-
-		@SuppressWarnings("java:S3358")
-		private static State intermediateState(int c) {
-			return (0x20 <= c && c <= 0x2f ? INTERMEDIATE : (0x40 <= c && c <= 0x7f ? FINAL : STANDARD));
-		}
-
-		private static State finalState(@SuppressWarnings("unused") int c) {
-			return STANDARD;
-		}
-
-		public State apply(int c) {
-			return this.transition.apply(c);
-		}
-
-	}
-
-	private State state = State.STANDARD;
+	private int state = AnsiStateMachine.STATE_STANDARD;
 
 	/**
 	 * Constructs a new {@linkplain AnsiFilter} instance.
@@ -91,107 +45,104 @@ public class AnsiFilter extends FilterWriter {
 
 	@Override
 	public void write(int c) throws IOException {
-		this.state = this.state.apply(c);
-		if (this.state == State.STANDARD) {
-			super.write(c);
-		} else if (this.state == State.UNKNOWN_ESC) {
-			super.write(0x1b);
+		int transition = AnsiStateMachine.transition(AnsiStateMachine.CHAR_TRANSITIONS, this.state, c);
+		int action = AnsiStateMachine.action(transition);
+
+		this.state = AnsiStateMachine.state(transition);
+		if (action != AnsiStateMachine.ACTION_DROP) {
+			writeActionPrefix(action);
 			super.write(c);
-			this.state = State.STANDARD;
 		}
 	}
 
-	@SuppressWarnings("java:S3776")
 	@Override
 	public void write(char @Nullable [] cbuf, int off, int len) throws IOException {
 		if (cbuf != null) {
-			boolean standardState = this.state == State.STANDARD;
-			int writeOff1 = off;
-			int writeOff2 = off;
-			int offLimit = off + len;
-
-			while (writeOff2 < offLimit) {
-				char c = cbuf[writeOff2];
-
-				this.state = this.state.apply(c);
-				if (this.state == State.STANDARD) {
-					if (!standardState) {
-						writeOff1 = writeOff2;
-						standardState = true;
+			int position = off;
+			int limit = off + len;
+
+			while (position < limit) {
+				if (this.state == AnsiStateMachine.STATE_STANDARD) {
+					int runStart = position;
+
+					while (position < limit && cbuf[position] != AnsiStateMachine.ESC) {
+						position++;
+					}
+					if (runStart < position) {
+						super.write(cbuf, runStart, position - runStart);
 					}
-				} else if (this.state == State.UNKNOWN_ESC) {
-					super.write(0x1b);
-					this.state = State.STANDARD;
-					writeOff1 = writeOff2;
-					standardState = true;
-				} else if (standardState) {
-					if (writeOff1 < writeOff2) {
-						super.write(cbuf, writeOff1, writeOff2 - writeOff1);
-						writeOff1 = writeOff2;
+					if (position < limit) {
+						this.state = AnsiStateMachine.STATE_ESC;
+						position++;
 					}
-					writeOff1++;
-					standardState = false;
 				} else {
-					writeOff1++;
+					position = writeEscapeChar(cbuf[position], position);
 				}
-				writeOff2++;
-			}
-			if (standardState && writeOff1 < offLimit) {
-				super.write(cbuf, writeOff1, offLimit - writeOff1);
 			}
 		} else {
 			super.write(cbuf, off, len);
 		}
 	}
 
-	@SuppressWarnings("java:S3776")
 	@Override
 	public void write(@Nullable String str, int off, int len) throws IOException {
 		if (str != null) {
-			boolean standardState = this.state == State.STANDARD;
-			int writeOff1 = off;
-			int writeOff2 = off;
-			int offLimit = off + len;
-
-			while (writeOff2 < offLimit) {
-				char c = str.charAt(writeOff2);
-
-				this.state = this.state.apply(c);
-				if (this.state == State.STANDARD) {
-					if (!standardState) {
-						writeOff1 = writeOff2;
-						standardState = true;
+			int position = off;
+			int limit = off + len;
+
+			while (position < limit) {
+				if (this.state == AnsiStateMachine.STATE_STANDARD) {
+					int runStart = position;
+
+					while (position < limit && str.charAt(position) != AnsiStateMachine.ESC) {
+						position++;
 					}
-				} else if (this.state == State.UNKNOWN_ESC) {
-					super.write(0x1b);
-					this.state = State.STANDARD;
-					writeOff1 = writeOff2;
-					standardState = true;
-				} else if (standardState) {
-					if (writeOff1 < writeOff2) {
-						super.write(str, writeOff1, writeOff2 - writeOff1);
-						writeOff1 = writeOff2;
+					if (runStart < position) {
+						super.write(str, runStart, position - runStart);
+					}
+					if (position < limit) {
+						this.state = AnsiStateMachine.STATE_ESC;
+						position++;
 					}
-					writeOff1++;
-					standardState = false;
 				} else {
-					writeOff1++;
+					position = writeEscapeChar(str.charAt(position), position);
 				}
-				writeOff2++;
-			}
-			if (standardState && writeOff1 < offLimit) {
-				super.write(str, writeOff1, offLimit - writeOff1);
 			}
 		} else {
 			super.write(str, off, len);
 		}
 	}
 
+	private int writeEscapeChar(char c, int position) throws IOException {
+		int transition = AnsiStateMachine.transition(AnsiStateMachine.CHAR_TRANSITIONS, this.state, c);
+		int action = AnsiStateMachine.action(transition);
+		int nextPosition = position;
+
+		this.state = AnsiStateMachine.state(transition);
+		if (action == AnsiStateMachine.ACTION_DROP) {
+			nextPosition++;
+		} else {
+			writeActionPrefix(action);
+			// Emitted characters are written as part of the following standard run (except ESC which is literal here)
+			if (c == AnsiStateMachine.ESC) {
+				super.write(c);
+				nextPosition++;
+			}
+		}
+		return nextPosition;
+	}
+
+	private void writeActionPrefix(int action) throws IOException {
+		if (action == AnsiStateMachine.ACTION_EMIT_ESC) {
+			super.write(AnsiStateMachine.ESC);
+		}
+	}
+
 	@Override
 	public void flush() throws IOException {
-		if (this.state == State.ESC) {
-			super.write(0x1b);
-			this.state = State.STANDARD;
+		if (this.state == AnsiStateMachine.STATE_ESC) {
+			super.write(AnsiStateMachine.ESC);
+			this.state = AnsiStateMachine.STATE_STANDARD;
 		}
 		super.flush();
 	}
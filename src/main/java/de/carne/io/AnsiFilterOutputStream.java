@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * {@linkplain OutputStream} implementation used to remove ANSI escape codes from UTF-8 encoded output.
+ * <p>
+ * The filter operates directly on the encoded bytes and removes the same escape sequences as {@linkplain AnsiFilter}
+ * (the CSI character {@code 0x9b} is recognized in it's UTF-8 encoded form {@code 0xc2 0x9b} as well as in it's raw
+ * form). Escape free runs of bytes are passed to the underlying {@linkplain OutputStream} with a single write call.
+ */
+public class AnsiFilterOutputStream extends FilterOutputStream {
+
+	private int state = AnsiStateMachine.STATE_STANDARD;
+
+	/**
+	 * Constructs a new {@linkplain AnsiFilterOutputStream} instance.
+	 *
+	 * @param out the {@linkplain OutputStream} instance to write to.
+	 */
+	public AnsiFilterOutputStream(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		int transition = AnsiStateMachine.transition(AnsiStateMachine.UTF8_TRANSITIONS, this.state, b & 0xff);
+		int action = AnsiStateMachine.action(transition);
+
+		this.state = AnsiStateMachine.state(transition);
+		if (action != AnsiStateMachine.ACTION_DROP) {
+			writeActionPrefix(action);
+			this.out.write(b);
+		}
+	}
+
+	@SuppressWarnings("null")
+	@Override
+	public void write(byte @Nullable [] b) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	@SuppressWarnings("null")
+	@Override
+	public void write(byte @Nullable [] b, int off, int len) throws IOException {
+		int position = off;
+		int limit = off + len;
+
+		while (position < limit) {
+			if (this.state == AnsiStateMachine.STATE_STANDARD) {
+				int runStart = position;
+
+				while (position < limit && b[position] != AnsiStateMachine.ESC) {
+					position++;
+				}
+				if (runStart < position) {
+					this.out.write(b, runStart, position - runStart);
+				}
+				if (position < limit) {
+					this.state = AnsiStateMachine.STATE_ESC;
+					position++;
+				}
+			} else {
+				position = writeEscapeByte(b[position] & 0xff, position);
+			}
+		}
+	}
+
+	private int writeEscapeByte(int b, int position) throws IOException {
+		int transition = AnsiStateMachine.transition(AnsiStateMachine.UTF8_TRANSITIONS, this.state, b);
+		int action = AnsiStateMachine.action(transition);
+		int nextPosition = position;
+
+		this.state = AnsiStateMachine.state(transition);
+		if (action == AnsiStateMachine.ACTION_DROP) {
+			nextPosition++;
+		} else {
+			writeActionPrefix(action);
+			// Emitted bytes are written as part of the following standard run (except ESC which is literal here)
+			if (b == AnsiStateMachine.ESC) {
+				this.out.write(b);
+				nextPosition++;
+			}
+		}
+		return nextPosition;
+	}
+
+	private void writeActionPrefix(int action) throws IOException {
+		if (action == AnsiStateMachine.ACTION_EMIT_ESC) {
+			this.out.write(AnsiStateMachine.ESC);
+		} else if (action == AnsiStateMachine.ACTION_EMIT_ESC_UTF8_LEAD) {
+			this.out.write(AnsiStateMachine.ESC);
+			this.out.write(AnsiStateMachine.CSI_UTF8_LEAD);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (this.state == AnsiStateMachine.STATE_ESC) {
+			this.out.write(AnsiStateMachine.ESC);
+			this.state = AnsiStateMachine.STATE_STANDARD;
+		} else if (this.state == AnsiStateMachine.STATE_ESC_UTF8_LEAD) {
+			this.out.write(AnsiStateMachine.ESC);
+			this.out.write(AnsiStateMachine.CSI_UTF8_LEAD);
+			this.state = AnsiStateMachine.STATE_STANDARD;
+		}
+		super.flush();
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+/**
+ * Table driven state machine used to detect and remove ANSI escape sequences (see {@linkplain AnsiFilter} and
+ * {@linkplain AnsiFilterOutputStream}).
+ * <p>
+ * Each table entry combines the next state and the output action to perform for the current state and input
+ * character. Characters beyond {@code 0xff} are mapped to {@code 0xff} (which has no special meaning in any state).
+ */
+final class AnsiStateMachine {
+
+	private AnsiStateMachine() {
+		// Prevent instantiation
+	}
+
+	static final int ESC = 0x1b;
+	static final int CSI = 0x9b;
+	static final int CSI_UTF8_LEAD = 0xc2;
+
+	static final int STATE_STANDARD = 0;
+	static final int STATE_ESC = 1;
+	static final int STATE_CSI = 2;
+	static final int STATE_INTERMEDIATE = 3;
+	static final int STATE_FINAL = 4;
+	static final int STATE_ESC_UTF8_LEAD = 5;
+
+	private static final int STATE_COUNT = 6;
+	private static final int STATE_MASK = 0xf;
+
+	static final int ACTION_DROP = 0x00;
+	static final int ACTION_EMIT = 0x10;
+	static final int ACTION_EMIT_ESC = 0x20;
+	static final int ACTION_EMIT_ESC_UTF8_LEAD = 0x30;
+
+	private static final int ACTION_MASK = 0xf0;
+
+	/**
+	 * Transition table for character input.
+	 */
+	static final byte[] CHAR_TRANSITIONS = buildTransitions(false);
+
+	/**
+	 * Transition table for UTF-8 encoded byte input (CSI character {@code 0x9b} is encoded as {@code 0xc2 0x9b}).
+	 */
+	static final byte[] UTF8_TRANSITIONS = buildTransitions(true);
+
+	static int transition(byte[] transitions, int state, int c) {
+		return transitions[(state << 8) | Math.min(c & 0xffff, 0xff)];
+	}
+
+	static int state(int transition) {
+		return transition & STATE_MASK;
+	}
+
+	static int action(int transition) {
+		return transition & ACTION_MASK;
+	}
+
+	private static byte[] buildTransitions(boolean utf8) {
+		byte[] transitions = new byte[STATE_COUNT << 8];
+
+		for (int c = 0; c <= 0xff; c++) {
+			transitions[(STATE_STANDARD << 8) | c] = (byte) (c == ESC ? STATE_ESC | ACTION_DROP
+					: STATE_STANDARD | ACTION_EMIT);
+			transitions[(STATE_ESC << 8) | c] = (byte) escTransition(c, utf8);
+			transitions[(STATE_CSI << 8) | c] = (byte) (0x30 <= c && c <= 0x3f ? STATE_CSI | ACTION_DROP
+					: intermediateTransition(c));
+			transitions[(STATE_INTERMEDIATE << 8) | c] = (byte) intermediateTransition(c);
+			transitions[(STATE_FINAL << 8) | c] = (byte) (STATE_STANDARD | ACTION_EMIT);
+			transitions[(STATE_ESC_UTF8_LEAD << 8) | c] = (byte) (c == CSI ? STATE_CSI | ACTION_DROP
+					: STATE_STANDARD | ACTION_EMIT_ESC_UTF8_LEAD);
+		}
+		return transitions;
+	}
+
+	private static int escTransition(int c, boolean utf8) {
+		int transition;
+
+		if (c == CSI) {
+			transition = STATE_CSI | ACTION_DROP;
+		} else if (utf8 && c == CSI_UTF8_LEAD) {
+			transition = STATE_ESC_UTF8_LEAD | ACTION_DROP;
+		} else {
+			transition = STATE_STANDARD | ACTION_EMIT_ESC;
+		}
+		return transition;
+	}
+
+	@SuppressWarnings("java:S3358")
+	private static int intermediateTransition(int c) {
+		return (0x20 <= c && c <= 0x2f ? STATE_INTERMEDIATE | ACTION_DROP
+				: (0x40 <= c && c <= 0x7f ? STATE_FINAL | ACTION_DROP : STATE_STANDARD | ACTION_EMIT));
+	}
+
+}
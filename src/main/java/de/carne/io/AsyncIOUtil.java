@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Utility class providing asynchronous (non-blocking) I/O functions.
+ * <p>
+ * All functions are based on {@linkplain AsynchronousFileChannel} and report their results via a
+ * {@linkplain CompletableFuture}. No thread is blocked while an I/O operation is pending. The number of concurrently
+ * running operations is bounded by {@linkplain Defaults#MAX_ASYNC_OPERATIONS}. Operations exceeding this limit are
+ * queued and started asynchronously as soon as a running operation completes.
+ * <p>
+ * Cancelling a returned {@linkplain CompletableFuture} only detaches the caller from the result. The underlying
+ * operation is not stopped; it keeps running (and occupying its share of the limit) until it has finished and
+ * released its resources.
+ */
+public final class AsyncIOUtil {
+
+	private AsyncIOUtil() {
+		// Prevent instantiation
+	}
+
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+	private static final int COPY_BUFFER_SIZE = 1 << 16;
+
+	private static final AsyncPermits PERMITS = new AsyncPermits(Defaults.MAX_ASYNC_OPERATIONS);
+
+	/**
+	 * Reads all bytes from a file asynchronously.
+	 *
+	 * @param src the file to read from.
+	 * @return the {@linkplain CompletableFuture} providing the read bytes. Any {@linkplain IOException} completes the
+	 * future exceptionally.
+	 */
+	public static CompletableFuture<byte[]> readAllBytesAsync(Path src) {
+		return submit(new ReadAllBytes(src));
+	}
+
+	/**
+	 * Writes the given buffers to a file asynchronously.
+	 * <p>
+	 * The file is created if it does not exist or truncated if it exists. The remaining bytes of all buffers are
+	 * written in order (the buffers' positions are advanced accordingly).
+	 *
+	 * @param dst the file to write to.
+	 * @param buffers the buffers to write.
+	 * @return the {@linkplain CompletableFuture} providing the number of written bytes. Any {@linkplain IOException}
+	 * completes the future exceptionally.
+	 */
+	public static CompletableFuture<Long> writeAsync(Path dst, ByteBuffer... buffers) {
+		return submit(new Write(dst, buffers));
+	}
+
+	/**
+	 * Copies a file asynchronously.
+	 * <p>
+	 * The target file is created if it does not exist or truncated if it exists. The copy is performed via a pooled
+	 * direct buffer.
+	 *
+	 * @param dst the file to copy to.
+	 * @param src the file to copy from.
+	 * @return the {@linkplain CompletableFuture} providing the number of copied bytes. Any {@linkplain IOException}
+	 * completes the future exceptionally.
+	 */
+	public static CompletableFuture<Long> copyAsync(Path dst, Path src) {
+		return submit(new Copy(dst, src));
+	}
+
+	private static <T> CompletableFuture<T> submit(AsyncOperation<T> operation) {
+		CompletableFuture<@Nullable Void> permit = PERMITS.acquire();
+
+		// A queued operation is started on the releasing thread otherwise; a series of operations failing right away
+		// would then start each other recursively
+		if (permit.isDone()) {
+			operation.start();
+		} else {
+			permit.thenRunAsync(operation::start);
+		}
+		return operation.future().whenComplete((result, exception) -> PERMITS.release());
+	}
+
+	private abstract static class AsyncOperation<T> implements CompletionHandler<Integer, @Nullable Void> {
+
+		private final CompletableFuture<T> future = new CompletableFuture<>();
+
+		CompletableFuture<T> future() {
+			return this.future;
+		}
+
+		void start() {
+			try {
+				open();
+			} catch (IOException | RuntimeException e) {
+				finish(null, e);
+			}
+		}
+
+		@Override
+		public void completed(@Nullable Integer result, @Nullable Void attachment) {
+			try {
+				next(Objects.requireNonNull(result).intValue());
+			} catch (RuntimeException e) {
+				finish(null, e);
+			}
+		}
+
+		@Override
+		public void failed(@Nullable Throwable exc, @Nullable Void attachment) {
+			finish(null, exc);
+		}
+
+		protected abstract void open() throws IOException;
+
+		protected abstract void next(int result);
+
+		protected abstract void close() throws IOException;
+
+		protected void finish(@Nullable T result, @Nullable Throwable exc) {
+			Throwable exception = exc;
+
+			try {
+				close();
+			} catch (IOException e) {
+				if (exception != null) {
+					exception.addSuppressed(e);
+				} else {
+					exception = e;
+				}
+			}
+			if (exception != null) {
+				this.future.completeExceptionally(exception);
+			} else {
+				this.future.complete(result);
+			}
+		}
+
+		protected static void closeChannel(@Nullable AsynchronousFileChannel channel) throws IOException {
+			if (channel != null) {
+				channel.close();
+			}
+		}
+
+	}
+
+	private static final class ReadAllBytes extends AsyncOperation<byte[]> {
+
+		private final Path src;
+		private @Nullable AsynchronousFileChannel srcChannel = null;
+		private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+		ReadAllBytes(Path src) {
+			this.src = src;
+		}
+
+		@Override
+		protected void open() throws IOException {
+			AsynchronousFileChannel channel = AsynchronousFileChannel.open(this.src, StandardOpenOption.READ);
+
+			this.srcChannel = channel;
+
+			long size = channel.size();
+
+			if (size > MAX_ARRAY_SIZE) {
+				throw new IOException("File too large: " + this.src);
+			}
+			this.buffer = ByteBuffer.allocate((int) size);
+			if (this.buffer.hasRemaining()) {
+				channel.read(this.buffer, 0, null, this);
+			} else {
+				finish(this.buffer.array(), null);
+			}
+		}
+
+		@Override
+		protected void next(int result) {
+			AsynchronousFileChannel channel = this.srcChannel;
+
+			if (result >= 0 && this.buffer.hasRemaining() && channel != null) {
+				channel.read(this.buffer, this.buffer.position(), null, this);
+			} else {
+				// File may have been truncated in the meantime
+				finish(Arrays.copyOf(this.buffer.array(), this.buffer.position()), null);
+			}
+		}
+
+		@Override
+		protected void close() throws IOException {
+			closeChannel(this.srcChannel);
+		}
+
+	}
+
+	private static final class Write extends AsyncOperation<Long> {
+
+		private final Path dst;
+		private final ByteBuffer[] buffers;
+		private @Nullable AsynchronousFileChannel dstChannel = null;
+		private int bufferIndex = 0;
+		private long position = 0;
+
+		Write(Path dst, ByteBuffer[] buffers) {
+			this.dst = dst;
+			this.buffers = buffers;
+		}
+
+		@Override
+		protected void open() throws IOException {
+			AsynchronousFileChannel channel = AsynchronousFileChannel.open(this.dst, StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+
+			this.dstChannel = channel;
+			writeNext(channel);
+		}
+
+		@Override
+		protected void next(int result) {
+			this.position += result;
+			writeNext(this.dstChannel);
+		}
+
+		private void writeNext(@Nullable AsynchronousFileChannel channel) {
+			while (this.bufferIndex < this.buffers.length && !this.buffers[this.bufferIndex].hasRemaining()) {
+				this.bufferIndex++;
+			}
+			if (this.bufferIndex < this.buffers.length && channel != null) {
+				channel.write(this.buffers[this.bufferIndex], this.position, null, this);
+			} else {
+				finish(this.position, null);
+			}
+		}
+
+		@Override
+		protected void close() throws IOException {
+			closeChannel(this.dstChannel);
+		}
+
+	}
+
+	private static final class Copy extends AsyncOperation<Long> {
+
+		private final Path dst;
+		private final Path src;
+		private @Nullable AsynchronousFileChannel srcChannel = null;
+		private @Nullable AsynchronousFileChannel dstChannel = null;
+		private @Nullable ByteBuffer buffer = null;
+		private boolean reading = true;
+		private long readPosition = 0;
+		private long writePosition = 0;
+
+		Copy(Path dst, Path src) {
+			this.dst = dst;
+			this.src = src;
+		}
+
+		@Override
+		protected void open() throws IOException {
+			AsynchronousFileChannel openedSrcChannel = AsynchronousFileChannel.open(this.src, StandardOpenOption.READ);
+
+			this.srcChannel = openedSrcChannel;
+			this.dstChannel = AsynchronousFileChannel.open(this.dst, StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+
+			ByteBuffer copyBuffer = BufferPool.DIRECT.acquire(COPY_BUFFER_SIZE);
+
+			this.buffer = copyBuffer;
+			openedSrcChannel.read(copyBuffer, this.readPosition, null, this);
+		}
+
+		@Override
+		protected void next(int result) {
+			ByteBuffer copyBuffer = this.buffer;
+			AsynchronousFileChannel checkedSrcChannel = this.srcChannel;
+			AsynchronousFileChannel checkedDstChannel = this.dstChannel;
+
+			if (copyBuffer == null || checkedSrcChannel == null || checkedDstChannel == null) {
+				throw new IllegalStateException("Copy not started");
+			}
+			if (this.reading) {
+				if (result < 0) {
+					finish(this.writePosition, null);
+				} else {
+					this.readPosition += result;
+					this.reading = false;
+					copyBuffer.flip();
+					checkedDstChannel.write(copyBuffer, this.writePosition, null, this);
+				}
+			} else {
+				this.writePosition += result;
+				if (copyBuffer.hasRemaining()) {
+					checkedDstChannel.write(copyBuffer, this.writePosition, null, this);
+				} else {
+					this.reading = true;
+					copyBuffer.clear();
+					checkedSrcChannel.read(copyBuffer, this.readPosition, null, this);
+				}
+			}
+		}
+
+		@Override
+		protected void close() throws IOException {
+			ByteBuffer copyBuffer = this.buffer;
+
+			if (copyBuffer != null) {
+				this.buffer = null;
+				BufferPool.DIRECT.release(copyBuffer);
+			}
+			try {
+				closeChannel(this.srcChannel);
+			} finally {
+				closeChannel(this.dstChannel);
+			}
+		}
+
+	}
+
+}
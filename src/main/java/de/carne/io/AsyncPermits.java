@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Non-blocking counting semaphore used to bound the number of concurrently running asynchronous operations.
+ * <p>
+ * Instead of blocking the acquiring thread, {@linkplain #acquire()} returns a {@linkplain CompletableFuture} which is
+ * completed as soon as a permit becomes available.
+ */
+final class AsyncPermits {
+
+	private final Queue<CompletableFuture<@Nullable Void>> waiters = new ArrayDeque<>();
+	private int available;
+
+	AsyncPermits(int permits) {
+		this.available = permits;
+	}
+
+	synchronized CompletableFuture<@Nullable Void> acquire() {
+		CompletableFuture<@Nullable Void> permit;
+
+		if (this.available > 0) {
+			this.available--;
+			permit = CompletableFuture.completedFuture(null);
+		} else {
+			permit = new CompletableFuture<>();
+			this.waiters.add(permit);
+		}
+		return permit;
+	}
+
+	void release() {
+		CompletableFuture<@Nullable Void> waiter;
+
+		synchronized (this) {
+			waiter = this.waiters.poll();
+			if (waiter == null) {
+				this.available++;
+			}
+		}
+		// Hand over the permit outside the lock, as completing the future triggers the waiting operation
+		if (waiter != null) {
+			waiter.complete(null);
+		}
+	}
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Pool of reusable {@linkplain ByteBuffer}s used to avoid buffer allocation for short lived I/O operations.
+ * <p>
+ * Pooled buffer capacities are powers of two ranging from {@linkplain Defaults#DEFAULT_BUFFER_SIZE} to
+ * {@linkplain Defaults#MAX_BUFFER_SIZE}. Released buffers are first cached thread locally and then in a lock-free
+ * shared free list. Requests exceeding {@linkplain Defaults#MAX_BUFFER_SIZE} are served by a plain allocation and are
+ * not pooled.
+ * <p>
+ * A buffer must be released at most once per acquisition and must not be accessed anymore after it has been released.
+ * Only buffers allocated by the pool itself are taken back. Foreign buffers (e.g. wrapped arrays or slices of a pooled
+ * buffer) as well as repeated releases of the same buffer are ignored.
+ */
+public final class BufferPool {
+
+	// Upper bound for the number of bytes retained in the shared free list per capacity class
+	private static final long SHARED_CLASS_BYTES = 2l * Defaults.MAX_BUFFER_SIZE;
+	private static final int SHARED_CLASS_BUFFERS = 64;
+
+	private static final int MIN_CAPACITY_SHIFT = capacityShift(Defaults.DEFAULT_BUFFER_SIZE);
+	private static final int CLASS_COUNT = Math.max(capacityShift(Defaults.MAX_BUFFER_SIZE) - MIN_CAPACITY_SHIFT, 0)
+			+ 1;
+
+	/**
+	 * {@linkplain BufferPool} instance providing heap buffers (which are backed by an accessible array).
+	 */
+	public static final BufferPool HEAP = new BufferPool(false);
+
+	/**
+	 * {@linkplain BufferPool} instance providing direct buffers.
+	 */
+	public static final BufferPool DIRECT = new BufferPool(true);
+
+	private final boolean direct;
+	private final ThreadLocal<@Nullable ByteBuffer[]> localCache;
+	private final SharedFreeList[] sharedFreeLists = new SharedFreeList[CLASS_COUNT];
+	private final BufferRegistry registry = new BufferRegistry();
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+
+	private BufferPool(boolean direct) {
+		this.direct = direct;
+		this.localCache = ThreadLocal.withInitial(() -> new @Nullable ByteBuffer[CLASS_COUNT]);
+		for (int classIndex = 0; classIndex < CLASS_COUNT; classIndex++) {
+			int classCapacity = classCapacity(classIndex);
+
+			this.sharedFreeLists[classIndex] = new SharedFreeList(
+					(int) Math.max(Math.min(SHARED_CLASS_BYTES / classCapacity, SHARED_CLASS_BUFFERS), 1));
+		}
+	}
+
+	private static int capacityShift(int capacity) {
+		return Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(capacity, 1) - 1);
+	}
+
+	private static int classCapacity(int classIndex) {
+		return 1 << (MIN_CAPACITY_SHIFT + classIndex);
+	}
+
+	/**
+	 * Checks whether this pool provides direct buffers.
+	 *
+	 * @return {@code true} if this pool provides direct buffers.
+	 */
+	public boolean isDirect() {
+		return this.direct;
+	}
+
+	/**
+	 * Acquires a buffer with the default capacity {@linkplain Defaults#DEFAULT_BUFFER_SIZE}.
+	 *
+	 * @return the acquired buffer.
+	 * @see #acquire(int)
+	 */
+	public ByteBuffer acquire() {
+		return acquire(Defaults.DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Acquires a buffer with at least the requested capacity.
+	 * <p>
+	 * The returned buffer is cleared (position {@code 0} and limit equal to it's capacity), uses
+	 * {@linkplain ByteOrder#BIG_ENDIAN} byte order and should be released via {@linkplain #release(ByteBuffer)} as soon
+	 * as it is no longer needed.
+	 *
+	 * @param capacity the minimum capacity of the buffer to acquire.
+	 * @return the acquired buffer.
+	 */
+	public ByteBuffer acquire(int capacity) {
+		int classIndex = Math.max(capacityShift(capacity) - MIN_CAPACITY_SHIFT, 0);
+		ByteBuffer buffer;
+
+		if (classIndex < CLASS_COUNT) {
+			@Nullable ByteBuffer[] localBuffers = this.localCache.get();
+			ByteBuffer pooledBuffer = localBuffers[classIndex];
+
+			if (pooledBuffer != null) {
+				localBuffers[classIndex] = null;
+			} else {
+				pooledBuffer = this.sharedFreeLists[classIndex].poll();
+			}
+			if (pooledBuffer != null) {
+				this.hitCount.increment();
+				buffer = pooledBuffer;
+				buffer.clear().order(ByteOrder.BIG_ENDIAN);
+				this.registry.markAcquired(buffer);
+			} else {
+				this.missCount.increment();
+				buffer = allocate(classCapacity(classIndex));
+				this.registry.register(buffer);
+			}
+		} else {
+			this.missCount.increment();
+			buffer = allocate(capacity);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Releases a previously acquired buffer and makes it available for re-use.
+	 * <p>
+	 * Buffers not allocated by this pool (including oversized buffers and slices or duplicates of pooled buffers) as
+	 * well as buffers already released are silently discarded.
+	 *
+	 * @param buffer the buffer to release.
+	 */
+	public void release(ByteBuffer buffer) {
+		int classIndex = capacityShift(buffer.capacity()) - MIN_CAPACITY_SHIFT;
+
+		if (0 <= classIndex && classIndex < CLASS_COUNT && this.registry.markPooled(buffer)) {
+			@Nullable ByteBuffer[] localBuffers = this.localCache.get();
+
+			if (localBuffers[classIndex] == null) {
+				localBuffers[classIndex] = buffer;
+			} else {
+				this.sharedFreeLists[classIndex].offer(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of {@linkplain #acquire(int)} calls served by a pooled buffer.
+	 *
+	 * @return the number of {@linkplain #acquire(int)} calls served by a pooled buffer.
+	 */
+	public long hitCount() {
+		return this.hitCount.sum();
+	}
+
+	/**
+	 * Gets the number of {@linkplain #acquire(int)} calls served by allocating a new buffer.
+	 *
+	 * @return the number of {@linkplain #acquire(int)} calls served by allocating a new buffer.
+	 */
+	public long missCount() {
+		return this.missCount.sum();
+	}
+
+	private ByteBuffer allocate(int capacity) {
+		return (this.direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity));
+	}
+
+	@Override
+	public String toString() {
+		return (this.direct ? "DIRECT" : "HEAP") + " (hits: " + hitCount() + " misses: " + missCount() + ")";
+	}
+
+	// Weak identity registry of the buffers allocated by a pool and their pooled state
+	private static class BufferRegistry {
+
+		private final Map<BufferKey, AtomicBoolean> buffers = new ConcurrentHashMap<>();
+		private final ReferenceQueue<ByteBuffer> staleKeys = new ReferenceQueue<>();
+
+		void register(ByteBuffer buffer) {
+			Reference<? extends ByteBuffer> staleKey;
+
+			while ((staleKey = this.staleKeys.poll()) != null) {
+				this.buffers.remove(staleKey);
+			}
+			this.buffers.put(new BufferKey(buffer, this.staleKeys), new AtomicBoolean(false));
+		}
+
+		boolean markPooled(ByteBuffer buffer) {
+			AtomicBoolean pooled = this.buffers.get(new BufferKey(buffer, null));
+
+			return pooled != null && pooled.compareAndSet(false, true);
+		}
+
+		void markAcquired(ByteBuffer buffer) {
+			AtomicBoolean pooled = this.buffers.get(new BufferKey(buffer, null));
+
+			if (pooled != null) {
+				pooled.set(false);
+			}
+		}
+
+	}
+
+	private static class BufferKey extends WeakReference<ByteBuffer> {
+
+		private final int hash;
+
+		BufferKey(ByteBuffer buffer, @Nullable ReferenceQueue<ByteBuffer> queue) {
+			super(buffer, queue);
+			this.hash = System.identityHashCode(buffer);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(@Nullable Object obj) {
+			return this == obj || (obj instanceof BufferKey && get() != null && get() == ((BufferKey) obj).get());
+		}
+
+	}
+
+	private static class SharedFreeList {
+
+		private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger size = new AtomicInteger();
+		private final int maxSize;
+
+		SharedFreeList(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		@Nullable
+		ByteBuffer poll() {
+			ByteBuffer buffer = this.buffers.poll();
+
+			if (buffer != null) {
+				this.size.decrementAndGet();
+			}
+			return buffer;
+		}
+
+		void offer(ByteBuffer buffer) {
+			if (this.size.incrementAndGet() <= this.maxSize) {
+				this.buffers.offer(buffer);
+			} else {
+				this.size.decrementAndGet();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.util.ByteString;
+import de.carne.util.Check;
+
+/**
+ * Builder for incrementally creating a {@linkplain ByteString}.
+ * <p>
+ * The written bytes are collected in chunks acquired from {@linkplain BufferPool#HEAP}. The chunk size starts with
+ * {@linkplain Defaults#DEFAULT_BUFFER_SIZE} and doubles with every further chunk up to
+ * {@linkplain Defaults#MAX_BUFFER_SIZE}. {@linkplain #toByteString()} hands over the filled chunks to the returned
+ * {@linkplain ByteString} without copying them (only small results are copied into an array of exact size).
+ * <p>
+ * Besides the {@linkplain OutputStream} and {@linkplain WritableByteChannel} write methods the builder provides
+ * allocation free append methods for primitive values in big- and little-endian byte order.
+ * <p>
+ * Closing the builder only affects the {@linkplain OutputStream} and {@linkplain WritableByteChannel} write methods.
+ * The append methods and {@linkplain #toByteString()} remain usable. Instances are not thread-safe.
+ */
+public class ByteStringBuilder extends OutputStream implements WritableByteChannel {
+
+	// Results up to this length are copied to avoid retaining a mostly unused chunk
+	private static final int COPY_THRESHOLD = 1024;
+
+	private final List<ByteString> segments = new ArrayList<>();
+	private final List<ByteBuffer> sealedChunks = new ArrayList<>();
+	private long sealedLength = 0;
+	private @Nullable ByteBuffer chunk = null;
+	private int chunkStart = 0;
+	private int nextChunkSize = Defaults.DEFAULT_BUFFER_SIZE;
+	private boolean shared = false;
+	private boolean open = true;
+
+	/**
+	 * Gets the number of bytes appended so far.
+	 *
+	 * @return the number of bytes appended so far.
+	 */
+	public long length() {
+		ByteBuffer checkedChunk = this.chunk;
+
+		return this.sealedLength + (checkedChunk != null ? checkedChunk.position() - this.chunkStart : 0);
+	}
+
+	/**
+	 * Gets the total capacity of the chunks currently retained by this builder.
+	 * <p>
+	 * Chunks handed over to a {@linkplain ByteString} via {@linkplain #toByteString()} are not counted anymore after
+	 * {@linkplain #reset()}.
+	 *
+	 * @return the total capacity of the chunks currently retained by this builder.
+	 */
+	public long capacity() {
+		ByteBuffer checkedChunk = this.chunk;
+		long capacity = (checkedChunk != null ? checkedChunk.capacity() : 0);
+
+		for (ByteBuffer sealedChunk : this.sealedChunks) {
+			capacity += sealedChunk.capacity();
+		}
+		return capacity;
+	}
+
+	/**
+	 * Appends a single byte.
+	 *
+	 * @param b the byte to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder append(byte b) {
+		ensureRemaining(Byte.BYTES).put(b);
+		return this;
+	}
+
+	/**
+	 * Appends the given bytes.
+	 *
+	 * @param bytes the bytes to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder append(byte[] bytes) {
+		return append(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Appends the given bytes.
+	 *
+	 * @param bytes the bytes to append.
+	 * @param off the index of the first byte to append.
+	 * @param len the number of bytes to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder append(byte[] bytes, int off, int len) {
+		Objects.checkFromIndexSize(off, len, bytes.length);
+
+		int appendOff = off;
+		int appendLen = len;
+
+		while (appendLen > 0) {
+			ByteBuffer appendChunk = ensureRemaining(1);
+			int chunkLen = Math.min(appendLen, appendChunk.remaining());
+
+			appendChunk.put(bytes, appendOff, chunkLen);
+			appendOff += chunkLen;
+			appendLen -= chunkLen;
+		}
+		return this;
+	}
+
+	/**
+	 * Appends the remaining bytes of the given {@linkplain ByteBuffer}.
+	 * <p>
+	 * The buffer's position is advanced to it's limit.
+	 *
+	 * @param buffer the {@linkplain ByteBuffer} to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder append(ByteBuffer buffer) {
+		while (buffer.hasRemaining()) {
+			ByteBuffer appendChunk = ensureRemaining(1);
+
+			if (buffer.remaining() <= appendChunk.remaining()) {
+				appendChunk.put(buffer);
+			} else {
+				ByteBuffer source = buffer.duplicate();
+
+				source.limit(source.position() + appendChunk.remaining());
+				appendChunk.put(source);
+				buffer.position(source.position());
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Appends the given {@linkplain ByteString}.
+	 * <p>
+	 * Byte strings larger than the internal copy threshold are not copied but referenced directly. Subsequent appends
+	 * continue in the current chunk.
+	 *
+	 * @param byteString the {@linkplain ByteString} to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder append(ByteString byteString) {
+		if (byteString.length() <= COPY_THRESHOLD) {
+			for (ByteBuffer buffer : byteString.asByteBuffers()) {
+				append(buffer);
+			}
+		} else {
+			sealChunkRegion();
+			this.segments.add(byteString);
+			this.sealedLength += byteString.length();
+		}
+		return this;
+	}
+
+	/**
+	 * Appends a {@code short} value in big-endian byte order.
+	 *
+	 * @param value the value to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder appendShort(short value) {
+		ensureRemaining(Short.BYTES).putShort(value);
+		return this;
+	}
+
+	/**
+	 * Appends a {@code short} value in little-endian byte order.
+	 *
+	 * @param value the value to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder appendShortLE(short value) {
+		ensureRemaining(Short.BYTES).putShort(Short.reverseBytes(value));
+		return this;
+	}
+
+	/**
+	 * Appends an {@code int} value in big-endian byte order.
+	 *
+	 * @param value the value to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder appendInt(int value) {
+		ensureRemaining(Integer.BYTES).putInt(value);
+		return this;
+	}
+
+	/**
+	 * Appends an {@code int} value in little-endian byte order.
+	 *
+	 * @param value the value to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder appendIntLE(int value) {
+		ensureRemaining(Integer.BYTES).putInt(Integer.reverseBytes(value));
+		return this;
+	}
+
+	/**
+	 * Appends a {@code long} value in big-endian byte order.
+	 *
+	 * @param value the value to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder appendLong(long value) {
+		ensureRemaining(Long.BYTES).putLong(value);
+		return this;
+	}
+
+	/**
+	 * Appends a {@code long} value in little-endian byte order.
+	 *
+	 * @param value the value to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder appendLongLE(long value) {
+		ensureRemaining(Long.BYTES).putLong(Long.reverseBytes(value));
+		return this;
+	}
+
+	/**
+	 * Appends a {@code float} value in big-endian byte order.
+	 *
+	 * @param value the value to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder appendFloat(float value) {
+		return appendInt(Float.floatToRawIntBits(value));
+	}
+
+	/**
+	 * Appends a {@code float} value in little-endian byte order.
+	 *
+	 * @param value the value to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder appendFloatLE(float value) {
+		return appendIntLE(Float.floatToRawIntBits(value));
+	}
+
+	/**
+	 * Appends a {@code double} value in big-endian byte order.
+	 *
+	 * @param value the value to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder appendDouble(double value) {
+		return appendLong(Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * Appends a {@code double} value in little-endian byte order.
+	 *
+	 * @param value the value to append.
+	 * @return the updated builder.
+	 */
+	public ByteStringBuilder appendDoubleLE(double value) {
+		return appendLongLE(Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * Gets a {@linkplain ByteString} containing all bytes appended so far.
+	 * <p>
+	 * The builder may be used for further appends afterwards. Already returned byte strings are not affected by this.
+	 *
+	 * @return a {@linkplain ByteString} containing all bytes appended so far.
+	 */
+	public ByteString toByteString() {
+		long length = length();
+
+		Check.isTrue(length <= Integer.MAX_VALUE, "Builder length exceeds maximum: {0}", length);
+
+		ByteString byteString;
+
+		if (length <= COPY_THRESHOLD) {
+			byte[] bytes = new byte[(int) length];
+			int bytesPos = 0;
+
+			for (ByteString segment : this.segments) {
+				segment.copyTo(bytes, bytesPos);
+				bytesPos += segment.length();
+			}
+
+			ByteBuffer checkedChunk = this.chunk;
+
+			if (checkedChunk != null) {
+				System.arraycopy(checkedChunk.array(), checkedChunk.arrayOffset() + this.chunkStart, bytes, bytesPos,
+						checkedChunk.position() - this.chunkStart);
+			}
+			byteString = ByteString.wrap(bytes);
+		} else {
+			sealChunkRegion();
+			this.shared = true;
+			byteString = ByteString.concat(this.segments.toArray(new ByteString[this.segments.size()]));
+		}
+		return byteString;
+	}
+
+	/**
+	 * Discards all bytes appended so far.
+	 * <p>
+	 * Chunks which have not been handed over to a {@linkplain ByteString} via {@linkplain #toByteString()} are re-used
+	 * or released to the pool.
+	 */
+	public void reset() {
+		ByteBuffer checkedChunk = this.chunk;
+
+		if (!this.shared) {
+			for (ByteBuffer sealedChunk : this.sealedChunks) {
+				BufferPool.HEAP.release(sealedChunk);
+			}
+			if (checkedChunk != null) {
+				checkedChunk.clear();
+			}
+		} else {
+			this.chunk = null;
+		}
+		this.segments.clear();
+		this.sealedChunks.clear();
+		this.sealedLength = 0;
+		this.chunkStart = 0;
+		this.shared = false;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		append((byte) b);
+	}
+
+	@Override
+	public void write(byte @Nullable [] b, int off, int len) throws IOException {
+		ensureOpen();
+		append(Objects.requireNonNull(b), off, len);
+	}
+
+	@Override
+	public int write(@Nullable ByteBuffer src) throws IOException {
+		ensureOpen();
+
+		ByteBuffer checkedSrc = Objects.requireNonNull(src);
+		int written = checkedSrc.remaining();
+
+		append(checkedSrc);
+		return written;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return this.open;
+	}
+
+	@Override
+	public void close() {
+		this.open = false;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " (length: " + length() + ")";
+	}
+
+	private void ensureOpen() throws ClosedChannelException {
+		if (!this.open) {
+			throw new ClosedChannelException();
+		}
+	}
+
+	private ByteBuffer ensureRemaining(int required) {
+		ByteBuffer checkedChunk = this.chunk;
+
+		if (checkedChunk == null || checkedChunk.remaining() < required) {
+			sealChunk();
+			// The primitive value appends rely on big-endian order
+			checkedChunk = BufferPool.HEAP.acquire(this.nextChunkSize).order(ByteOrder.BIG_ENDIAN);
+			this.nextChunkSize = Math.min(this.nextChunkSize << 1, Defaults.MAX_BUFFER_SIZE);
+			this.chunk = checkedChunk;
+			this.chunkStart = 0;
+		}
+		return checkedChunk;
+	}
+
+	// Move the current chunk's pending region to the segment list and stop using the chunk for further appends
+	private void sealChunk() {
+		ByteBuffer checkedChunk = this.chunk;
+
+		if (checkedChunk != null) {
+			sealChunkRegion();
+			this.sealedChunks.add(checkedChunk);
+			this.chunk = null;
+		}
+	}
+
+	// Move the current chunk's pending region to the segment list (further appends continue behind it)
+	private void sealChunkRegion() {
+		ByteBuffer checkedChunk = this.chunk;
+
+		if (checkedChunk != null) {
+			int regionLength = checkedChunk.position() - this.chunkStart;
+
+			if (regionLength > 0) {
+				this.segments.add(ByteString.wrap(checkedChunk.array(), checkedChunk.arrayOffset() + this.chunkStart,
+						regionLength));
+				this.sealedLength += regionLength;
+				this.chunkStart = checkedChunk.position();
+			}
+		}
+	}
+
+}
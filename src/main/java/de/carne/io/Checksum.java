@@ -65,4 +65,53 @@ public interface Checksum {
 	 */
 	byte[] getValue();
 
+	/**
+	 * Checks whether this generator supports capturing and restoring its intermediate state.
+	 *
+	 * @return {@code true} if this generator supports {@linkplain #snapshot()} and {@linkplain #restore(byte[])}.
+	 */
+	default boolean isSnapshotSupported() {
+		return false;
+	}
+
+	/**
+	 * Captures the generator's intermediate state.
+	 * <p>
+	 * The generator's state is not changed by this call. The returned state can be persisted and later on be fed into
+	 * {@linkplain #restore(byte[])} to continue the checksum generation.
+	 *
+	 * @return the generator's intermediate state.
+	 * @throws UnsupportedOperationException if this generator does not support snapshots.
+	 * @see #isSnapshotSupported()
+	 */
+	default byte[] snapshot() {
+		throw new UnsupportedOperationException(getClass().getName() + " does not support snapshots");
+	}
+
+	/**
+	 * Restores a previously captured intermediate state.
+	 *
+	 * @param state the state to restore (as returned by {@linkplain #snapshot()}).
+	 * @throws IllegalArgumentException if the submitted state is invalid.
+	 * @throws UnsupportedOperationException if this generator does not support snapshots.
+	 * @see #isSnapshotSupported()
+	 */
+	default void restore(byte[] state) {
+		throw new UnsupportedOperationException(getClass().getName() + " does not support snapshots");
+	}
+
+	/**
+	 * Creates an independent copy of this generator including its intermediate state.
+	 * <p>
+	 * In contrast to {@linkplain #snapshot()} the copied state cannot be persisted. Hence this is also supported by
+	 * generators whose state cannot be exported (e.g. {@linkplain java.security.MessageDigest} based generators as
+	 * long as the underlying digest is cloneable).
+	 *
+	 * @return the copied generator.
+	 * @throws UnsupportedOperationException if this generator cannot be copied.
+	 */
+	default Checksum copy() {
+		throw new UnsupportedOperationException(getClass().getName() + " does not support copying");
+	}
+
 }
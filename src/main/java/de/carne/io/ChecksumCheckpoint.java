@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.util.Check;
+
+/**
+ * Persistable intermediate {@linkplain Checksum} state recorded at a specific data offset.
+ * <p>
+ * Checkpoints enable incremental verification of append-only data (e.g. log or archive files): Instead of hashing the
+ * complete data on every verification pass, the checksum generation is resumed at the last recorded offset and only
+ * the appended bytes are fed into the generator (see {@linkplain #resume(Checksum, FileChannel, ChecksumCheckpoint)}).
+ * <p>
+ * Checkpoints require a {@linkplain Checksum} implementation supporting snapshots (see
+ * {@linkplain Checksum#isSnapshotSupported()}). For {@linkplain Checksum} implementations not supporting snapshots (e.g.
+ * {@linkplain MD5Checksum} or {@linkplain SHA256Checksum}) an intermediate state can still be kept in memory via
+ * {@linkplain Checksum#copy()}.
+ */
+public final class ChecksumCheckpoint {
+
+	// Upper bound for the state size accepted by readFrom (actual states are much smaller)
+	private static final int MAX_STATE_LENGTH = 4096;
+
+	private final long offset;
+	private final byte[] state;
+
+	/**
+	 * Constructs a new {@linkplain ChecksumCheckpoint} instance.
+	 *
+	 * @param offset the data offset the checkpoint has been recorded at.
+	 * @param state the checksum state (as returned by {@linkplain Checksum#snapshot()}).
+	 */
+	public ChecksumCheckpoint(long offset, byte[] state) {
+		Check.isTrue(offset >= 0);
+
+		this.offset = offset;
+		this.state = state.clone();
+	}
+
+	/**
+	 * Records a {@linkplain ChecksumCheckpoint} for the given {@linkplain Checksum}.
+	 *
+	 * @param checksum the {@linkplain Checksum} to record the checkpoint for.
+	 * @param offset the number of bytes fed into the {@linkplain Checksum} so far.
+	 * @return the recorded {@linkplain ChecksumCheckpoint}.
+	 */
+	public static ChecksumCheckpoint of(Checksum checksum, long offset) {
+		return new ChecksumCheckpoint(offset, checksum.snapshot());
+	}
+
+	/**
+	 * Gets the data offset this checkpoint has been recorded at.
+	 *
+	 * @return the data offset this checkpoint has been recorded at.
+	 */
+	public long offset() {
+		return this.offset;
+	}
+
+	/**
+	 * Gets the recorded checksum state.
+	 *
+	 * @return the recorded checksum state.
+	 */
+	public byte[] state() {
+		return this.state.clone();
+	}
+
+	/**
+	 * Restores the recorded state into the given {@linkplain Checksum}.
+	 *
+	 * @param checksum the {@linkplain Checksum} to restore.
+	 */
+	public void restore(Checksum checksum) {
+		checksum.restore(this.state);
+	}
+
+	/**
+	 * Writes this checkpoint to a {@linkplain DataOutput}.
+	 *
+	 * @param out the {@linkplain DataOutput} to write to.
+	 * @throws IOException if an I/O error occurs.
+	 * @see #readFrom(DataInput)
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeLong(this.offset);
+		out.writeInt(this.state.length);
+		out.write(this.state);
+	}
+
+	/**
+	 * Reads a checkpoint from a {@linkplain DataInput}.
+	 *
+	 * @param in the {@linkplain DataInput} to read from.
+	 * @return the read checkpoint.
+	 * @throws IOException if an I/O error occurs or the read data is invalid.
+	 * @see #writeTo(DataOutput)
+	 */
+	public static ChecksumCheckpoint readFrom(DataInput in) throws IOException {
+		long offset = in.readLong();
+		int stateLength = in.readInt();
+
+		if (offset < 0 || stateLength < 0 || stateLength > MAX_STATE_LENGTH) {
+			throw new IOException("Invalid checkpoint data");
+		}
+
+		byte[] state = new byte[stateLength];
+
+		in.readFully(state);
+		return new ChecksumCheckpoint(offset, state);
+	}
+
+	/**
+	 * Feeds a {@linkplain FileChannel}'s content into a {@linkplain Checksum} resuming at the given checkpoint.
+	 * <p>
+	 * If a checkpoint is submitted, the {@linkplain Checksum} is restored and only the bytes starting at the
+	 * checkpoint's offset are read. If no checkpoint is submitted or the channel has been truncated below the
+	 * checkpoint's offset, the complete content is hashed. The channel's position is not changed.
+	 * <p>
+	 * As only the appended bytes are read, modifications of the already verified bytes are not detected.
+	 * <p>
+	 * After this call the {@linkplain Checksum} contains the state for the channel's complete content and
+	 * {@linkplain Checksum#getValue()} can be invoked to retrieve the checksum value.
+	 *
+	 * @param checksum the {@linkplain Checksum} to feed.
+	 * @param src the {@linkplain FileChannel} to read from.
+	 * @param checkpoint the optional checkpoint to resume at.
+	 * @return the new checkpoint recorded at the end of the channel's content.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws UnsupportedOperationException if the {@linkplain Checksum} does not support snapshots (checked before any
+	 * data is read).
+	 */
+	public static ChecksumCheckpoint resume(Checksum checksum, FileChannel src, @Nullable ChecksumCheckpoint checkpoint)
+			throws IOException {
+		if (!checksum.isSnapshotSupported()) {
+			throw new UnsupportedOperationException(checksum.getClass().getName() + " does not support snapshots");
+		}
+
+		long position = 0;
+
+		checksum.reset();
+		if (checkpoint != null && checkpoint.offset <= src.size()) {
+			checkpoint.restore(checksum);
+			position = checkpoint.offset;
+		}
+
+		ByteBuffer pooledBuffer = BufferPool.HEAP.acquire();
+
+		try {
+			int read;
+
+			while ((read = src.read(pooledBuffer, position)) >= 0) {
+				pooledBuffer.flip();
+				checksum.update(pooledBuffer);
+				pooledBuffer.clear();
+				position += read;
+			}
+		} finally {
+			BufferPool.HEAP.release(pooledBuffer);
+		}
+		return of(checksum, position);
+	}
+
+}
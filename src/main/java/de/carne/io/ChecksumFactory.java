@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * Factory interface used to create new {@linkplain Checksum} instances on demand (e.g. for parallel checksum
+ * generation).
+ * <p>
+ * The {@code getInstance} methods of the standard {@linkplain Checksum} implementations can be used directly (e.g.
+ * {@code SHA256Checksum::getInstance}).
+ */
+@FunctionalInterface
+public interface ChecksumFactory {
+
+	/**
+	 * Creates a new {@linkplain Checksum} instance.
+	 *
+	 * @return the created {@linkplain Checksum} instance.
+	 * @throws GeneralSecurityException if the necessary algorithm or provider is not available on the running
+	 * platform.
+	 */
+	Checksum newChecksum() throws GeneralSecurityException;
+
+}
@@ -19,6 +19,7 @@ package de.carne.io;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import org.eclipse.jdt.annotation.Nullable;
 
@@ -79,17 +80,22 @@ public class ChecksumInputStream extends FilterInputStream {
 
 	@Override
 	public long skip(long n) throws IOException {
-		byte[] buffer = new byte[Defaults.DEFAULT_BUFFER_SIZE];
-
+		ByteBuffer pooledBuffer = BufferPool.HEAP.acquire();
 		long totalRead = 0;
 
-		while (totalRead < n) {
-			int read = read(buffer);
+		try {
+			byte[] buffer = pooledBuffer.array();
+
+			while (totalRead < n) {
+				int read = read(buffer, 0, (int) Math.min(n - totalRead, buffer.length));
 
-			if (read < 0) {
-				break;
+				if (read < 0) {
+					break;
+				}
+				totalRead += read;
 			}
-			totalRead += read;
+		} finally {
+			BufferPool.HEAP.release(pooledBuffer);
 		}
 		return totalRead;
 	}
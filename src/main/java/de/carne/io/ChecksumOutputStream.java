@@ -19,11 +19,16 @@ package de.carne.io;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.Executor;
 
 import org.eclipse.jdt.annotation.Nullable;
 
 /**
  * {@linkplain FilterOutputStream} that calculates a checksum of the written data.
+ * <p>
+ * In asynchronous mode (see {@linkplain #ChecksumOutputStream(OutputStream, Checksum, Executor)}) the written data is
+ * copied into a bounded ring of pooled buffers and hashed in the background. This way the writer only pays for the
+ * copy operation and the checksum calculation overlaps with the actual output operation.
  */
 public class ChecksumOutputStream extends FilterOutputStream {
 
@@ -40,8 +45,22 @@ public class ChecksumOutputStream extends FilterOutputStream {
 		this.checksum = checksum;
 	}
 
+	/**
+	 * Constructs a new {@linkplain ChecksumOutputStream} instance calculating the checksum asynchronously.
+	 *
+	 * @param out the underlying {@linkplain OutputStream}.
+	 * @param checksum the {@linkplain Checksum} instance to use for checksum calculation.
+	 * @param executor the {@linkplain Executor} to use for checksum calculation.
+	 * @see CompositeChecksum#parallel(Executor, Checksum...)
+	 */
+	public ChecksumOutputStream(OutputStream out, Checksum checksum, Executor executor) {
+		this(out, CompositeChecksum.parallel(executor, checksum));
+	}
+
 	/**
 	 * Gets the checksum value corresponding to the written data and resets the checksum processor.
+	 * <p>
+	 * In asynchronous mode this call blocks until all pending data has been processed.
 	 *
 	 * @return the checksum value corresponding to the written data.
 	 * @see Checksum#getValue()
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.util.Check;
+
+/**
+ * {@linkplain Checksum} implementation feeding the data into multiple {@linkplain Checksum} instances at once (e.g. to
+ * compute MD5 and SHA-256 of the same data in a single pass).
+ * <p>
+ * In parallel mode each of the combined {@linkplain Checksum}s is fed concurrently by a dedicated task. The fed data is
+ * collected in pooled buffers which are handed over to the individual tasks. The number of buffers in flight is
+ * bounded, hence a caller feeding data faster than it can be processed is blocked until one of the buffers becomes
+ * available again. A failing pipeline (including a rejected feeding task) does not stall the other pipelines; the
+ * failure is reported by the next call to {@linkplain #getValue()}, {@linkplain #getValues()} or
+ * {@linkplain #reset()}.
+ */
+public final class CompositeChecksum implements Checksum {
+
+	private static final int RING_SIZE = 4;
+	private static final int RING_BUFFER_SIZE = Math.min(Defaults.DEFAULT_BUFFER_SIZE << 6, Defaults.MAX_BUFFER_SIZE);
+
+	private final Checksum[] checksums;
+	private final @Nullable Executor executor;
+	private final Semaphore ringPermits = new Semaphore(RING_SIZE);
+	private final List<CompletableFuture<@Nullable Void>> pipelines;
+	private final @Nullable RuntimeException[] pipelineFailures;
+	private @Nullable ByteBuffer pendingBuffer = null;
+
+	private CompositeChecksum(Checksum[] checksums, @Nullable Executor executor) {
+		Check.isTrue(checksums.length > 0);
+
+		this.checksums = checksums;
+		this.executor = executor;
+		this.pipelines = new ArrayList<>(checksums.length);
+		this.pipelineFailures = new @Nullable RuntimeException[checksums.length];
+		for (int checksumIndex = 0; checksumIndex < checksums.length; checksumIndex++) {
+			this.pipelines.add(CompletableFuture.completedFuture(null));
+		}
+	}
+
+	/**
+	 * Constructs a new {@linkplain CompositeChecksum} instance feeding the combined {@linkplain Checksum}s sequentially
+	 * within the calling thread.
+	 *
+	 * @param checksums the {@linkplain Checksum}s to combine.
+	 * @return the constructed {@linkplain CompositeChecksum} instance.
+	 */
+	public static CompositeChecksum of(Checksum... checksums) {
+		return new CompositeChecksum(Arrays.copyOf(checksums, checksums.length), null);
+	}
+
+	/**
+	 * Constructs a new {@linkplain CompositeChecksum} instance feeding the combined {@linkplain Checksum}s in parallel
+	 * using the common {@linkplain ForkJoinPool}.
+	 *
+	 * @param checksums the {@linkplain Checksum}s to combine.
+	 * @return the constructed {@linkplain CompositeChecksum} instance.
+	 */
+	public static CompositeChecksum parallel(Checksum... checksums) {
+		return parallel(ForkJoinPool.commonPool(), checksums);
+	}
+
+	/**
+	 * Constructs a new {@linkplain CompositeChecksum} instance feeding the combined {@linkplain Checksum}s in parallel
+	 * using the given {@linkplain Executor}.
+	 *
+	 * @param executor the {@linkplain Executor} to use for feeding the combined {@linkplain Checksum}s.
+	 * @param checksums the {@linkplain Checksum}s to combine.
+	 * @return the constructed {@linkplain CompositeChecksum} instance.
+	 */
+	public static CompositeChecksum parallel(Executor executor, Checksum... checksums) {
+		return new CompositeChecksum(Arrays.copyOf(checksums, checksums.length), executor);
+	}
+
+	@Override
+	public void reset() {
+		ByteBuffer checkedPendingBuffer = this.pendingBuffer;
+
+		if (checkedPendingBuffer != null) {
+			this.pendingBuffer = null;
+			this.ringPermits.release();
+			BufferPool.HEAP.release(checkedPendingBuffer);
+		}
+		awaitPipelines();
+		for (Checksum checksum : this.checksums) {
+			checksum.reset();
+		}
+	}
+
+	@Override
+	public void update(byte b) {
+		if (this.executor != null) {
+			nextPendingBuffer().put(b);
+			dispatchPendingBuffer(false);
+		} else {
+			for (Checksum checksum : this.checksums) {
+				checksum.update(b);
+			}
+		}
+	}
+
+	@Override
+	public void update(byte[] bs) {
+		update(bs, 0, bs.length);
+	}
+
+	@Override
+	public void update(byte[] bs, int off, int len) {
+		if (this.executor != null) {
+			int bsPosition = off;
+			int bsRemaining = len;
+
+			while (bsRemaining > 0) {
+				ByteBuffer buffer = nextPendingBuffer();
+				int putLength = Math.min(buffer.remaining(), bsRemaining);
+
+				buffer.put(bs, bsPosition, putLength);
+				bsPosition += putLength;
+				bsRemaining -= putLength;
+				dispatchPendingBuffer(false);
+			}
+		} else {
+			for (Checksum checksum : this.checksums) {
+				checksum.update(bs, off, len);
+			}
+		}
+	}
+
+	@Override
+	public void update(ByteBuffer bs) {
+		if (this.executor != null) {
+			while (bs.hasRemaining()) {
+				ByteBuffer buffer = nextPendingBuffer();
+				ByteBuffer bsSlice = bs.duplicate();
+
+				bsSlice.limit(bsSlice.position() + Math.min(buffer.remaining(), bsSlice.remaining()));
+				buffer.put(bsSlice);
+				bs.position(bsSlice.position());
+				dispatchPendingBuffer(false);
+			}
+		} else {
+			for (Checksum checksum : this.checksums) {
+				checksum.update(bs.duplicate());
+			}
+			bs.position(bs.limit());
+		}
+	}
+
+	/**
+	 * Finalizes the checksum generation, returns the concatenated results of all combined {@linkplain Checksum}s and
+	 * resets the generator.
+	 *
+	 * @return the concatenated results of all combined {@linkplain Checksum}s (in the order they have been submitted
+	 * during construction).
+	 * @see #getValues()
+	 */
+	@Override
+	public byte[] getValue() {
+		List<byte[]> values = getValues();
+		byte[] value = new byte[values.stream().mapToInt(v -> v.length).sum()];
+		int valuePosition = 0;
+
+		for (byte[] checksumValue : values) {
+			System.arraycopy(checksumValue, 0, value, valuePosition, checksumValue.length);
+			valuePosition += checksumValue.length;
+		}
+		return value;
+	}
+
+	/**
+	 * Finalizes the checksum generation, returns the individual results of all combined {@linkplain Checksum}s and
+	 * resets the generator.
+	 *
+	 * @return the individual results of all combined {@linkplain Checksum}s (in the order they have been submitted
+	 * during construction).
+	 */
+	public List<byte[]> getValues() {
+		dispatchPendingBuffer(true);
+		awaitPipelines();
+
+		List<byte[]> values = new ArrayList<>(this.checksums.length);
+
+		for (Checksum checksum : this.checksums) {
+			values.add(checksum.getValue());
+		}
+		return values;
+	}
+
+	private ByteBuffer nextPendingBuffer() {
+		ByteBuffer buffer = this.pendingBuffer;
+
+		if (buffer == null) {
+			this.ringPermits.acquireUninterruptibly();
+			buffer = this.pendingBuffer = BufferPool.HEAP.acquire(RING_BUFFER_SIZE);
+		}
+		return buffer;
+	}
+
+	private void dispatchPendingBuffer(boolean force) {
+		ByteBuffer buffer = this.pendingBuffer;
+		Executor checkedExecutor = this.executor;
+
+		if (buffer != null && checkedExecutor != null && (force || !buffer.hasRemaining())) {
+			this.pendingBuffer = null;
+			buffer.flip();
+
+			AtomicInteger bufferReferences = new AtomicInteger(this.checksums.length);
+
+			for (int checksumIndex = 0; checksumIndex < this.checksums.length; checksumIndex++) {
+				int pipelineIndex = checksumIndex;
+
+				this.pipelines.set(pipelineIndex,
+						this.pipelines.get(pipelineIndex)
+								.thenRunAsync(() -> feedPipeline(pipelineIndex, buffer, bufferReferences),
+										checkedExecutor)
+								.exceptionally(exception -> recoverPipeline(pipelineIndex, buffer, bufferReferences,
+										exception)));
+			}
+		}
+	}
+
+	private void feedPipeline(int pipelineIndex, ByteBuffer buffer, AtomicInteger bufferReferences) {
+		try {
+			if (this.pipelineFailures[pipelineIndex] == null) {
+				this.checksums[pipelineIndex].update(buffer.duplicate());
+			}
+		} catch (RuntimeException e) {
+			this.pipelineFailures[pipelineIndex] = e;
+		} finally {
+			releaseBufferReference(buffer, bufferReferences);
+		}
+	}
+
+	// Keeps the pipeline going after a feeding task failed to run (e.g. due to a rejecting executor)
+	private @Nullable Void recoverPipeline(int pipelineIndex, ByteBuffer buffer, AtomicInteger bufferReferences,
+			Throwable exception) {
+		Throwable cause = exception;
+
+		if (cause instanceof CompletionException && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		if (cause instanceof RejectedExecutionException) {
+			// The feeding task has never been run, hence the buffer reference is still held
+			releaseBufferReference(buffer, bufferReferences);
+		}
+		if (this.pipelineFailures[pipelineIndex] == null) {
+			this.pipelineFailures[pipelineIndex] = (cause instanceof RuntimeException ? (RuntimeException) cause
+					: new CompletionException(cause));
+		}
+		return null;
+	}
+
+	private void releaseBufferReference(ByteBuffer buffer, AtomicInteger bufferReferences) {
+		if (bufferReferences.decrementAndGet() == 0) {
+			BufferPool.HEAP.release(buffer);
+			this.ringPermits.release();
+		}
+	}
+
+	private void awaitPipelines() {
+		for (int pipelineIndex = 0; pipelineIndex < this.checksums.length; pipelineIndex++) {
+			this.pipelines.get(pipelineIndex).join();
+
+			RuntimeException pipelineFailure = this.pipelineFailures[pipelineIndex];
+
+			if (pipelineFailure != null) {
+				this.pipelineFailures[pipelineIndex] = null;
+				throw pipelineFailure;
+			}
+		}
+	}
+
+}
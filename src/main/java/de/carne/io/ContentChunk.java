@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.text.HexBytes;
+
+/**
+ * Content defined chunk as emitted by {@linkplain ContentChunker}.
+ */
+public final class ContentChunk {
+
+	private final long offset;
+	private final int length;
+	private final byte[] digest;
+
+	ContentChunk(long offset, int length, byte[] digest) {
+		this.offset = offset;
+		this.length = length;
+		this.digest = digest;
+	}
+
+	/**
+	 * Gets the offset of this chunk within the chunked data.
+	 *
+	 * @return the offset of this chunk within the chunked data.
+	 */
+	public long offset() {
+		return this.offset;
+	}
+
+	/**
+	 * Gets the length of this chunk.
+	 *
+	 * @return the length of this chunk.
+	 */
+	public int length() {
+		return this.length;
+	}
+
+	/**
+	 * Gets the digest of this chunk's data.
+	 *
+	 * @return the digest of this chunk's data.
+	 */
+	public byte[] digest() {
+		return this.digest.clone();
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(this.digest);
+	}
+
+	@Override
+	public boolean equals(@Nullable Object obj) {
+		boolean equal = this == obj;
+
+		if (!equal && obj instanceof ContentChunk) {
+			ContentChunk other = (ContentChunk) obj;
+
+			equal = this.offset == other.offset && this.length == other.length
+					&& Arrays.equals(this.digest, other.digest);
+		}
+		return equal;
+	}
+
+	@Override
+	public String toString() {
+		return this.offset + ":" + this.length + ":" + HexBytes.toStringL(this.digest);
+	}
+
+}
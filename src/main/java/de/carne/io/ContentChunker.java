@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import de.carne.util.Check;
+import de.carne.util.function.FunctionException;
+
+/**
+ * Content defined chunking (FastCDC style) of streams and files.
+ * <p>
+ * The chunk boundaries are determined by a Gear rolling hash and hence only depend on the surrounding content. As a
+ * result, inserting or removing bytes only affects the chunks around the modification and near-identical data yields
+ * mostly identical chunks (suitable for chunk level deduplication). Normalized chunking is used to keep the chunk sizes
+ * close to the configured average size. Each emitted {@linkplain ContentChunk} carries the digest of the chunk's data
+ * as generated by the configured {@linkplain ChecksumFactory}.
+ */
+public final class ContentChunker {
+
+	/**
+	 * The default minimum chunk size.
+	 */
+	public static final int DEFAULT_MIN_SIZE = 2 * 1024;
+
+	/**
+	 * The default average chunk size.
+	 */
+	public static final int DEFAULT_AVERAGE_SIZE = 8 * 1024;
+
+	/**
+	 * The default maximum chunk size.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 64 * 1024;
+
+	private static final long[] GEAR = new long[256];
+
+	static {
+		// Fixed seed SplitMix64 sequence (chunk boundaries must be stable across runs and platforms)
+		long state = 0x2545F4914F6CDD1Dl;
+
+		for (int gearIndex = 0; gearIndex < GEAR.length; gearIndex++) {
+			state += 0x9E3779B97F4A7C15l;
+
+			long gear = state;
+
+			gear = (gear ^ (gear >>> 30)) * 0xBF58476D1CE4E5B9l;
+			gear = (gear ^ (gear >>> 27)) * 0x94D049BB133111EBl;
+			GEAR[gearIndex] = gear ^ (gear >>> 31);
+		}
+	}
+
+	private static final int STREAM_BUFFER_SIZE = Defaults.MAX_BUFFER_SIZE;
+	private static final int MAX_WINDOW_SIZE = 1 << 28;
+	private static final int HASH_BATCH_SIZE = 64;
+
+	private final int minSize;
+	private final int averageSize;
+	private final int maxSize;
+	private final long maskS;
+	private final long maskL;
+	private final ChecksumFactory checksumFactory;
+
+	/**
+	 * Constructs a new {@linkplain ContentChunker} instance using the default chunk sizes.
+	 *
+	 * @param checksumFactory the {@linkplain ChecksumFactory} to use for chunk digest generation.
+	 */
+	public ContentChunker(ChecksumFactory checksumFactory) {
+		this(DEFAULT_MIN_SIZE, DEFAULT_AVERAGE_SIZE, DEFAULT_MAX_SIZE, checksumFactory);
+	}
+
+	/**
+	 * Constructs a new {@linkplain ContentChunker} instance.
+	 *
+	 * @param minSize the minimum chunk size.
+	 * @param averageSize the average chunk size (must be a power of 2).
+	 * @param maxSize the maximum chunk size.
+	 * @param checksumFactory the {@linkplain ChecksumFactory} to use for chunk digest generation.
+	 */
+	public ContentChunker(int minSize, int averageSize, int maxSize, ChecksumFactory checksumFactory) {
+		Check.isTrue(0 < minSize && minSize <= averageSize && averageSize <= maxSize);
+		Check.isTrue(Integer.bitCount(averageSize) == 1 && averageSize >= 4);
+		Check.isTrue(maxSize <= MAX_WINDOW_SIZE / 2);
+
+		int averageBits = Integer.numberOfTrailingZeros(averageSize);
+
+		this.minSize = minSize;
+		this.averageSize = averageSize;
+		this.maxSize = maxSize;
+		// The Gear hash's upper bits cover the most bytes, hence the masks are aligned to the upper bits
+		this.maskS = -1l << (Long.SIZE - averageBits - 1);
+		this.maskL = -1l << (Long.SIZE - averageBits + 1);
+		this.checksumFactory = checksumFactory;
+	}
+
+	/**
+	 * Chunks the data read from an {@linkplain InputStream}.
+	 * <p>
+	 * The chunks are emitted in stream order as soon as they have been determined.
+	 *
+	 * @param src the {@linkplain InputStream} to read from.
+	 * @param consumer the {@linkplain Consumer} receiving the emitted chunks.
+	 * @return the total number of chunked bytes.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws GeneralSecurityException if the checksum algorithm is not available.
+	 */
+	public long chunk(InputStream src, Consumer<ContentChunk> consumer) throws IOException, GeneralSecurityException {
+		Checksum checksum = this.checksumFactory.newChecksum();
+		ByteBuffer pooledBuffer = BufferPool.HEAP.acquire(Math.max(STREAM_BUFFER_SIZE, this.maxSize * 4));
+		long offset = 0;
+
+		try {
+			byte[] buffer = pooledBuffer.array();
+			int bufferLength = buffer.length;
+			int position = 0;
+			int limit = 0;
+			boolean eof = false;
+
+			while (!eof || position < limit) {
+				// Make sure a maximum size chunk is available unless EOF has been reached
+				if (!eof && limit - position < this.maxSize) {
+					System.arraycopy(buffer, position, buffer, 0, limit - position);
+					limit -= position;
+					position = 0;
+
+					int read = IOUtil.readBlocking(src, buffer, limit, bufferLength - limit);
+
+					limit += read;
+					eof = limit < bufferLength;
+				}
+				if (position < limit) {
+					int chunkLength = nextChunkLength(pooledBuffer, position, limit - position);
+
+					checksum.update(buffer, position, chunkLength);
+					consumer.accept(new ContentChunk(offset, chunkLength, checksum.getValue()));
+					position += chunkLength;
+					offset += chunkLength;
+				}
+			}
+		} finally {
+			BufferPool.HEAP.release(pooledBuffer);
+		}
+		return offset;
+	}
+
+	/**
+	 * Chunks the content of a {@linkplain FileChannel} using the common {@linkplain ForkJoinPool}.
+	 *
+	 * @param src the {@linkplain FileChannel} to chunk.
+	 * @return the chunks (in file order).
+	 * @throws IOException if an I/O error occurs.
+	 * @throws GeneralSecurityException if the checksum algorithm is not available.
+	 * @see #chunk(FileChannel, ForkJoinPool)
+	 */
+	public List<ContentChunk> chunk(FileChannel src) throws IOException, GeneralSecurityException {
+		return chunk(src, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Chunks the content of a {@linkplain FileChannel}.
+	 * <p>
+	 * The channel's content is mapped into memory. Chunk boundaries are determined sequentially (which is cheap) while
+	 * the chunk digests are generated in parallel on the submitted {@linkplain ForkJoinPool}.
+	 *
+	 * @param src the {@linkplain FileChannel} to chunk.
+	 * @param pool the {@linkplain ForkJoinPool} to use for chunk digest generation.
+	 * @return the chunks (in file order).
+	 * @throws IOException if an I/O error occurs.
+	 * @throws GeneralSecurityException if the checksum algorithm is not available.
+	 */
+	public List<ContentChunk> chunk(FileChannel src, ForkJoinPool pool) throws IOException, GeneralSecurityException {
+		long size = src.size();
+		List<WindowHasher> windowHashers = new ArrayList<>();
+		List<ForkJoinTask<Void>> windowTasks = new ArrayList<>();
+		long windowOffset = 0;
+
+		while (windowOffset < size) {
+			int windowLength = (int) Math.min(size - windowOffset, MAX_WINDOW_SIZE);
+			boolean lastWindow = windowOffset + windowLength == size;
+			ByteBuffer window = src.map(FileChannel.MapMode.READ_ONLY, windowOffset, windowLength);
+			List<int[]> windowChunks = new ArrayList<>();
+			int position = 0;
+
+			while (position < windowLength && (lastWindow || windowLength - position >= this.maxSize)) {
+				int chunkLength = nextChunkLength(window, position, windowLength - position);
+
+				windowChunks.add(new int[] { position, chunkLength });
+				position += chunkLength;
+			}
+
+			WindowHasher windowHasher = new WindowHasher(this.checksumFactory, window, windowOffset, windowChunks);
+
+			windowHashers.add(windowHasher);
+			windowTasks.add(pool.submit(windowHasher));
+			windowOffset += position;
+		}
+
+		List<ContentChunk> chunks = new ArrayList<>();
+
+		try {
+			for (int windowIndex = 0; windowIndex < windowTasks.size(); windowIndex++) {
+				windowTasks.get(windowIndex).join();
+				windowHashers.get(windowIndex).collectChunks(chunks);
+			}
+		} catch (FunctionException e) {
+			throw e.rethrow(GeneralSecurityException.class);
+		}
+		return chunks;
+	}
+
+	private int nextChunkLength(ByteBuffer buffer, int position, int length) {
+		int chunkLength;
+
+		if (length <= this.minSize) {
+			chunkLength = length;
+		} else {
+			int index = this.minSize;
+			int normalLimit = Math.min(this.averageSize, length);
+			int limit = Math.min(this.maxSize, length);
+			long hash = 0;
+
+			chunkLength = limit;
+			while (index < normalLimit) {
+				hash = (hash << 1) + GEAR[buffer.get(position + index) & 0xff];
+				index++;
+				if ((hash & this.maskS) == 0) {
+					chunkLength = index;
+					limit = index;
+					break;
+				}
+			}
+			while (index < limit) {
+				hash = (hash << 1) + GEAR[buffer.get(position + index) & 0xff];
+				index++;
+				if ((hash & this.maskL) == 0) {
+					chunkLength = index;
+					break;
+				}
+			}
+		}
+		return chunkLength;
+	}
+
+	private static class WindowHasher extends RecursiveAction {
+
+		private static final long serialVersionUID = 2928167150574011345L;
+
+		private final transient ChecksumFactory checksumFactory;
+		private final transient ByteBuffer window;
+		private final long windowOffset;
+		private final List<int[]> windowChunks;
+		private final byte[][] digests;
+		private final int from;
+		private final int to;
+
+		WindowHasher(ChecksumFactory checksumFactory, ByteBuffer window, long windowOffset, List<int[]> windowChunks) {
+			this(checksumFactory, window, windowOffset, windowChunks, new byte[windowChunks.size()][], 0,
+					windowChunks.size());
+		}
+
+		private WindowHasher(ChecksumFactory checksumFactory, ByteBuffer window, long windowOffset,
+				List<int[]> windowChunks, byte[][] digests, int from, int to) {
+			this.checksumFactory = checksumFactory;
+			this.window = window;
+			this.windowOffset = windowOffset;
+			this.windowChunks = windowChunks;
+			this.digests = digests;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			int count = this.to - this.from;
+
+			if (count > HASH_BATCH_SIZE) {
+				int middle = this.from + count / 2;
+
+				invokeAll(
+						new WindowHasher(this.checksumFactory, this.window, this.windowOffset, this.windowChunks,
+								this.digests, this.from, middle),
+						new WindowHasher(this.checksumFactory, this.window, this.windowOffset, this.windowChunks,
+								this.digests, middle, this.to));
+			} else if (count > 0) {
+				try {
+					Checksum checksum = this.checksumFactory.newChecksum();
+
+					for (int chunkIndex = this.from; chunkIndex < this.to; chunkIndex++) {
+						int[] chunk = this.windowChunks.get(chunkIndex);
+						ByteBuffer chunkData = this.window.duplicate();
+
+						chunkData.limit(chunk[0] + chunk[1]).position(chunk[0]);
+						checksum.update(chunkData);
+						this.digests[chunkIndex] = checksum.getValue();
+					}
+				} catch (GeneralSecurityException e) {
+					throw new FunctionException(e);
+				}
+			}
+		}
+
+		void collectChunks(List<ContentChunk> chunks) {
+			for (int chunkIndex = 0; chunkIndex < this.digests.length; chunkIndex++) {
+				int[] chunk = this.windowChunks.get(chunkIndex);
+
+				chunks.add(new ContentChunk(this.windowOffset + chunk[0], chunk[1], this.digests[chunkIndex]));
+			}
+		}
+
+	}
+
+}
@@ -51,4 +51,16 @@ public final class Defaults {
 	public static final int MAX_BUFFER_SIZE = SystemProperties.intValue(MAX_BUFFER_SIZE_PROPERTY,
 			IntegerParser.POSITIVE, 1 << 22);
 
+	/**
+	 * {@linkplain #MAX_ASYNC_OPERATIONS} property.
+	 */
+	public static final String MAX_ASYNC_OPERATIONS_PROPERTY = Defaults.class.getPackage().getName()
+			+ ".MAX_ASYNC_OPERATIONS";
+
+	/**
+	 * Maximum number of concurrently running asynchronous I/O operations (see {@linkplain AsyncIOUtil}).
+	 */
+	public static final int MAX_ASYNC_OPERATIONS = SystemProperties.intValue(MAX_ASYNC_OPERATIONS_PROPERTY,
+			IntegerParser.POSITIVE, 64);
+
 }
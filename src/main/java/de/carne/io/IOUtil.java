@@ -25,22 +25,44 @@ import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import de.carne.util.ByteString;
+import de.carne.util.Check;
 
 /**
  * Utility class providing I/O related functions.
  */
 public final class IOUtil {
 
+	// Some VMs reserve header words in an array; stay a little below Integer.MAX_VALUE
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	// Upper bound for a single FileChannel transfer call
+	private static final long MAX_TRANSFER_SIZE = 1l << 30;
+
 	private IOUtil() {
 		// Prevent instantiation
 	}
 
 	/**
 	 * Copies all bytes from an {@linkplain InputStream} to an {@linkplain OutputStream}.
+	 * <p>
+	 * If at least one of the streams is file based, the copy is performed via {@linkplain FileChannel#transferTo(long,
+	 * long, WritableByteChannel)} or {@linkplain FileChannel#transferFrom(ReadableByteChannel, long, long)} (which
+	 * allows the platform to copy the data without passing it through user space). Otherwise a buffered copy is
+	 * performed. The copy starts at the streams' current positions and the streams are left open.
 	 *
 	 * @param dst the {@linkplain OutputStream} to copy to.
 	 * @param src the {@linkplain InputStream} to copy from.
@@ -50,39 +72,74 @@ public final class IOUtil {
 	public static long copyStream(OutputStream dst, InputStream src) throws IOException {
 		long copied;
 
-		if (dst instanceof FileOutputStream && src instanceof FileInputStream) {
-			try (FileChannel dstChannel = ((FileOutputStream) dst).getChannel();
-					FileChannel srcChannel = ((FileInputStream) src).getChannel()) {
-				copied = copyStreamChannel(dstChannel, srcChannel);
-			}
+		if (src instanceof FileInputStream) {
+			WritableByteChannel dstChannel = (dst instanceof FileOutputStream ? ((FileOutputStream) dst).getChannel()
+					: Channels.newChannel(dst));
+
+			copied = transferTo(dstChannel, ((FileInputStream) src).getChannel());
+		} else if (dst instanceof FileOutputStream) {
+			copied = transferFrom(((FileOutputStream) dst).getChannel(), Channels.newChannel(src));
 		} else {
 			copied = copyStreamStandard(dst, src);
 		}
 		return copied;
 	}
 
-	private static long copyStreamChannel(FileChannel dst, FileChannel src) throws IOException {
-		long position = 0;
-		long remaining = src.size();
+	/**
+	 * Copies all bytes from an {@linkplain InputStream} to an {@linkplain OutputStream} using a pipelined copy.
+	 * <p>
+	 * Reading and writing is performed concurrently by two dedicated threads. This is useful for slow source and slow
+	 * target combinations (e.g. a network stream copied into a compressing stream). The streams are left open.
+	 *
+	 * @param dst the {@linkplain OutputStream} to copy to.
+	 * @param src the {@linkplain InputStream} to copy from.
+	 * @return the {@linkplain CompletableFuture} providing the number of copied bytes. Any {@linkplain IOException}
+	 * caused by one of the streams completes the future exceptionally.
+	 * @see #copyStreamPipelined(OutputStream, InputStream, Executor)
+	 */
+	public static CompletableFuture<Long> copyStreamPipelined(OutputStream dst, InputStream src) {
+		return copyStreamPipelined(dst, src, IOUtil::startPipelineThread);
+	}
 
-		while (remaining > 0) {
-			long transferred = dst.transferFrom(src, position, Defaults.DEFAULT_BUFFER_SIZE);
+	/**
+	 * Copies all bytes from an {@linkplain InputStream} to an {@linkplain OutputStream} using a pipelined copy.
+	 * <p>
+	 * Reading and writing is performed concurrently by two tasks submitted to the given {@linkplain Executor}. The
+	 * {@linkplain Executor} must be able to run both tasks at the same time. The streams are left open.
+	 *
+	 * @param dst the {@linkplain OutputStream} to copy to.
+	 * @param src the {@linkplain InputStream} to copy from.
+	 * @param executor the {@linkplain Executor} to use for running the read and write stage.
+	 * @return the {@linkplain CompletableFuture} providing the number of copied bytes. Any {@linkplain IOException}
+	 * caused by one of the streams completes the future exceptionally. The same applies to any
+	 * {@linkplain RuntimeException} thrown by the streams and to an {@linkplain Executor} rejecting one of the tasks.
+	 * Cancelling the future stops the copy.
+	 */
+	public static CompletableFuture<Long> copyStreamPipelined(OutputStream dst, InputStream src, Executor executor) {
+		return PipelinedCopy.start(dst, src, executor);
+	}
 
-			position += transferred;
-			remaining -= transferred;
-		}
-		dst.position(position);
-		return position;
+	private static void startPipelineThread(Runnable stage) {
+		Thread stageThread = new Thread(stage, PipelinedCopy.class.getSimpleName());
+
+		stageThread.setDaemon(true);
+		stageThread.start();
 	}
 
 	private static long copyStreamStandard(OutputStream dst, InputStream src) throws IOException {
-		byte[] buffer = new byte[Defaults.DEFAULT_BUFFER_SIZE];
+		ByteBuffer pooledBuffer = BufferPool.HEAP.acquire();
 		long copied = 0;
-		int read;
 
-		while ((read = src.read(buffer)) >= 0) {
-			dst.write(buffer, 0, read);
-			copied += read;
+		try {
+			byte[] buffer = pooledBuffer.array();
+			int read;
+
+			while ((read = src.read(buffer)) >= 0) {
+				dst.write(buffer, 0, read);
+				copied += read;
+			}
+		} finally {
+			BufferPool.HEAP.release(pooledBuffer);
 		}
 		return copied;
 	}
@@ -174,6 +231,12 @@ public final class IOUtil {
 
 	/**
 	 * Copies all bytes from a {@linkplain ReadableByteChannel} to a {@linkplain WritableByteChannel}.
+	 * <p>
+	 * If at least one of the channels is a {@linkplain FileChannel}, the copy is performed via
+	 * {@linkplain FileChannel#transferTo(long, long, WritableByteChannel)} or
+	 * {@linkplain FileChannel#transferFrom(ReadableByteChannel, long, long)} (which allows the platform to copy the data
+	 * without passing it through user space). Otherwise a buffered copy is performed. For {@linkplain FileChannel}s the
+	 * copy starts at the channel's current position and the position is advanced by the number of copied bytes.
 	 *
 	 * @param dst the {@linkplain WritableByteChannel} to copy to.
 	 * @param src the {@linkplain ReadableByteChannel} to copy from.
@@ -181,15 +244,78 @@ public final class IOUtil {
 	 * @throws IOException if an I/O error occurs.
 	 */
 	public static long copyChannel(WritableByteChannel dst, ReadableByteChannel src) throws IOException {
-		ByteBuffer buffer = ByteBuffer.allocateDirect(Defaults.DEFAULT_BUFFER_SIZE);
+		long copied;
+
+		if (src instanceof FileChannel) {
+			copied = transferTo(dst, (FileChannel) src);
+		} else if (dst instanceof FileChannel) {
+			copied = transferFrom((FileChannel) dst, src);
+		} else {
+			copied = copyChannelStandard(dst, src);
+		}
+		return copied;
+	}
+
+	private static long transferTo(WritableByteChannel dst, FileChannel src) throws IOException {
+		long position = src.position();
+		long remaining = src.size() - position;
 		long copied = 0;
-		int read;
 
-		while ((read = src.read(buffer)) >= 0) {
-			buffer.flip();
-			dst.write(buffer);
-			buffer.clear();
-			copied += read;
+		while (remaining > 0) {
+			// Let the platform decide how much to transfer at once; the limit only keeps the count sane
+			long transferred = src.transferTo(position, Math.min(remaining, MAX_TRANSFER_SIZE), dst);
+
+			if (transferred <= 0) {
+				break;
+			}
+			position += transferred;
+			remaining -= transferred;
+			copied += transferred;
+		}
+		src.position(position);
+		// The transfer stops early if the source has been truncated meanwhile or if the target did not accept any
+		// bytes; in the latter case the remaining bytes are copied via the buffered copy
+		if (remaining > 0 && position < src.size()) {
+			copied += copyChannelStandard(dst, src);
+		}
+		return copied;
+	}
+
+	private static long transferFrom(FileChannel dst, ReadableByteChannel src) throws IOException {
+		long position = dst.position();
+		long chunkSize = Defaults.MAX_BUFFER_SIZE;
+		long copied = 0;
+		long transferred;
+
+		// The source size is unknown; grow the chunk size as long as the source keeps up
+		while ((transferred = dst.transferFrom(src, position, chunkSize)) > 0) {
+			position += transferred;
+			copied += transferred;
+			if (transferred == chunkSize) {
+				chunkSize = Math.min(chunkSize << 1, MAX_TRANSFER_SIZE);
+			}
+		}
+		dst.position(position);
+		return copied;
+	}
+
+	private static long copyChannelStandard(WritableByteChannel dst, ReadableByteChannel src) throws IOException {
+		ByteBuffer buffer = BufferPool.DIRECT.acquire();
+		long copied = 0;
+
+		try {
+			int read;
+
+			while ((read = src.read(buffer)) >= 0) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					dst.write(buffer);
+				}
+				buffer.clear();
+				copied += read;
+			}
+		} finally {
+			BufferPool.DIRECT.release(buffer);
 		}
 		return copied;
 	}
@@ -215,10 +341,20 @@ public final class IOUtil {
 				dst.write(bufferArray, bufferArrayOffset + bufferPosition, remaining);
 				buffer.position(bufferPosition + remaining);
 			} else {
-				byte[] bufferBytes = new byte[remaining];
+				ByteBuffer pooledBuffer = BufferPool.HEAP.acquire(Math.min(remaining, Defaults.MAX_BUFFER_SIZE));
 
-				buffer.get(bufferBytes);
-				dst.write(bufferBytes);
+				try {
+					byte[] chunk = pooledBuffer.array();
+
+					while (buffer.hasRemaining()) {
+						int chunkLength = Math.min(buffer.remaining(), chunk.length);
+
+						buffer.get(chunk, 0, chunkLength);
+						dst.write(chunk, 0, chunkLength);
+					}
+				} finally {
+					BufferPool.HEAP.release(pooledBuffer);
+				}
 			}
 			copied = remaining;
 		}
@@ -245,29 +381,93 @@ public final class IOUtil {
 	 * @throws IOException if an I/O error occurs or {@code limit} is reached.
 	 */
 	public static byte[] readAllBytes(InputStream src, int limit) throws IOException {
-		byte[] buffer = new byte[Defaults.DEFAULT_BUFFER_SIZE];
-		byte[] bytes = new byte[0];
+		long sizeHint = -1;
+
+		if (src instanceof FileInputStream) {
+			FileChannel srcChannel = ((FileInputStream) src).getChannel();
+
+			sizeHint = Math.max(srcChannel.size() - srcChannel.position(), 0);
+		}
+		return readAllBytes(src, limit, sizeHint);
+	}
+
+	private static byte[] readAllBytes(InputStream src, int limit, long sizeHint) throws IOException {
+		byte[] bytes;
+
+		if (0 <= sizeHint && sizeHint <= limit && sizeHint <= MAX_ARRAY_SIZE) {
+			bytes = readAllBytesSized(src, limit, (int) sizeHint);
+		} else {
+			bytes = readAllBytesChunked(src, limit, new ArrayList<>(), 0);
+		}
+		return bytes;
+	}
+
+	private static byte[] readAllBytesSized(InputStream src, int limit, int size) throws IOException {
+		byte[] bytes = new byte[size];
+		int read = readBlocking(src, bytes);
+
+		if (read < size) {
+			bytes = Arrays.copyOf(bytes, read);
+		} else {
+			// Size hint may be outdated (e.g. growing file); make sure we really reached EOF
+			int next = src.read();
+
+			if (next >= 0) {
+				List<byte[]> chunks = new ArrayList<>();
+
+				chunks.add(bytes);
+				chunks.add(new byte[] { (byte) next });
+				checkLimit(limit, (long) size + 1);
+				bytes = readAllBytesChunked(src, limit, chunks, size + 1);
+			}
+		}
+		return bytes;
+	}
+
+	private static byte[] readAllBytesChunked(InputStream src, int limit, List<byte[]> chunks, int chunksSize)
+			throws IOException {
+		long totalRead = chunksSize;
+		int chunkSize = Defaults.DEFAULT_BUFFER_SIZE;
+
+		int readLength;
 		int read;
 
-		while ((read = src.read(buffer)) > 0) {
-			int totalRead = bytes.length + read;
+		do {
+			// Never read more than one byte beyond the limit; this is sufficient to detect the overflow
+			readLength = (int) Math.min(chunkSize, limit - totalRead + 1);
 
-			if (bytes.length + read > limit) {
-				InterruptedIOException exception = new InterruptedIOException("Limit reached: " + limit);
+			byte[] chunk = new byte[readLength];
 
-				exception.bytesTransferred = totalRead;
-				throw exception;
+			read = readBlocking(src, chunk);
+			if (read > 0) {
+				totalRead += read;
+				checkLimit(limit, totalRead);
+				chunks.add(chunk);
+				chunkSize = Math.min(chunkSize << 1, Defaults.MAX_BUFFER_SIZE);
 			}
+		} while (read == readLength);
+
+		byte[] bytes = new byte[(int) totalRead];
+		int bytesPosition = 0;
 
-			byte[] newBytes = new byte[totalRead];
+		for (byte[] chunk : chunks) {
+			int chunkLength = Math.min(chunk.length, bytes.length - bytesPosition);
 
-			System.arraycopy(bytes, 0, newBytes, 0, bytes.length);
-			System.arraycopy(buffer, 0, newBytes, bytes.length, read);
-			bytes = newBytes;
+			System.arraycopy(chunk, 0, bytes, bytesPosition, chunkLength);
+			bytesPosition += chunkLength;
 		}
 		return bytes;
 	}
 
+	private static void checkLimit(int limit, long totalRead) throws InterruptedIOException {
+		if (totalRead > limit) {
+			InterruptedIOException exception = new InterruptedIOException("Limit reached: " + limit);
+
+			exception.bytesTransferred = (int) Math.min(totalRead, Integer.MAX_VALUE);
+			throw exception;
+		}
+	}
+
 	/**
 	 * Read all bytes from a {@linkplain File}.
 	 *
@@ -316,14 +516,102 @@ public final class IOUtil {
 	 * @throws IOException if an I/O error occurs or {@code limit} is reached.
 	 */
 	public static byte[] readAllBytes(URL src, int limit) throws IOException {
+		URLConnection srcConnection = src.openConnection();
 		byte[] read;
 
-		try (InputStream srcStream = src.openStream()) {
-			read = readAllBytes(srcStream, limit);
+		try (InputStream srcStream = srcConnection.getInputStream()) {
+			read = readAllBytes(srcStream, limit, srcConnection.getContentLengthLong());
 		}
 		return read;
 	}
 
+	/**
+	 * Maps all bytes of a {@linkplain File} read-only into memory.
+	 * <p>
+	 * In contrast to {@linkplain #readAllBytes(File)} the file content is not copied into the heap.
+	 *
+	 * @param src the {@linkplain File} to map.
+	 * @return the read-only {@linkplain ByteBuffer} containing the file's bytes.
+	 * @throws IOException if an I/O error occurs or the file is too large to be mapped as a whole.
+	 * @see #mapAllBytes(File, int)
+	 */
+	public static ByteBuffer mapAllBytes(File src) throws IOException {
+		ByteBuffer mapped;
+
+		try (FileChannel srcChannel = FileChannel.open(src.toPath(), StandardOpenOption.READ)) {
+			long size = srcChannel.size();
+
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File too large to be mapped as a whole: " + src + " (size: " + size + ")");
+			}
+			mapped = srcChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+		return mapped;
+	}
+
+	/**
+	 * Maps all bytes of a {@linkplain File} read-only into memory using segments of the given size.
+	 * <p>
+	 * In contrast to {@linkplain #readAllBytes(File)} the file content is not copied into the heap.
+	 *
+	 * @param src the {@linkplain File} to map.
+	 * @param segmentSize the maximum size of the individual segments.
+	 * @return the read-only {@linkplain ByteBuffer}s containing the file's bytes (in file order).
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static List<ByteBuffer> mapAllBytes(File src, int segmentSize) throws IOException {
+		List<ByteBuffer> mapped;
+
+		try (FileChannel srcChannel = FileChannel.open(src.toPath(), StandardOpenOption.READ)) {
+			mapped = mapSegments(srcChannel, 0, srcChannel.size(), segmentSize);
+		}
+		return mapped;
+	}
+
+	/**
+	 * Maps a {@linkplain FileChannel} region read-only into memory using segments of the given size.
+	 * <p>
+	 * The mapped segments stay valid after the {@linkplain FileChannel} has been closed.
+	 *
+	 * @param src the {@linkplain FileChannel} to map.
+	 * @param position the position of the first byte to map.
+	 * @param size the number of bytes to map.
+	 * @param segmentSize the maximum size of the individual segments.
+	 * @return the read-only {@linkplain ByteBuffer}s containing the region's bytes (in file order).
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static List<ByteBuffer> mapSegments(FileChannel src, long position, long size, int segmentSize)
+			throws IOException {
+		Check.isTrue(0 <= position);
+		Check.isTrue(0 <= size);
+		Check.isTrue(0 < segmentSize);
+
+		List<ByteBuffer> segments = new ArrayList<>((int) Math.min((size / segmentSize) + 1, Integer.MAX_VALUE));
+		long segmentPosition = position;
+		long remaining = size;
+
+		do {
+			long mapSize = Math.min(remaining, segmentSize);
+
+			segments.add(src.map(FileChannel.MapMode.READ_ONLY, segmentPosition, mapSize));
+			segmentPosition += mapSize;
+			remaining -= mapSize;
+		} while (remaining > 0);
+		return segments;
+	}
+
+	/**
+	 * Maps all bytes of a {@linkplain File} read-only into memory and wraps them into a {@linkplain ByteString}.
+	 *
+	 * @param src the {@linkplain File} to map.
+	 * @return the {@linkplain ByteString} containing the file's bytes.
+	 * @throws IOException if an I/O error occurs or the file is too large to be mapped as a whole.
+	 * @see #mapAllBytes(File)
+	 */
+	public static ByteString mapByteString(File src) throws IOException {
+		return ByteString.wrap(mapAllBytes(src));
+	}
+
 	/**
 	 * Reads up to the requested number of bytes and blocks until they are all read or EOF is reached.
 	 *
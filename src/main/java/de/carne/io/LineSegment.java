@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Line aligned segment of a text file as provided by {@linkplain MappedLineReader}.
+ * <p>
+ * The segment's lines are provided as {@linkplain CharSequence}s backed directly by the mapped file content. Lines
+ * consisting of ASCII characters only are never copied. Any other line is decoded on first access. Line terminators
+ * ({@code "\n"} as well as {@code "\r\n"}) are not part of the provided lines.
+ */
+public final class LineSegment {
+
+	private final FileChannel src;
+	private final long position;
+	private final long length;
+	private final Charset charset;
+
+	LineSegment(FileChannel src, long position, long length, Charset charset) {
+		this.src = src;
+		this.position = position;
+		this.length = length;
+		this.charset = charset;
+	}
+
+	/**
+	 * Gets the segment's position within the file.
+	 *
+	 * @return the segment's position within the file.
+	 */
+	public long position() {
+		return this.position;
+	}
+
+	/**
+	 * Gets the segment's length in bytes.
+	 *
+	 * @return the segment's length in bytes.
+	 */
+	public long length() {
+		return this.length;
+	}
+
+	/**
+	 * Maps the segment's content into memory.
+	 *
+	 * @return the mapped content.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public ByteBuffer map() throws IOException {
+		return this.src.map(FileChannel.MapMode.READ_ONLY, this.position, this.length);
+	}
+
+	/**
+	 * Maps the segment's content into memory and invokes an action for each line.
+	 *
+	 * @param action the action to invoke for each line.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void forEachLine(Consumer<? super CharSequence> action) throws IOException {
+		new LineSpliterator(map(), this.charset).forEachRemaining(action);
+	}
+
+	/**
+	 * Maps the segment's content into memory and provides the lines as a sequential {@linkplain Stream}.
+	 *
+	 * @return the {@linkplain Stream} providing the segment's lines.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public Stream<CharSequence> lines() throws IOException {
+		return StreamSupport.stream(new LineSpliterator(map(), this.charset), false);
+	}
+
+	@Override
+	public String toString() {
+		return "[" + this.position + ":" + (this.position + this.length) + "]";
+	}
+
+	private static final class LineSpliterator extends Spliterators.AbstractSpliterator<CharSequence> {
+
+		private final ByteBuffer bytes;
+		private final Charset charset;
+		private int lineStart = 0;
+
+		LineSpliterator(ByteBuffer bytes, Charset charset) {
+			super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+			this.bytes = bytes;
+			this.charset = charset;
+		}
+
+		@Override
+		public boolean tryAdvance(@Nullable Consumer<? super CharSequence> action) {
+			int limit = this.bytes.limit();
+			boolean advanced = false;
+
+			if (this.lineStart < limit) {
+				int lineEnd = this.lineStart;
+				boolean ascii = true;
+
+				while (lineEnd < limit) {
+					byte b = this.bytes.get(lineEnd);
+
+					if (b == '\n') {
+						break;
+					}
+					ascii &= b >= 0;
+					lineEnd++;
+				}
+
+				int nextLineStart = Math.min(lineEnd + 1, limit);
+
+				if (lineEnd > this.lineStart && this.bytes.get(lineEnd - 1) == '\r') {
+					lineEnd--;
+				}
+				if (action != null) {
+					action.accept(new MappedLine(this.bytes, this.lineStart, lineEnd - this.lineStart,
+							ascii ? null : this.charset));
+				}
+				this.lineStart = nextLineStart;
+				advanced = true;
+			}
+			return advanced;
+		}
+
+	}
+
+}
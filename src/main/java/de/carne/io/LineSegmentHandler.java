@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.io.IOException;
+
+/**
+ * Handler interface used to process the {@linkplain LineSegment}s of a {@linkplain MappedLineReader} in parallel.
+ */
+@FunctionalInterface
+public interface LineSegmentHandler {
+
+	/**
+	 * Processes a single {@linkplain LineSegment}.
+	 *
+	 * @param segment the {@linkplain LineSegment} to process.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	void handle(LineSegment segment) throws IOException;
+
+}
@@ -53,4 +53,9 @@ public class MD5Checksum extends MessageDigestChecksum {
 		return new MD5Checksum(MessageDigest.getInstance(MESSAGE_DIGEST_ALGORITHM, provider));
 	}
 
+	@Override
+	public MD5Checksum copy() {
+		return new MD5Checksum(cloneMessageDigest());
+	}
+
 }
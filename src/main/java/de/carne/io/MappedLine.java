@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * {@linkplain CharSequence} view of a single line within a mapped {@linkplain LineSegment}.
+ * <p>
+ * Pure ASCII lines are accessed directly from the underlying bytes. Any other line is decoded on first access.
+ */
+final class MappedLine implements CharSequence {
+
+	private final ByteBuffer bytes;
+	private final int offset;
+	private final int byteLength;
+	private final @Nullable Charset charset;
+	private @Nullable String decoded = null;
+
+	MappedLine(ByteBuffer bytes, int offset, int byteLength, @Nullable Charset charset) {
+		this.bytes = bytes;
+		this.offset = offset;
+		this.byteLength = byteLength;
+		this.charset = charset;
+	}
+
+	@Override
+	public int length() {
+		return (this.charset != null ? decode().length() : this.byteLength);
+	}
+
+	@Override
+	public char charAt(int index) {
+		char c;
+
+		if (this.charset != null) {
+			c = decode().charAt(index);
+		} else {
+			Objects.checkIndex(index, this.byteLength);
+			c = (char) this.bytes.get(this.offset + index);
+		}
+		return c;
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		CharSequence subSequence;
+
+		if (this.charset != null) {
+			subSequence = decode().subSequence(start, end);
+		} else {
+			Objects.checkFromToIndex(start, end, this.byteLength);
+			subSequence = new MappedLine(this.bytes, this.offset + start, end - start, null);
+		}
+		return subSequence;
+	}
+
+	@Override
+	public String toString() {
+		return decode();
+	}
+
+	private String decode() {
+		String checkedDecoded = this.decoded;
+
+		if (checkedDecoded == null) {
+			byte[] lineBytes = new byte[this.byteLength];
+
+			this.bytes.duplicate().position(this.offset).get(lineBytes);
+
+			Charset checkedCharset = this.charset;
+
+			checkedDecoded = new String(lineBytes, checkedCharset != null ? checkedCharset : StandardCharsets.US_ASCII);
+			this.decoded = checkedDecoded;
+		}
+		return checkedDecoded;
+	}
+
+}
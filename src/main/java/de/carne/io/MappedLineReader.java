@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+import de.carne.util.Check;
+import de.carne.util.function.FunctionException;
+
+/**
+ * Parallel line reader for (huge) text files.
+ * <p>
+ * The file is split into roughly equal sized {@linkplain LineSegment}s whose boundaries are aligned to the line
+ * boundaries. The segments are mapped into memory and processed in parallel (either as a parallel {@linkplain Stream}
+ * of lines or via segment callbacks). Lines are decoded lazily (see {@linkplain LineSegment}).
+ * <p>
+ * Only ASCII compatible charsets (like UTF-8 or ISO-8859-1) are supported, as line boundaries are detected on byte
+ * level.
+ */
+public final class MappedLineReader {
+
+	private static final long MIN_SEGMENT_SIZE = 1l << 16;
+	private static final long DEFAULT_SEGMENT_SIZE = 1l << 20;
+	private static final long MAX_SEGMENT_SIZE = 1l << 30;
+	private static final int SEGMENTS_PER_THREAD = 4;
+
+	private final FileChannel src;
+	private final Charset charset;
+
+	/**
+	 * Constructs a new {@linkplain MappedLineReader} instance.
+	 *
+	 * @param src the {@linkplain FileChannel} to read from.
+	 * @param charset the {@linkplain Charset} to use for decoding (must be ASCII compatible).
+	 */
+	public MappedLineReader(FileChannel src, Charset charset) {
+		Check.isTrue(Arrays.equals("\r\n".getBytes(charset), new byte[] { '\r', '\n' }), "Unsupported charset: {0}",
+				charset);
+
+		this.src = src;
+		this.charset = charset;
+	}
+
+	/**
+	 * Splits the file into line aligned segments.
+	 * <p>
+	 * The number of returned segments may be lower than the requested number (as segments are at least 64 KiB unless
+	 * the file is smaller) or higher (as a single segment is limited to 1 GiB).
+	 *
+	 * @param segmentCount the requested number of segments.
+	 * @return the segments (in file order).
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public List<LineSegment> segments(int segmentCount) throws IOException {
+		Check.isTrue(segmentCount > 0);
+
+		long size = this.src.size();
+		long count = Math.max(segmentCount, (size + MAX_SEGMENT_SIZE - 1) / MAX_SEGMENT_SIZE);
+		long targetSize = Math.max(size / count, MIN_SEGMENT_SIZE);
+		List<LineSegment> segments = new ArrayList<>();
+		long segmentStart = 0;
+
+		while (segmentStart < size) {
+			long segmentEnd = (size - segmentStart > targetSize ? nextLineStart(segmentStart + targetSize - 1, size)
+					: size);
+
+			segments.add(new LineSegment(this.src, segmentStart, segmentEnd - segmentStart, this.charset));
+			segmentStart = segmentEnd;
+		}
+		return segments;
+	}
+
+	/**
+	 * Provides the file's lines as a parallel {@linkplain Stream}.
+	 * <p>
+	 * The number of segments is derived from the file size and the common {@linkplain ForkJoinPool}'s parallelism.
+	 * I/O errors occurring during segment mapping are reported as {@linkplain UncheckedIOException}.
+	 *
+	 * @return the parallel {@linkplain Stream} providing the file's lines.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public Stream<CharSequence> lines() throws IOException {
+		return segments(defaultSegmentCount(ForkJoinPool.commonPool())).parallelStream().flatMap(segment -> {
+			try {
+				return segment.lines();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * Processes the file's segments in parallel using the common {@linkplain ForkJoinPool}.
+	 *
+	 * @param handler the {@linkplain LineSegmentHandler} to invoke for each segment.
+	 * @throws IOException if an I/O error occurs.
+	 * @see #forEachSegment(LineSegmentHandler, ForkJoinPool)
+	 */
+	public void forEachSegment(LineSegmentHandler handler) throws IOException {
+		forEachSegment(handler, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Processes the file's segments in parallel.
+	 * <p>
+	 * The number of segments is derived from the file size and the submitted {@linkplain ForkJoinPool}'s parallelism.
+	 *
+	 * @param handler the {@linkplain LineSegmentHandler} to invoke for each segment.
+	 * @param pool the {@linkplain ForkJoinPool} to use for segment processing.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void forEachSegment(LineSegmentHandler handler, ForkJoinPool pool) throws IOException {
+		List<LineSegment> segments = segments(defaultSegmentCount(pool));
+
+		try {
+			pool.invoke(new SegmentTask(handler, segments, 0, segments.size()));
+		} catch (FunctionException e) {
+			throw e.rethrow(IOException.class);
+		}
+	}
+
+	private int defaultSegmentCount(ForkJoinPool pool) throws IOException {
+		long maxCount = Math.max(this.src.size() / DEFAULT_SEGMENT_SIZE, 1);
+
+		return (int) Math.min(pool.getParallelism() * (long) SEGMENTS_PER_THREAD, maxCount);
+	}
+
+	private long nextLineStart(long position, long size) throws IOException {
+		ByteBuffer buffer = BufferPool.HEAP.acquire();
+		long lineStart = size;
+
+		try {
+			long readPosition = position;
+
+			while (lineStart == size && readPosition < size) {
+				int read = this.src.read(buffer, readPosition);
+
+				if (read < 0) {
+					break;
+				}
+				for (int bufferIndex = 0; bufferIndex < read; bufferIndex++) {
+					if (buffer.get(bufferIndex) == '\n') {
+						lineStart = readPosition + bufferIndex + 1;
+						break;
+					}
+				}
+				buffer.clear();
+				readPosition += read;
+			}
+		} finally {
+			BufferPool.HEAP.release(buffer);
+		}
+		return Math.min(lineStart, size);
+	}
+
+	private static class SegmentTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -2480683290462932436L;
+
+		private final transient LineSegmentHandler handler;
+		private final transient List<LineSegment> segments;
+		private final int from;
+		private final int to;
+
+		SegmentTask(LineSegmentHandler handler, List<LineSegment> segments, int from, int to) {
+			this.handler = handler;
+			this.segments = segments;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			int count = this.to - this.from;
+
+			if (count > 1) {
+				int middle = this.from + count / 2;
+
+				invokeAll(new SegmentTask(this.handler, this.segments, this.from, middle),
+						new SegmentTask(this.handler, this.segments, middle, this.to));
+			} else if (count == 1) {
+				try {
+					this.handler.handle(this.segments.get(this.from));
+				} catch (IOException e) {
+					throw new FunctionException(e);
+				}
+			}
+		}
+
+	}
+
+}
@@ -60,4 +60,18 @@ public abstract class MessageDigestChecksum implements Checksum {
 		return this.messageDigest.digest();
 	}
 
+	/**
+	 * Clones the underlying {@linkplain MessageDigest} including its intermediate state (see {@linkplain #copy()}).
+	 *
+	 * @return the cloned {@linkplain MessageDigest}.
+	 * @throws UnsupportedOperationException if the underlying {@linkplain MessageDigest} is not cloneable.
+	 */
+	protected MessageDigest cloneMessageDigest() {
+		try {
+			return (MessageDigest) this.messageDigest.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new UnsupportedOperationException(this.messageDigest.getAlgorithm() + " digest is not cloneable", e);
+		}
+	}
+
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Pipelined stream copy running the read and the write stage concurrently.
+ * <p>
+ * The reader stage fills buffers taken from a small ring and hands them over to the writer stage, which drains them
+ * and returns them to the ring. The bounded ring provides the necessary backpressure in both directions.
+ */
+final class PipelinedCopy {
+
+	private static final int RING_SIZE = 4;
+	private static final int RING_BUFFER_SIZE = Math.min(Defaults.DEFAULT_BUFFER_SIZE << 4, Defaults.MAX_BUFFER_SIZE);
+
+	// Marker buffer used to signal EOF to the writer stage and abort to the reader stage
+	private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+	private final OutputStream dst;
+	private final InputStream src;
+	private final List<ByteBuffer> buffers = new ArrayList<>(RING_SIZE);
+	private final BlockingQueue<ByteBuffer> emptyBuffers = new ArrayBlockingQueue<>(RING_SIZE + 1);
+	private final BlockingQueue<ByteBuffer> filledBuffers = new ArrayBlockingQueue<>(RING_SIZE + 2);
+	private final CompletableFuture<Long> result = new CompletableFuture<>();
+	private final AtomicInteger activeStages = new AtomicInteger(2);
+	private volatile @Nullable Exception readException = null;
+
+	private PipelinedCopy(OutputStream dst, InputStream src) {
+		this.dst = dst;
+		this.src = src;
+		for (int bufferIndex = 0; bufferIndex < RING_SIZE; bufferIndex++) {
+			ByteBuffer buffer = BufferPool.HEAP.acquire(RING_BUFFER_SIZE);
+
+			this.buffers.add(buffer);
+			this.emptyBuffers.add(buffer);
+		}
+	}
+
+	static CompletableFuture<Long> start(OutputStream dst, InputStream src, Executor executor) {
+		PipelinedCopy copy = new PipelinedCopy(dst, src);
+
+		// Cancelling or failing the copy releases both stages as soon as possible
+		copy.result.whenComplete((copied, exception) -> {
+			if (exception != null) {
+				copy.emptyBuffers.offer(END_OF_STREAM);
+				copy.filledBuffers.offer(END_OF_STREAM);
+			}
+		});
+		if (copy.startStage(executor, copy::runReader)) {
+			copy.startStage(executor, copy::runWriter);
+		} else {
+			// Writer stage is never started
+			copy.stageFinished();
+		}
+		return copy.result;
+	}
+
+	private boolean startStage(Executor executor, Runnable stage) {
+		boolean started = false;
+
+		try {
+			executor.execute(stage);
+			started = true;
+		} catch (RejectedExecutionException e) {
+			// Failing the copy also stops an already running reader stage
+			this.result.completeExceptionally(e);
+			stageFinished();
+		}
+		return started;
+	}
+
+	private void runReader() {
+		try {
+			ByteBuffer buffer;
+
+			while ((buffer = this.emptyBuffers.take()) != END_OF_STREAM && !this.result.isDone()) {
+				int read;
+
+				do {
+					read = this.src.read(buffer.array(), 0, buffer.capacity());
+				} while (read == 0);
+				if (read < 0) {
+					break;
+				}
+				buffer.clear().limit(read);
+				this.filledBuffers.put(buffer);
+			}
+		} catch (IOException | RuntimeException e) {
+			this.readException = e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.readException = new InterruptedIOException("Pipelined copy interrupted");
+		} finally {
+			this.filledBuffers.offer(END_OF_STREAM);
+			stageFinished();
+		}
+	}
+
+	private void runWriter() {
+		try {
+			long copied = 0;
+			ByteBuffer buffer;
+
+			while ((buffer = this.filledBuffers.take()) != END_OF_STREAM) {
+				int length = buffer.remaining();
+
+				this.dst.write(buffer.array(), 0, length);
+				copied += length;
+				this.emptyBuffers.put(buffer);
+			}
+
+			Exception checkedReadException = this.readException;
+
+			if (checkedReadException != null) {
+				this.result.completeExceptionally(checkedReadException);
+			} else {
+				this.result.complete(copied);
+			}
+		} catch (IOException | RuntimeException e) {
+			this.result.completeExceptionally(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.result.completeExceptionally(new InterruptedIOException("Pipelined copy interrupted"));
+		} finally {
+			stageFinished();
+		}
+	}
+
+	private void stageFinished() {
+		if (this.activeStages.decrementAndGet() == 0) {
+			for (ByteBuffer buffer : this.buffers) {
+				BufferPool.HEAP.release(buffer);
+			}
+		}
+	}
+
+}
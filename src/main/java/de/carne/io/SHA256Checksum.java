@@ -53,4 +53,9 @@ public class SHA256Checksum extends MessageDigestChecksum {
 		return new SHA256Checksum(MessageDigest.getInstance(MESSAGE_DIGEST_ALGORITHM, provider));
 	}
 
+	@Override
+	public SHA256Checksum copy() {
+		return new SHA256Checksum(cloneMessageDigest());
+	}
+
 }
@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.carne.util.Check;
+import de.carne.util.function.FunctionException;
+
+/**
+ * Parallel tree hash (Merkle tree) of a {@linkplain FileChannel}'s content.
+ * <p>
+ * The channel's content is split into fixed size leaves which are hashed in parallel on a {@linkplain ForkJoinPool}
+ * directly from the mapped file regions. The resulting leaf hashes are combined pairwise (level by level) into the
+ * root hash. Leaf hashes are computed as {@code H(0x00 || leaf data)} and node hashes as
+ * {@code H(0x01 || left || right)}. An unpaired node is promoted to the next level unchanged. An empty channel is
+ * represented by a single empty leaf.
+ * <p>
+ * The individual leaf hashes are retained to support partial re-verification via
+ * {@linkplain #rehash(FileChannel, long, long)} and {@linkplain #diffLeaves(TreeHash)}.
+ */
+public final class TreeHash {
+
+	/**
+	 * The default leaf size.
+	 */
+	public static final int DEFAULT_LEAF_SIZE = 4 * 1024 * 1024;
+
+	private static final byte LEAF_PREFIX = 0x00;
+	private static final byte NODE_PREFIX = 0x01;
+
+	private final ChecksumFactory checksumFactory;
+	private final int leafSize;
+	private final long size;
+	private final byte[][] leafHashes;
+	private final byte[] rootHash;
+
+	private TreeHash(ChecksumFactory checksumFactory, int leafSize, long size, byte[][] leafHashes)
+			throws GeneralSecurityException {
+		this.checksumFactory = checksumFactory;
+		this.leafSize = leafSize;
+		this.size = size;
+		this.leafHashes = leafHashes;
+		this.rootHash = combine(checksumFactory.newChecksum(), leafHashes);
+	}
+
+	/**
+	 * Computes the tree hash of a {@linkplain FileChannel}'s content using the default leaf size and the common
+	 * {@linkplain ForkJoinPool}.
+	 *
+	 * @param src the {@linkplain FileChannel} to hash.
+	 * @param checksumFactory the {@linkplain ChecksumFactory} to use for leaf and node hashing.
+	 * @return the computed {@linkplain TreeHash}.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws GeneralSecurityException if the checksum algorithm is not available.
+	 */
+	public static TreeHash compute(FileChannel src, ChecksumFactory checksumFactory)
+			throws IOException, GeneralSecurityException {
+		return compute(src, DEFAULT_LEAF_SIZE, checksumFactory, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Computes the tree hash of a {@linkplain FileChannel}'s content.
+	 *
+	 * @param src the {@linkplain FileChannel} to hash.
+	 * @param leafSize the leaf size to use.
+	 * @param checksumFactory the {@linkplain ChecksumFactory} to use for leaf and node hashing.
+	 * @param pool the {@linkplain ForkJoinPool} to use for leaf hashing.
+	 * @return the computed {@linkplain TreeHash}.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws GeneralSecurityException if the checksum algorithm is not available.
+	 */
+	public static TreeHash compute(FileChannel src, int leafSize, ChecksumFactory checksumFactory, ForkJoinPool pool)
+			throws IOException, GeneralSecurityException {
+		Check.isTrue(leafSize > 0);
+
+		long size = src.size();
+		byte[][] leafHashes = new byte[leafCount(size, leafSize)][];
+		int[] leafIndexes = new int[leafHashes.length];
+
+		Arrays.setAll(leafIndexes, leafIndex -> leafIndex);
+		hashLeaves(pool, new LeafHasher(src, leafSize, size, checksumFactory, leafHashes, leafIndexes, 0,
+				leafIndexes.length));
+		return new TreeHash(checksumFactory, leafSize, size, leafHashes);
+	}
+
+	/**
+	 * Re-computes the tree hash after a region of the given {@linkplain FileChannel} has been modified (using the
+	 * common {@linkplain ForkJoinPool}).
+	 *
+	 * @param src the {@linkplain FileChannel} to re-hash.
+	 * @param position the position of the modified region.
+	 * @param length the length of the modified region.
+	 * @return the re-computed {@linkplain TreeHash}.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws GeneralSecurityException if the checksum algorithm is not available.
+	 * @see #rehash(FileChannel, long, long, ForkJoinPool)
+	 */
+	public TreeHash rehash(FileChannel src, long position, long length) throws IOException, GeneralSecurityException {
+		return rehash(src, position, length, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Re-computes the tree hash after a region of the given {@linkplain FileChannel} has been modified.
+	 * <p>
+	 * Only the leaves overlapping the modified region as well as the leaves affected by a size change of the channel
+	 * are re-hashed. All other leaf hashes are taken over from this instance.
+	 *
+	 * @param src the {@linkplain FileChannel} to re-hash.
+	 * @param position the position of the modified region.
+	 * @param length the length of the modified region.
+	 * @param pool the {@linkplain ForkJoinPool} to use for leaf hashing.
+	 * @return the re-computed {@linkplain TreeHash}.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws GeneralSecurityException if the checksum algorithm is not available.
+	 */
+	public TreeHash rehash(FileChannel src, long position, long length, ForkJoinPool pool)
+			throws IOException, GeneralSecurityException {
+		Check.isTrue(0 <= position);
+		Check.isTrue(0 <= length);
+
+		long newSize = src.size();
+		byte[][] newLeafHashes = new byte[leafCount(newSize, this.leafSize)][];
+		int[] leafIndexes = new int[newLeafHashes.length];
+		int leafIndexCount = 0;
+
+		for (int leafIndex = 0; leafIndex < newLeafHashes.length; leafIndex++) {
+			if (isLeafUnchanged(leafIndex, newSize, position, length)) {
+				newLeafHashes[leafIndex] = this.leafHashes[leafIndex];
+			} else {
+				leafIndexes[leafIndexCount] = leafIndex;
+				leafIndexCount++;
+			}
+		}
+		hashLeaves(pool, new LeafHasher(src, this.leafSize, newSize, this.checksumFactory, newLeafHashes, leafIndexes,
+				0, leafIndexCount));
+		return new TreeHash(this.checksumFactory, this.leafSize, newSize, newLeafHashes);
+	}
+
+	private boolean isLeafUnchanged(int leafIndex, long newSize, long position, long length) {
+		boolean unchanged = leafIndex < this.leafHashes.length;
+
+		if (unchanged) {
+			long leafStart = (long) leafIndex * this.leafSize;
+			long leafEnd = leafStart + this.leafSize;
+
+			unchanged = Math.min(leafEnd, this.size) == Math.min(leafEnd, newSize)
+					&& (length == 0 || position >= leafEnd || position + length <= leafStart);
+		}
+		return unchanged;
+	}
+
+	/**
+	 * Determines the leaves differing between this and another {@linkplain TreeHash}.
+	 * <p>
+	 * Leaves only present in one of the two instances are considered different.
+	 *
+	 * @param other the {@linkplain TreeHash} to compare with (must have been computed using the same leaf size).
+	 * @return the indexes of the differing leaves.
+	 */
+	public BitSet diffLeaves(TreeHash other) {
+		Check.isTrue(this.leafSize == other.leafSize);
+
+		int maxLeafCount = Math.max(this.leafHashes.length, other.leafHashes.length);
+		int minLeafCount = Math.min(this.leafHashes.length, other.leafHashes.length);
+		BitSet diff = new BitSet(maxLeafCount);
+
+		for (int leafIndex = 0; leafIndex < minLeafCount; leafIndex++) {
+			if (!Arrays.equals(this.leafHashes[leafIndex], other.leafHashes[leafIndex])) {
+				diff.set(leafIndex);
+			}
+		}
+		diff.set(minLeafCount, maxLeafCount);
+		return diff;
+	}
+
+	/**
+	 * Gets the leaf size used for hashing.
+	 *
+	 * @return the leaf size used for hashing.
+	 */
+	public int leafSize() {
+		return this.leafSize;
+	}
+
+	/**
+	 * Gets the number of hashed bytes.
+	 *
+	 * @return the number of hashed bytes.
+	 */
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * Gets the number of leaves.
+	 *
+	 * @return the number of leaves.
+	 */
+	public int leafCount() {
+		return this.leafHashes.length;
+	}
+
+	/**
+	 * Gets the hash of a single leaf.
+	 *
+	 * @param leafIndex the index of the leaf to get the hash for.
+	 * @return the leaf hash.
+	 */
+	public byte[] leafHash(int leafIndex) {
+		return this.leafHashes[leafIndex].clone();
+	}
+
+	/**
+	 * Gets all leaf hashes.
+	 *
+	 * @return the leaf hashes (in file order).
+	 */
+	public List<byte[]> leafHashes() {
+		List<byte[]> hashes = new ArrayList<>(this.leafHashes.length);
+
+		for (byte[] leafHash : this.leafHashes) {
+			hashes.add(leafHash.clone());
+		}
+		return hashes;
+	}
+
+	/**
+	 * Gets the root hash.
+	 *
+	 * @return the root hash.
+	 */
+	public byte[] rootHash() {
+		return this.rootHash.clone();
+	}
+
+	private static int leafCount(long size, int leafSize) throws IOException {
+		long leafCount = Math.max((size + leafSize - 1) / leafSize, 1);
+
+		if (leafCount > Integer.MAX_VALUE) {
+			throw new IOException("Leaf size " + leafSize + " too small for size " + size);
+		}
+		return (int) leafCount;
+	}
+
+	private static void hashLeaves(ForkJoinPool pool, LeafHasher hasher) throws IOException, GeneralSecurityException {
+		try {
+			pool.invoke(hasher);
+		} catch (FunctionException e) {
+			throw e.rethrow(IOException.class, GeneralSecurityException.class);
+		}
+	}
+
+	private static byte[] combine(Checksum checksum, byte[][] leafHashes) {
+		byte[][] level = leafHashes;
+
+		while (level.length > 1) {
+			byte[][] nextLevel = new byte[(level.length + 1) / 2][];
+
+			for (int nodeIndex = 0; nodeIndex < nextLevel.length; nodeIndex++) {
+				int leftIndex = nodeIndex * 2;
+
+				if (leftIndex + 1 < level.length) {
+					checksum.update(NODE_PREFIX);
+					checksum.update(level[leftIndex]);
+					checksum.update(level[leftIndex + 1]);
+					nextLevel[nodeIndex] = checksum.getValue();
+				} else {
+					nextLevel[nodeIndex] = level[leftIndex];
+				}
+			}
+			level = nextLevel;
+		}
+		return level[0].clone();
+	}
+
+	private static class LeafHasher extends RecursiveAction {
+
+		private static final long serialVersionUID = -6129893581718329545L;
+
+		private final transient FileChannel src;
+		private final int leafSize;
+		private final long size;
+		private final transient ChecksumFactory checksumFactory;
+		private final byte[][] leafHashes;
+		private final int[] leafIndexes;
+		private final int from;
+		private final int to;
+
+		LeafHasher(FileChannel src, int leafSize, long size, ChecksumFactory checksumFactory, byte[][] leafHashes,
+				int[] leafIndexes, int from, int to) {
+			this.src = src;
+			this.leafSize = leafSize;
+			this.size = size;
+			this.checksumFactory = checksumFactory;
+			this.leafHashes = leafHashes;
+			this.leafIndexes = leafIndexes;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			int count = this.to - this.from;
+
+			if (count > 1) {
+				int middle = this.from + count / 2;
+
+				invokeAll(
+						new LeafHasher(this.src, this.leafSize, this.size, this.checksumFactory, this.leafHashes,
+								this.leafIndexes, this.from, middle),
+						new LeafHasher(this.src, this.leafSize, this.size, this.checksumFactory, this.leafHashes,
+								this.leafIndexes, middle, this.to));
+			} else if (count == 1) {
+				try {
+					hashLeaf(this.leafIndexes[this.from]);
+				} catch (IOException | GeneralSecurityException e) {
+					throw new FunctionException(e);
+				}
+			}
+		}
+
+		private void hashLeaf(int leafIndex) throws IOException, GeneralSecurityException {
+			Checksum checksum = this.checksumFactory.newChecksum();
+			long leafPosition = (long) leafIndex * this.leafSize;
+			long leafLength = Math.min(this.size - leafPosition, this.leafSize);
+
+			checksum.update(LEAF_PREFIX);
+			if (leafLength > 0) {
+				ByteBuffer leaf = this.src.map(FileChannel.MapMode.READ_ONLY, leafPosition, leafLength);
+
+				checksum.update(leaf);
+			}
+			this.leafHashes[leafIndex] = checksum.getValue();
+		}
+
+	}
+
+}
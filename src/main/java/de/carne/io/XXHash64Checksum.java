@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import de.carne.util.Check;
+
+/**
+ * xxHash64 based checksum generator.
+ * <p>
+ * xxHash64 is a fast non-cryptographic hash algorithm. The generated checksum value is the 64 bit hash in big-endian
+ * byte order (the canonical representation).
+ */
+public class XXHash64Checksum implements Checksum {
+
+	private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	private static final long PRIME1 = 0x9E3779B185EBCA87l;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4Fl;
+	private static final long PRIME3 = 0x165667B19E3779F9l;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63l;
+	private static final long PRIME5 = 0x27D4EB2F165667C5l;
+
+	private static final int STRIPE_SIZE = 32;
+	private static final int STATE_HEADER_SIZE = 6 * Long.BYTES;
+
+	private long seed;
+	private final byte[] stripe = new byte[STRIPE_SIZE];
+	private int stripeLength;
+	private long totalLength;
+	private long v1;
+	private long v2;
+	private long v3;
+	private long v4;
+
+	private XXHash64Checksum(long seed) {
+		this.seed = seed;
+		reset();
+	}
+
+	/**
+	 * Gets a {@linkplain XXHash64Checksum} instance for checksum generation (using seed {@code 0}).
+	 *
+	 * @return a {@linkplain XXHash64Checksum} instance for checksum generation.
+	 */
+	public static XXHash64Checksum getInstance() {
+		return new XXHash64Checksum(0);
+	}
+
+	/**
+	 * Gets a {@linkplain XXHash64Checksum} instance for checksum generation.
+	 *
+	 * @param seed the seed to use.
+	 * @return a {@linkplain XXHash64Checksum} instance for checksum generation.
+	 */
+	public static XXHash64Checksum getInstance(long seed) {
+		return new XXHash64Checksum(seed);
+	}
+
+	@Override
+	public final void reset() {
+		this.stripeLength = 0;
+		this.totalLength = 0;
+		this.v1 = this.seed + PRIME1 + PRIME2;
+		this.v2 = this.seed + PRIME2;
+		this.v3 = this.seed;
+		this.v4 = this.seed - PRIME1;
+	}
+
+	@Override
+	public void update(byte b) {
+		this.stripe[this.stripeLength] = b;
+		this.stripeLength++;
+		this.totalLength++;
+		if (this.stripeLength == STRIPE_SIZE) {
+			processStripe(this.stripe, 0);
+			this.stripeLength = 0;
+		}
+	}
+
+	@Override
+	public void update(byte[] bs) {
+		update(bs, 0, bs.length);
+	}
+
+	@Override
+	public void update(byte[] bs, int off, int len) {
+		int position = off;
+		int limit = off + len;
+
+		this.totalLength += len;
+		if (this.stripeLength > 0) {
+			int fillLength = Math.min(STRIPE_SIZE - this.stripeLength, len);
+
+			System.arraycopy(bs, position, this.stripe, this.stripeLength, fillLength);
+			this.stripeLength += fillLength;
+			position += fillLength;
+			if (this.stripeLength < STRIPE_SIZE) {
+				return;
+			}
+			processStripe(this.stripe, 0);
+			this.stripeLength = 0;
+		}
+		while (limit - position >= STRIPE_SIZE) {
+			processStripe(bs, position);
+			position += STRIPE_SIZE;
+		}
+		this.stripeLength = limit - position;
+		System.arraycopy(bs, position, this.stripe, 0, this.stripeLength);
+	}
+
+	@Override
+	public void update(ByteBuffer bs) {
+		if (bs.hasArray()) {
+			int position = bs.position();
+			int length = bs.remaining();
+
+			update(bs.array(), bs.arrayOffset() + position, length);
+			bs.position(position + length);
+		} else {
+			updateBuffer(bs);
+		}
+	}
+
+	private void updateBuffer(ByteBuffer bs) {
+		int remaining = bs.remaining();
+
+		this.totalLength += remaining;
+		if (this.stripeLength > 0) {
+			int fillLength = Math.min(STRIPE_SIZE - this.stripeLength, remaining);
+
+			bs.get(this.stripe, this.stripeLength, fillLength);
+			this.stripeLength += fillLength;
+			if (this.stripeLength < STRIPE_SIZE) {
+				return;
+			}
+			processStripe(this.stripe, 0);
+			this.stripeLength = 0;
+		}
+
+		// Read the stripes directly from the buffer (e.g. a mapped file region) without copying
+		ByteBuffer leBuffer = bs.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int position = leBuffer.position();
+		int limit = leBuffer.limit();
+
+		while (limit - position >= STRIPE_SIZE) {
+			this.v1 = round(this.v1, leBuffer.getLong(position));
+			this.v2 = round(this.v2, leBuffer.getLong(position + 8));
+			this.v3 = round(this.v3, leBuffer.getLong(position + 16));
+			this.v4 = round(this.v4, leBuffer.getLong(position + 24));
+			position += STRIPE_SIZE;
+		}
+		bs.position(position);
+		this.stripeLength = limit - position;
+		bs.get(this.stripe, 0, this.stripeLength);
+	}
+
+	private void processStripe(byte[] bs, int off) {
+		this.v1 = round(this.v1, (long) LONG_LE.get(bs, off));
+		this.v2 = round(this.v2, (long) LONG_LE.get(bs, off + 8));
+		this.v3 = round(this.v3, (long) LONG_LE.get(bs, off + 16));
+		this.v4 = round(this.v4, (long) LONG_LE.get(bs, off + 24));
+	}
+
+	private static long round(long acc, long input) {
+		return Long.rotateLeft(acc + input * PRIME2, 31) * PRIME1;
+	}
+
+	private static long mergeRound(long acc, long val) {
+		return ((acc ^ round(0, val)) * PRIME1) + PRIME4;
+	}
+
+	/**
+	 * Finalizes the checksum generation, returns the result as a {@code long} value and resets the generator.
+	 *
+	 * @return the generated checksum.
+	 */
+	public long getLongValue() {
+		long hash;
+
+		if (this.totalLength >= STRIPE_SIZE) {
+			hash = Long.rotateLeft(this.v1, 1) + Long.rotateLeft(this.v2, 7) + Long.rotateLeft(this.v3, 12)
+					+ Long.rotateLeft(this.v4, 18);
+			hash = mergeRound(hash, this.v1);
+			hash = mergeRound(hash, this.v2);
+			hash = mergeRound(hash, this.v3);
+			hash = mergeRound(hash, this.v4);
+		} else {
+			hash = this.seed + PRIME5;
+		}
+		hash += this.totalLength;
+
+		int position = 0;
+
+		while (position + 8 <= this.stripeLength) {
+			hash ^= round(0, (long) LONG_LE.get(this.stripe, position));
+			hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+			position += 8;
+		}
+		if (position + 4 <= this.stripeLength) {
+			hash ^= Integer.toUnsignedLong((int) INT_LE.get(this.stripe, position)) * PRIME1;
+			hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+			position += 4;
+		}
+		while (position < this.stripeLength) {
+			hash ^= (this.stripe[position] & 0xffl) * PRIME5;
+			hash = Long.rotateLeft(hash, 11) * PRIME1;
+			position++;
+		}
+		hash ^= hash >>> 33;
+		hash *= PRIME2;
+		hash ^= hash >>> 29;
+		hash *= PRIME3;
+		hash ^= hash >>> 32;
+		reset();
+		return hash;
+	}
+
+	@Override
+	public boolean isSnapshotSupported() {
+		return true;
+	}
+
+	@Override
+	public byte[] snapshot() {
+		ByteBuffer state = ByteBuffer.allocate(STATE_HEADER_SIZE + this.stripeLength);
+
+		state.putLong(this.seed);
+		state.putLong(this.totalLength);
+		state.putLong(this.v1);
+		state.putLong(this.v2);
+		state.putLong(this.v3);
+		state.putLong(this.v4);
+		state.put(this.stripe, 0, this.stripeLength);
+		return state.array();
+	}
+
+	@Override
+	public void restore(byte[] state) {
+		Check.isTrue(STATE_HEADER_SIZE <= state.length && state.length < STATE_HEADER_SIZE + STRIPE_SIZE,
+				"Invalid state length: {0}", state.length);
+
+		ByteBuffer stateBuffer = ByteBuffer.wrap(state);
+		long restoreSeed = stateBuffer.getLong();
+		long restoreTotalLength = stateBuffer.getLong();
+		int restoreStripeLength = stateBuffer.remaining() - 4 * Long.BYTES;
+
+		Check.isTrue(restoreTotalLength >= 0 && (restoreTotalLength % STRIPE_SIZE) == restoreStripeLength,
+				"Invalid data length: {0}", restoreTotalLength);
+
+		this.seed = restoreSeed;
+		this.totalLength = restoreTotalLength;
+		this.v1 = stateBuffer.getLong();
+		this.v2 = stateBuffer.getLong();
+		this.v3 = stateBuffer.getLong();
+		this.v4 = stateBuffer.getLong();
+		this.stripeLength = restoreStripeLength;
+		stateBuffer.get(this.stripe, 0, restoreStripeLength);
+	}
+
+	@Override
+	public byte[] getValue() {
+		long value = getLongValue();
+		byte[] bytes = new byte[Long.BYTES];
+
+		for (int byteIndex = bytes.length - 1; byteIndex >= 0; byteIndex--) {
+			bytes[byteIndex] = (byte) value;
+			value >>>= 8;
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.io;
+
+import java.nio.ByteBuffer;
+
+import de.carne.util.Check;
+
+/**
+ * Base class for {@linkplain java.util.zip.Checksum} based checksum generators.
+ * <p>
+ * The generated checksum value is the 32 bit checksum in big-endian byte order. Snapshots are supported by combining
+ * the restored checksum with the checksum of the subsequently fed data.
+ */
+public abstract class ZipChecksum implements Checksum {
+
+	private static final int STATE_SIZE = Integer.BYTES + Long.BYTES;
+
+	private final java.util.zip.Checksum checksum;
+	private long restoredValue = 0;
+	private long restoredLength = 0;
+	private long length = 0;
+
+	/**
+	 * Constructs a new {@linkplain ZipChecksum} instance.
+	 *
+	 * @param checksum the {@linkplain java.util.zip.Checksum} instance to use for checksum generation.
+	 */
+	protected ZipChecksum(java.util.zip.Checksum checksum) {
+		this.checksum = checksum;
+	}
+
+	/**
+	 * Combines two checksum values into the checksum value of the concatenated data.
+	 *
+	 * @param value1 the checksum value of the first data block.
+	 * @param value2 the checksum value of the second data block.
+	 * @param length2 the length of the second data block.
+	 * @return the checksum value of the concatenated data.
+	 */
+	protected abstract long combine(long value1, long value2, long length2);
+
+	@Override
+	public void reset() {
+		this.checksum.reset();
+		this.restoredValue = 0;
+		this.restoredLength = 0;
+		this.length = 0;
+	}
+
+	@Override
+	public void update(byte b) {
+		this.checksum.update(b);
+		this.length++;
+	}
+
+	@Override
+	public void update(byte[] bs) {
+		this.checksum.update(bs, 0, bs.length);
+		this.length += bs.length;
+	}
+
+	@Override
+	public void update(byte[] bs, int off, int len) {
+		this.checksum.update(bs, off, len);
+		this.length += len;
+	}
+
+	@Override
+	public void update(ByteBuffer bs) {
+		this.length += bs.remaining();
+		this.checksum.update(bs);
+	}
+
+	@Override
+	public byte[] getValue() {
+		int value = (int) currentValue();
+
+		reset();
+		return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+	}
+
+	@Override
+	public boolean isSnapshotSupported() {
+		return true;
+	}
+
+	@Override
+	public byte[] snapshot() {
+		ByteBuffer state = ByteBuffer.allocate(STATE_SIZE);
+
+		state.putInt((int) currentValue());
+		state.putLong(this.restoredLength + this.length);
+		return state.array();
+	}
+
+	@Override
+	public void restore(byte[] state) {
+		Check.isTrue(state.length == STATE_SIZE, "Invalid state length: {0}", state.length);
+
+		ByteBuffer stateBuffer = ByteBuffer.wrap(state);
+		long value = Integer.toUnsignedLong(stateBuffer.getInt());
+		long restoreLength = stateBuffer.getLong();
+
+		Check.isTrue(restoreLength >= 0, "Invalid data length: {0}", restoreLength);
+
+		reset();
+		this.restoredValue = value;
+		this.restoredLength = restoreLength;
+	}
+
+	private long currentValue() {
+		long value = this.checksum.getValue();
+
+		if (this.restoredLength > 0) {
+			value = combine(this.restoredValue, value, this.length);
+		}
+		return value;
+	}
+
+	/**
+	 * Combines two CRC-32 values (computed using the given reflected polynomial) into the CRC-32 value of the
+	 * concatenated data.
+	 * <p>
+	 * The combination is performed in {@code O(log(length2))} by applying the zero byte operator as a GF(2) matrix.
+	 *
+	 * @param polynomial the reflected CRC-32 polynomial.
+	 * @param crc1 the CRC-32 value of the first data block.
+	 * @param crc2 the CRC-32 value of the second data block.
+	 * @param length2 the length of the second data block.
+	 * @return the CRC-32 value of the concatenated data.
+	 */
+	static long combineCrc32(int polynomial, long crc1, long crc2, long length2) {
+		long combined = crc1;
+
+		if (length2 > 0) {
+			int[] even = new int[32];
+			int[] odd = new int[32];
+
+			// Operator for one zero bit
+			odd[0] = polynomial;
+			for (int row = 1; row < 32; row++) {
+				odd[row] = 1 << (row - 1);
+			}
+			// Operators for two and four zero bits
+			gf2MatrixSquare(even, odd);
+			gf2MatrixSquare(odd, even);
+
+			long remaining = length2;
+			int crc = (int) crc1;
+
+			do {
+				gf2MatrixSquare(even, odd);
+				if ((remaining & 1) != 0) {
+					crc = gf2MatrixTimes(even, crc);
+				}
+				remaining >>>= 1;
+				if (remaining != 0) {
+					gf2MatrixSquare(odd, even);
+					if ((remaining & 1) != 0) {
+						crc = gf2MatrixTimes(odd, crc);
+					}
+					remaining >>>= 1;
+				}
+			} while (remaining != 0);
+			combined = Integer.toUnsignedLong(crc ^ (int) crc2);
+		}
+		return combined;
+	}
+
+	private static int gf2MatrixTimes(int[] matrix, int vector) {
+		int sum = 0;
+		int remaining = vector;
+		int row = 0;
+
+		while (remaining != 0) {
+			if ((remaining & 1) != 0) {
+				sum ^= matrix[row];
+			}
+			remaining >>>= 1;
+			row++;
+		}
+		return sum;
+	}
+
+	private static void gf2MatrixSquare(int[] square, int[] matrix) {
+		for (int row = 0; row < 32; row++) {
+			square[row] = gf2MatrixTimes(matrix, matrix[row]);
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.nio.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.carne.nio.file.attribute.FileAttributes;
+
+/**
+ * Group commit for atomic file writes.
+ * <p>
+ * Each file is written to a temporary file within the target directory, forced to the storage device and then moved
+ * atomically to it's final name. Hence readers either see the previous or the new file content, but never a partially
+ * written file. To make the move itself durable, the containing directory has to be forced to the storage device as
+ * well. This directory sync is deferred until {@linkplain #commit()} (or {@linkplain #close()}) is invoked and is
+ * performed only once per directory, regardless of how many files have been written to it.
+ * <p>
+ * Instances of this class may be shared by multiple threads. A commit covers all writes that have been completed
+ * before the commit started.
+ */
+public final class AtomicWriteBatch implements Closeable {
+
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+	private final Set<Path> pendingDirectories = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Writes a file atomically.
+	 * <p>
+	 * The file becomes visible under it's final name as soon as this function returns. It's durability is however
+	 * only guaranteed after the next {@linkplain #commit()}.
+	 *
+	 * @param file the file to write.
+	 * @param data the data to write.
+	 * @return the written file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public Path write(Path file, byte[] data) throws IOException {
+		return write(file, ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * Writes a file atomically.
+	 * <p>
+	 * The file becomes visible under it's final name as soon as this function returns. It's durability is however
+	 * only guaranteed after the next {@linkplain #commit()}.
+	 *
+	 * @param file the file to write.
+	 * @param data the data to write.
+	 * @return the written file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public Path write(Path file, ByteBuffer... data) throws IOException {
+		Path absoluteFile = file.toAbsolutePath();
+		Path directory = absoluteFile.getParent();
+		Path tempFile = Files.createTempFile(directory, "." + absoluteFile.getFileName() + ".", TEMP_FILE_SUFFIX,
+				FileAttributes.userFileDefault(directory));
+		boolean moved = false;
+
+		try {
+			try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+				long remaining = 0;
+
+				for (ByteBuffer buffer : data) {
+					remaining += buffer.remaining();
+				}
+				// The complete content is known in advance, hence we issue as few (gathering) writes as possible to
+				// let the file system allocate the required space at once.
+				while (remaining > 0) {
+					remaining -= channel.write(data);
+				}
+				channel.force(false);
+			}
+			Files.move(tempFile, absoluteFile, StandardCopyOption.ATOMIC_MOVE);
+			moved = true;
+		} finally {
+			if (!moved) {
+				Files.deleteIfExists(tempFile);
+			}
+		}
+		this.pendingDirectories.add(directory);
+		return file;
+	}
+
+	/**
+	 * Gets the number of directories with pending (not yet committed) writes.
+	 *
+	 * @return the number of directories with pending writes.
+	 */
+	public int pendingDirectoryCount() {
+		return this.pendingDirectories.size();
+	}
+
+	/**
+	 * Commits all pending writes by forcing the affected directories to the storage device.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void commit() throws IOException {
+		Iterator<Path> directoryIterator = this.pendingDirectories.iterator();
+
+		while (directoryIterator.hasNext()) {
+			Path directory = directoryIterator.next();
+
+			directoryIterator.remove();
+			try {
+				syncDirectory(directory);
+			} catch (IOException e) {
+				this.pendingDirectories.add(directory);
+				throw e;
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		commit();
+	}
+
+	private static void syncDirectory(Path directory) throws IOException {
+		// Directories can only be opened and forced on POSIX systems (e.g. not on Windows)
+		if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+			try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+				channel.force(true);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.nio.file;
+
+import java.time.Duration;
+
+import de.carne.text.MemoryUnitFormat;
+
+/**
+ * Statistics of a directory tree copy operation (see {@linkplain FileUtil#copyTree(java.nio.file.Path,
+ * java.nio.file.Path, java.nio.file.CopyOption...)}).
+ */
+public final class CopyTreeStats {
+
+	private final long fileCount;
+	private final long directoryCount;
+	private final long byteCount;
+	private final Duration elapsed;
+
+	CopyTreeStats(long fileCount, long directoryCount, long byteCount, Duration elapsed) {
+		this.fileCount = fileCount;
+		this.directoryCount = directoryCount;
+		this.byteCount = byteCount;
+		this.elapsed = elapsed;
+	}
+
+	/**
+	 * Gets the number of copied files (including any non-directory file like symbolic links).
+	 *
+	 * @return the number of copied files.
+	 */
+	public long fileCount() {
+		return this.fileCount;
+	}
+
+	/**
+	 * Gets the number of copied directories.
+	 *
+	 * @return the number of copied directories.
+	 */
+	public long directoryCount() {
+		return this.directoryCount;
+	}
+
+	/**
+	 * Gets the number of copied bytes.
+	 *
+	 * @return the number of copied bytes.
+	 */
+	public long byteCount() {
+		return this.byteCount;
+	}
+
+	/**
+	 * Gets the elapsed time of the copy operation.
+	 *
+	 * @return the elapsed time of the copy operation.
+	 */
+	public Duration elapsed() {
+		return this.elapsed;
+	}
+
+	/**
+	 * Gets the copy throughput.
+	 *
+	 * @return the copy throughput in bytes per second.
+	 */
+	public double throughput() {
+		long elapsedNanos = Math.max(this.elapsed.toNanos(), 1);
+
+		return this.byteCount * 1000000000.0 / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		MemoryUnitFormat format = MemoryUnitFormat.getMemoryUnitInstance();
+
+		return this.fileCount + " files, " + this.directoryCount + " directories, " + format.format(this.byteCount)
+				+ " in " + this.elapsed.toMillis() + " ms (" + format.format(throughput()) + "/s)";
+	}
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.nio.file;
+
+/**
+ * Error handling policies for parallel deletion of directory trees (see
+ * {@linkplain FileUtil#delete(java.nio.file.Path, java.util.concurrent.ForkJoinPool, DeletePolicy)}).
+ */
+public enum DeletePolicy {
+
+	/**
+	 * Stop the deletion as soon as the first error occurs and report this error.
+	 */
+	FAIL_FAST,
+
+	/**
+	 * Delete as much as possible and report all errors at the end.
+	 */
+	COLLECT_ERRORS
+
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.nio.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.io.BufferPool;
+import de.carne.io.Checksum;
+import de.carne.io.ChecksumFactory;
+import de.carne.util.ByteString;
+import de.carne.util.Check;
+import de.carne.util.function.FunctionException;
+
+/**
+ * Duplicate file finder.
+ * <p>
+ * Duplicates are determined in stages, each stage only processing the candidates left over by the previous one:
+ * <ol>
+ * <li>The file trees are scanned (see {@linkplain FileScanner}) and the regular files are grouped by size.</li>
+ * <li>For each file sharing its size with another file, the first and last {@linkplain #partialSize(int)} bytes are
+ * hashed and the files are grouped by this partial hash.</li>
+ * <li>For each file still sharing its partial hash with another file, the full content is hashed and the files are
+ * grouped by this full hash.</li>
+ * </ol>
+ * The hash stages run in parallel on a {@linkplain ForkJoinPool}. Large files are hashed via mapped I/O. Files not
+ * exceeding two times the partial size are completely covered by the partial hash stage and are not read again.
+ * <p>
+ * As files are identified by their file key (if available) each file is considered only once, even if it is reachable
+ * via multiple paths (e.g. via overlapping roots or hard links).
+ */
+public final class DuplicateFinder {
+
+	/**
+	 * The default number of bytes hashed at the beginning and at the end of a file during the partial hash stage.
+	 */
+	public static final int DEFAULT_PARTIAL_SIZE = 16 * 1024;
+
+	private static final long MAPPED_FILE_SIZE = 1l << 20;
+	private static final int MAX_WINDOW_SIZE = 1 << 28;
+
+	private final ChecksumFactory checksumFactory;
+	private int partialSize = DEFAULT_PARTIAL_SIZE;
+	private long minSize = 1;
+	private boolean followLinks = false;
+
+	/**
+	 * Constructs a new {@linkplain DuplicateFinder} instance.
+	 *
+	 * @param checksumFactory the {@linkplain ChecksumFactory} providing the {@linkplain Checksum} instances to use for
+	 * hashing.
+	 */
+	public DuplicateFinder(ChecksumFactory checksumFactory) {
+		this.checksumFactory = checksumFactory;
+	}
+
+	/**
+	 * Sets the number of bytes hashed at the beginning and at the end of a file during the partial hash stage.
+	 *
+	 * @param size the number of bytes to hash at the beginning and at the end of a file.
+	 * @return the updated {@linkplain DuplicateFinder}.
+	 */
+	public DuplicateFinder partialSize(int size) {
+		Check.isTrue(size > 0);
+
+		this.partialSize = size;
+		return this;
+	}
+
+	/**
+	 * Sets the minimum size of the files to consider.
+	 * <p>
+	 * By default empty files are ignored (minimum size {@code 1}).
+	 *
+	 * @param size the minimum size of the files to consider.
+	 * @return the updated {@linkplain DuplicateFinder}.
+	 */
+	public DuplicateFinder minSize(long size) {
+		Check.isTrue(size >= 0);
+
+		this.minSize = size;
+		return this;
+	}
+
+	/**
+	 * Sets the symbolic link policy.
+	 *
+	 * @param follow whether to follow symbolic links ({@code true}) or to ignore them ({@code false}).
+	 * @return the updated {@linkplain DuplicateFinder}.
+	 * @see FileScanner#followLinks(boolean)
+	 */
+	public DuplicateFinder followLinks(boolean follow) {
+		this.followLinks = follow;
+		return this;
+	}
+
+	/**
+	 * Finds the duplicate files within the given file trees (using the common {@linkplain ForkJoinPool}).
+	 *
+	 * @param roots the root paths of the file trees to search.
+	 * @return the found duplicate groups (sorted by decreasing file size).
+	 * @throws IOException if an I/O error occurs.
+	 * @throws GeneralSecurityException if a security error occurs while hashing.
+	 * @see #find(ForkJoinPool, Path...)
+	 */
+	public List<DuplicateGroup> find(Path... roots) throws IOException, GeneralSecurityException {
+		return find(ForkJoinPool.commonPool(), roots);
+	}
+
+	/**
+	 * Finds the duplicate files within the given file trees.
+	 *
+	 * @param pool the {@linkplain ForkJoinPool} to use for hashing.
+	 * @param roots the root paths of the file trees to search.
+	 * @return the found duplicate groups (sorted by decreasing file size).
+	 * @throws IOException if an I/O error occurs.
+	 * @throws GeneralSecurityException if a security error occurs while hashing.
+	 */
+	public List<DuplicateGroup> find(ForkJoinPool pool, Path... roots) throws IOException, GeneralSecurityException {
+		List<List<Candidate>> sizeGroups = groupBySize(pool.getParallelism(), roots);
+		List<List<Candidate>> partialHashGroups = groupByHash(pool, sizeGroups, true);
+		List<List<Candidate>> fullHashGroups = groupByHash(pool, partialHashGroups, false);
+		List<DuplicateGroup> duplicates = new ArrayList<>(fullHashGroups.size());
+
+		for (List<Candidate> group : fullHashGroups) {
+			Candidate first = group.get(0);
+			List<Path> paths = group.stream().map(candidate -> candidate.path).sorted().collect(Collectors.toList());
+
+			duplicates.add(new DuplicateGroup(first.size, first.getDigest(), paths));
+		}
+		duplicates.sort(Comparator.comparingLong(DuplicateGroup::size).reversed()
+				.thenComparing(duplicate -> duplicate.paths().get(0)));
+		return duplicates;
+	}
+
+	private List<List<Candidate>> groupBySize(int parallelism, Path... roots) throws IOException {
+		Set<Object> fileKeys = new HashSet<>();
+		Map<Long, List<Candidate>> sizeGroups = new HashMap<>();
+
+		for (Path root : roots) {
+			try (Stream<ScannedFile> files = new FileScanner(root).parallelism(parallelism)
+					.followLinks(this.followLinks).stream()) {
+				files.forEach(file -> {
+					BasicFileAttributes attributes = file.attributes();
+					Object fileKey = attributes.fileKey();
+
+					if (attributes.isRegularFile() && attributes.size() >= this.minSize
+							&& fileKeys.add(fileKey != null ? fileKey : file.path().toAbsolutePath().normalize())) {
+						sizeGroups.computeIfAbsent(attributes.size(), size -> new ArrayList<>())
+								.add(new Candidate(file.path(), attributes.size()));
+					}
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+		return sizeGroups.values().stream().filter(group -> group.size() > 1).collect(Collectors.toList());
+	}
+
+	private List<List<Candidate>> groupByHash(ForkJoinPool pool, List<List<Candidate>> groups, boolean partial)
+			throws IOException, GeneralSecurityException {
+		long fullyCoveredSize = 2l * this.partialSize;
+		List<Candidate> pending = new ArrayList<>();
+
+		for (List<Candidate> group : groups) {
+			if (partial || group.get(0).size > fullyCoveredSize) {
+				pending.addAll(group);
+			}
+		}
+		invokeHasher(pool, new Hasher(this.checksumFactory, this.partialSize, partial, pending, 0, pending.size()));
+
+		List<List<Candidate>> hashGroups = new ArrayList<>();
+
+		for (List<Candidate> group : groups) {
+			if (partial || group.get(0).size > fullyCoveredSize) {
+				Map<ByteString, List<Candidate>> digestGroups = new HashMap<>();
+
+				for (Candidate candidate : group) {
+					digestGroups.computeIfAbsent(candidate.getDigest(), digest -> new ArrayList<>()).add(candidate);
+				}
+				for (List<Candidate> digestGroup : digestGroups.values()) {
+					if (digestGroup.size() > 1) {
+						hashGroups.add(digestGroup);
+					}
+				}
+			} else {
+				hashGroups.add(group);
+			}
+		}
+		return hashGroups;
+	}
+
+	private static void invokeHasher(ForkJoinPool pool, Hasher hasher) throws IOException, GeneralSecurityException {
+		try {
+			pool.invoke(hasher);
+		} catch (FunctionException e) {
+			throw e.rethrow(IOException.class, GeneralSecurityException.class);
+		}
+	}
+
+	private static final class Candidate {
+
+		final Path path;
+		final long size;
+		@Nullable ByteString digest = null;
+
+		Candidate(Path path, long size) {
+			this.path = path;
+			this.size = size;
+		}
+
+		ByteString getDigest() {
+			ByteString checkedDigest = this.digest;
+
+			if (checkedDigest == null) {
+				throw new IllegalStateException("Candidate not yet hashed: " + this.path);
+			}
+			return checkedDigest;
+		}
+
+	}
+
+	private static class Hasher extends RecursiveAction {
+
+		private static final long serialVersionUID = 8415553916467322361L;
+
+		private final transient ChecksumFactory checksumFactory;
+		private final int partialSize;
+		private final boolean partial;
+		private final transient List<Candidate> candidates;
+		private final int from;
+		private final int to;
+
+		Hasher(ChecksumFactory checksumFactory, int partialSize, boolean partial, List<Candidate> candidates, int from,
+				int to) {
+			this.checksumFactory = checksumFactory;
+			this.partialSize = partialSize;
+			this.partial = partial;
+			this.candidates = candidates;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			int count = this.to - this.from;
+
+			if (count > 1) {
+				int middle = this.from + count / 2;
+
+				invokeAll(
+						new Hasher(this.checksumFactory, this.partialSize, this.partial, this.candidates, this.from,
+								middle),
+						new Hasher(this.checksumFactory, this.partialSize, this.partial, this.candidates, middle,
+								this.to));
+			} else if (count == 1) {
+				try {
+					hashCandidate(this.candidates.get(this.from));
+				} catch (IOException | GeneralSecurityException e) {
+					throw new FunctionException(e);
+				}
+			}
+		}
+
+		private void hashCandidate(Candidate candidate) throws IOException, GeneralSecurityException {
+			Checksum checksum = this.checksumFactory.newChecksum();
+
+			try (FileChannel channel = FileChannel.open(candidate.path, StandardOpenOption.READ)) {
+				if (this.partial) {
+					long headLength = Math.min(candidate.size, this.partialSize);
+					long tailPosition = Math.max(headLength, candidate.size - this.partialSize);
+
+					hashRegion(checksum, channel, 0, headLength);
+					hashRegion(checksum, channel, tailPosition, candidate.size - tailPosition);
+				} else {
+					hashRegion(checksum, channel, 0, candidate.size);
+				}
+			}
+			candidate.digest = ByteString.wrap(checksum.getValue());
+		}
+
+		private static void hashRegion(Checksum checksum, FileChannel channel, long position, long length)
+				throws IOException {
+			if (length >= MAPPED_FILE_SIZE) {
+				long windowPosition = position;
+				long remaining = length;
+
+				while (remaining > 0) {
+					int windowLength = (int) Math.min(remaining, MAX_WINDOW_SIZE);
+
+					checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, windowPosition, windowLength));
+					windowPosition += windowLength;
+					remaining -= windowLength;
+				}
+			} else if (length > 0) {
+				ByteBuffer buffer = BufferPool.HEAP.acquire();
+
+				try {
+					long readPosition = position;
+					long remaining = length;
+
+					while (remaining > 0) {
+						buffer.clear().limit((int) Math.min(remaining, buffer.capacity()));
+
+						int read = channel.read(buffer, readPosition);
+
+						if (read < 0) {
+							break;
+						}
+						buffer.flip();
+						checksum.update(buffer);
+						readPosition += read;
+						remaining -= read;
+					}
+				} finally {
+					BufferPool.HEAP.release(buffer);
+				}
+			}
+		}
+
+	}
+
+}
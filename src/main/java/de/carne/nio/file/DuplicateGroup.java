@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.nio.file;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import de.carne.util.ByteString;
+
+/**
+ * Group of files with identical content as provided by {@linkplain DuplicateFinder}.
+ */
+public final class DuplicateGroup {
+
+	private final long size;
+	private final ByteString digest;
+	private final List<Path> paths;
+
+	DuplicateGroup(long size, ByteString digest, List<Path> paths) {
+		this.size = size;
+		this.digest = digest;
+		this.paths = Collections.unmodifiableList(paths);
+	}
+
+	/**
+	 * Gets the size of each of the grouped files.
+	 *
+	 * @return the size of each of the grouped files.
+	 */
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * Gets the digest of the grouped files' content.
+	 *
+	 * @return the digest of the grouped files' content.
+	 */
+	public byte[] digest() {
+		return this.digest.bytes();
+	}
+
+	/**
+	 * Gets the paths of the grouped files (sorted in natural order).
+	 *
+	 * @return the paths of the grouped files.
+	 */
+	public List<Path> paths() {
+		return this.paths;
+	}
+
+	/**
+	 * Gets the number of bytes wasted by the duplicates (all but one of the grouped files).
+	 *
+	 * @return the number of bytes wasted by the duplicates.
+	 */
+	public long wastedBytes() {
+		return this.size * (this.paths.size() - 1);
+	}
+
+	@Override
+	public String toString() {
+		return this.size + ":" + this.paths;
+	}
+
+}
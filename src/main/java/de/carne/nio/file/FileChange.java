@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.nio.file;
+
+import java.nio.file.Path;
+
+/**
+ * File change as reported by {@linkplain FileWatcher}.
+ */
+public final class FileChange {
+
+	private final Path path;
+	private final FileChangeKind kind;
+
+	FileChange(Path path, FileChangeKind kind) {
+		this.path = path;
+		this.kind = kind;
+	}
+
+	/**
+	 * Gets the path of the changed file or directory.
+	 *
+	 * @return the path of the changed file or directory.
+	 */
+	public Path path() {
+		return this.path;
+	}
+
+	/**
+	 * Gets the kind of change.
+	 *
+	 * @return the kind of change.
+	 */
+	public FileChangeKind kind() {
+		return this.kind;
+	}
+
+	@Override
+	public String toString() {
+		return this.kind + ":" + this.path;
+	}
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.nio.file;
+
+/**
+ * Kinds of file changes reported by {@linkplain FileWatcher}.
+ */
+public enum FileChangeKind {
+
+	/**
+	 * The file or directory has been created.
+	 */
+	CREATED,
+
+	/**
+	 * The file or directory has been modified.
+	 */
+	MODIFIED,
+
+	/**
+	 * The file or directory has been deleted.
+	 */
+	DELETED,
+
+	/**
+	 * Events for the directory have been lost. Any file within the directory may have changed.
+	 */
+	OVERFLOW
+
+}
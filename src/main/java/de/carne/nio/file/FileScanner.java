@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.nio.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.util.Check;
+
+/**
+ * Parallel file tree scanner.
+ * <p>
+ * Directories are listed and their entries' attributes are read concurrently on a dedicated {@linkplain ForkJoinPool}
+ * with the configured parallelism. The scan results are handed over to the consumer via a bounded queue and are
+ * provided as a lazily consumed {@linkplain Stream} (in no particular order). If the consumer falls behind, the
+ * scanner is blocked until the consumer catches up again. Closing the stream cancels any still running scan.
+ * <p>
+ * Like {@linkplain Files#walk(Path, int, java.nio.file.FileVisitOption...)} the scan includes the root path itself at
+ * depth {@code 0} (unless a filter is set) and reports the first I/O error encountered to the consumer as an
+ * {@linkplain UncheckedIOException}. Any unchecked exception raised during the scan is reported to the consumer as is.
+ */
+public final class FileScanner {
+
+	private static final int QUEUE_CAPACITY = 4096;
+	private static final int STAT_BATCH_SIZE = 64;
+
+	private final Path root;
+	private int parallelism = Math.max(4, Runtime.getRuntime().availableProcessors());
+	private int maxDepth = Integer.MAX_VALUE;
+	private @Nullable PathMatcher matcher = null;
+	private boolean followLinks = false;
+
+	/**
+	 * Constructs a new {@linkplain FileScanner} instance.
+	 *
+	 * @param root the root path to scan.
+	 */
+	public FileScanner(Path root) {
+		this.root = root;
+	}
+
+	/**
+	 * Sets the number of concurrent scan threads.
+	 *
+	 * @param scanParallelism the number of concurrent scan threads to use.
+	 * @return the updated {@linkplain FileScanner}.
+	 */
+	public FileScanner parallelism(int scanParallelism) {
+		Check.isTrue(scanParallelism > 0);
+
+		this.parallelism = scanParallelism;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum scan depth.
+	 *
+	 * @param scanMaxDepth the maximum depth to scan ({@code 0} scans the root path only).
+	 * @return the updated {@linkplain FileScanner}.
+	 */
+	public FileScanner maxDepth(int scanMaxDepth) {
+		Check.isTrue(scanMaxDepth >= 0);
+
+		this.maxDepth = scanMaxDepth;
+		return this;
+	}
+
+	/**
+	 * Sets the glob pattern used to filter the scan results.
+	 * <p>
+	 * The glob pattern is matched against the path relative to the root path (see
+	 * {@linkplain java.nio.file.FileSystem#getPathMatcher(String)}). Filtering only affects the reported results. All
+	 * directories are scanned regardless of whether they match the filter.
+	 *
+	 * @param glob the glob pattern to apply.
+	 * @return the updated {@linkplain FileScanner}.
+	 */
+	public FileScanner filter(String glob) {
+		this.matcher = this.root.getFileSystem().getPathMatcher("glob:" + glob);
+		return this;
+	}
+
+	/**
+	 * Sets the symbolic link policy.
+	 * <p>
+	 * If symbolic links are followed, each directory is scanned at most once (hence link cycles are skipped).
+	 *
+	 * @param follow whether to follow symbolic links ({@code true}) or to report them as links ({@code false}).
+	 * @return the updated {@linkplain FileScanner}.
+	 */
+	public FileScanner followLinks(boolean follow) {
+		this.followLinks = follow;
+		return this;
+	}
+
+	/**
+	 * Starts the scan and provides the results as a {@linkplain Stream}.
+	 * <p>
+	 * The returned stream should be closed after use to release the scan resources (e.g. via try-with-resources).
+	 *
+	 * @return the {@linkplain Stream} providing the scan results.
+	 */
+	public Stream<ScannedFile> stream() {
+		Scan scan = new Scan();
+
+		scan.start();
+		return StreamSupport.stream(scan, false).onClose(scan::cancel);
+	}
+
+	private static final Object END_OF_SCAN = new Object();
+
+	private final class Scan extends Spliterators.AbstractSpliterator<ScannedFile> {
+
+		private final BlockingQueue<Object> results = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		private final ForkJoinPool pool = new ForkJoinPool(FileScanner.this.parallelism);
+		private final Path scanRoot = FileScanner.this.root;
+		private final int scanMaxDepth = FileScanner.this.maxDepth;
+		private final @Nullable PathMatcher scanMatcher = FileScanner.this.matcher;
+		private final boolean scanFollowLinks = FileScanner.this.followLinks;
+		private final LinkOption[] linkOptions = (this.scanFollowLinks ? new LinkOption[0]
+				: new LinkOption[] { LinkOption.NOFOLLOW_LINKS });
+		private final Set<Object> visitedDirectories = ConcurrentHashMap.newKeySet();
+		private final AtomicReference<@Nullable RuntimeException> failure = new AtomicReference<>();
+		private volatile boolean cancelled = false;
+		private boolean done = false;
+
+		Scan() {
+			super(Long.MAX_VALUE, Spliterator.NONNULL);
+		}
+
+		void start() {
+			this.pool.execute(() -> {
+				try {
+					new ScanTask(List.of(this.scanRoot), 0).invoke();
+				} catch (CancellationException e) {
+					// Scan has been cancelled by closing the stream
+				} catch (RuntimeException e) {
+					this.failure.compareAndSet(null, e);
+				} finally {
+					offerResult(END_OF_SCAN, true);
+				}
+			});
+		}
+
+		void cancel() {
+			this.cancelled = true;
+			this.pool.shutdownNow();
+			this.results.clear();
+		}
+
+		@Override
+		public boolean tryAdvance(@Nullable Consumer<? super ScannedFile> action) {
+			boolean advanced = false;
+
+			while (!this.done && !advanced) {
+				Object result;
+
+				try {
+					result = this.results.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					cancel();
+					throw new IllegalStateException("Scan interrupted", e);
+				}
+				if (result == END_OF_SCAN) {
+					this.done = true;
+					this.pool.shutdown();
+
+					RuntimeException scanFailure = this.failure.get();
+
+					if (scanFailure != null) {
+						throw scanFailure;
+					}
+				} else {
+					if (action != null) {
+						action.accept((ScannedFile) result);
+					}
+					advanced = true;
+				}
+			}
+			return advanced;
+		}
+
+		boolean isActive() {
+			return !this.cancelled && this.failure.get() == null;
+		}
+
+		void offerResult(Object result, boolean force) {
+			try {
+				while ((force || isActive()) && !this.cancelled
+						&& !this.results.offer(result, 100, TimeUnit.MILLISECONDS)) {
+					// Wait for the consumer to catch up
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		void reportResult(Path path, BasicFileAttributes attributes, int depth) {
+			PathMatcher checkedMatcher = this.scanMatcher;
+
+			if (checkedMatcher == null || (depth > 0 && checkedMatcher.matches(this.scanRoot.relativize(path)))) {
+				offerResult(new ScannedFile(path, attributes), false);
+			}
+		}
+
+		BasicFileAttributes readAttributes(Path path) throws IOException {
+			BasicFileAttributes attributes;
+
+			try {
+				attributes = Files.readAttributes(path, BasicFileAttributes.class, this.linkOptions);
+			} catch (IOException e) {
+				if (!this.scanFollowLinks) {
+					throw e;
+				}
+				// Broken link
+				attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			}
+			return attributes;
+		}
+
+		boolean enterDirectory(BasicFileAttributes attributes, int depth) {
+			boolean enter = attributes.isDirectory() && depth < this.scanMaxDepth;
+
+			if (enter && this.scanFollowLinks) {
+				Object fileKey = attributes.fileKey();
+
+				enter = fileKey == null || this.visitedDirectories.add(fileKey);
+			}
+			return enter;
+		}
+
+		private final class ScanTask extends RecursiveAction {
+
+			private static final long serialVersionUID = -6403786434733787385L;
+
+			private final transient List<Path> paths;
+			private final int depth;
+
+			ScanTask(List<Path> paths, int depth) {
+				this.paths = paths;
+				this.depth = depth;
+			}
+
+			@Override
+			protected void compute() {
+				int pathCount = this.paths.size();
+
+				if (pathCount > STAT_BATCH_SIZE) {
+					int middle = pathCount / 2;
+
+					invokeAll(new ScanTask(this.paths.subList(0, middle), this.depth),
+							new ScanTask(this.paths.subList(middle, pathCount), this.depth));
+				} else {
+					List<ScanTask> directoryTasks = new ArrayList<>();
+
+					for (Path path : this.paths) {
+						if (!isActive()) {
+							break;
+						}
+						try {
+							BasicFileAttributes attributes = readAttributes(path);
+
+							reportResult(path, attributes, this.depth);
+							if (enterDirectory(attributes, this.depth)) {
+								ScanTask directoryTask = new ScanTask(listDirectory(path), this.depth + 1);
+
+								directoryTask.fork();
+								directoryTasks.add(directoryTask);
+							}
+						} catch (IOException e) {
+							Scan.this.failure.compareAndSet(null, new UncheckedIOException(e));
+						}
+					}
+					for (ScanTask directoryTask : directoryTasks) {
+						directoryTask.join();
+					}
+				}
+			}
+
+			private List<Path> listDirectory(Path directory) throws IOException {
+				List<Path> entries = new ArrayList<>();
+
+				try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+					for (Path entry : directoryStream) {
+						entries.add(entry);
+					}
+				} catch (DirectoryIteratorException e) {
+					throw e.getCause();
+				}
+				return entries;
+			}
+
+		}
+
+	}
+
+}
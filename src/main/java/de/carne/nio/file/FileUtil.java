@@ -17,20 +17,31 @@
 package de.carne.nio.file;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.CopyOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
 import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 
+import de.carne.nio.file.attribute.FileAttributes;
+
 /**
  * Utility class providing file related functions.
  */
@@ -40,6 +51,8 @@ public final class FileUtil {
 		// Prevent instantiation
 	}
 
+	private static final String TOMBSTONE_SUFFIX = ".deleted";
+
 	/**
 	 * Gets the temporary directory path.
 	 *
@@ -126,6 +139,187 @@ public final class FileUtil {
 		return deleted;
 	}
 
+	/**
+	 * Deletes a file or directory (including any included file) using parallel deletion of sub directories.
+	 * <p>
+	 * Sibling sub directories are deleted concurrently on the submitted {@linkplain ForkJoinPool}. The
+	 * {@linkplain DeletePolicy} determines whether the deletion stops at the first error or continues and reports all
+	 * errors at the end (the first error is thrown with all further errors attached as suppressed exceptions).
+	 *
+	 * @param fileOrDirectory the file or director to delete.
+	 * @param pool the {@linkplain ForkJoinPool} to use for deletion.
+	 * @param policy the {@linkplain DeletePolicy} to apply.
+	 * @return {@code true} if the file or directory was deleted. {@code false} if the file or directory does not exist.
+	 * @throws IOException if an I/O error occurs during deletion.
+	 */
+	@SuppressWarnings("squid:S3725")
+	public static boolean delete(Path fileOrDirectory, ForkJoinPool pool, DeletePolicy policy) throws IOException {
+		boolean deleted = false;
+
+		if (Files.exists(fileOrDirectory, LinkOption.NOFOLLOW_LINKS)) {
+			deleted = true;
+			if (Files.isDirectory(fileOrDirectory, LinkOption.NOFOLLOW_LINKS)) {
+				new TreeDeleter(pool, policy).run(fileOrDirectory);
+			} else {
+				Files.delete(fileOrDirectory);
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * Deletes a file or directory (including any included file) in the background using the common
+	 * {@linkplain ForkJoinPool}.
+	 *
+	 * @param fileOrDirectory the file or director to delete.
+	 * @return the {@linkplain CompletableFuture} representing the background deletion.
+	 * @throws IOException if an I/O error occurs while renaming the file or directory.
+	 * @see #deleteInBackground(Path, ForkJoinPool)
+	 */
+	public static CompletableFuture<Boolean> deleteInBackground(Path fileOrDirectory) throws IOException {
+		return deleteInBackground(fileOrDirectory, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Deletes a file or directory (including any included file) in the background.
+	 * <p>
+	 * The file or directory is atomically renamed to a hidden tombstone name within the same directory first. Hence it
+	 * is logically deleted when this function returns. The actual deletion of the tombstone is performed in the
+	 * background (see {@linkplain #delete(Path, ForkJoinPool, DeletePolicy)} with policy
+	 * {@linkplain DeletePolicy#COLLECT_ERRORS}).
+	 *
+	 * @param fileOrDirectory the file or director to delete.
+	 * @param pool the {@linkplain ForkJoinPool} to use for deletion.
+	 * @return the {@linkplain CompletableFuture} representing the background deletion. The future's value is
+	 * {@code true} if the file or directory was deleted and {@code false} if the file or directory does not exist. Any
+	 * error occurring during background deletion is reported as an {@linkplain UncheckedIOException}.
+	 * @throws IOException if an I/O error occurs while renaming the file or directory.
+	 */
+	@SuppressWarnings("squid:S3725")
+	public static CompletableFuture<Boolean> deleteInBackground(Path fileOrDirectory, ForkJoinPool pool)
+			throws IOException {
+		CompletableFuture<Boolean> deleted;
+
+		if (Files.exists(fileOrDirectory, LinkOption.NOFOLLOW_LINKS)) {
+			Path absoluteFileOrDirectory = fileOrDirectory.toAbsolutePath();
+			Path parent = absoluteFileOrDirectory.getParent();
+			Path fileName = absoluteFileOrDirectory.getFileName();
+
+			if (parent == null || fileName == null) {
+				throw new IOException("Cannot delete root directory in background: " + fileOrDirectory);
+			}
+
+			Path tombstone = parent.resolve("." + fileName + "." + UUID.randomUUID() + TOMBSTONE_SUFFIX);
+
+			Files.move(absoluteFileOrDirectory, tombstone, StandardCopyOption.ATOMIC_MOVE);
+			deleted = CompletableFuture.supplyAsync(() -> {
+				try {
+					return Boolean.valueOf(delete(tombstone, pool, DeletePolicy.COLLECT_ERRORS));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, pool);
+		} else {
+			deleted = CompletableFuture.completedFuture(Boolean.FALSE);
+		}
+		return deleted;
+	}
+
+	/**
+	 * Writes a file atomically and durably.
+	 * <p>
+	 * The data is written to a temporary file within the same directory, forced to the storage device and then moved
+	 * atomically to the final file name. Use {@linkplain AtomicWriteBatch} directly to share the directory sync among
+	 * multiple writes.
+	 *
+	 * @param file the file to write.
+	 * @param data the data to write.
+	 * @return the written file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static Path writeAtomic(Path file, byte[] data) throws IOException {
+		return writeAtomic(file, ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * Writes a file atomically and durably.
+	 * <p>
+	 * The data is written to a temporary file within the same directory, forced to the storage device and then moved
+	 * atomically to the final file name. Use {@linkplain AtomicWriteBatch} directly to share the directory sync among
+	 * multiple writes.
+	 *
+	 * @param file the file to write.
+	 * @param data the data to write.
+	 * @return the written file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static Path writeAtomic(Path file, ByteBuffer... data) throws IOException {
+		try (AtomicWriteBatch batch = new AtomicWriteBatch()) {
+			return batch.write(file, data);
+		}
+	}
+
+	/**
+	 * Scans a file tree in parallel using the default {@linkplain FileScanner} settings.
+	 * <p>
+	 * Use {@linkplain FileScanner} directly to control the scan parallelism, depth, filter and symbolic link policy.
+	 *
+	 * @param root the root path to scan.
+	 * @return the {@linkplain Stream} providing the scan results (must be closed after use).
+	 */
+	public static Stream<ScannedFile> scan(Path root) {
+		return new FileScanner(root).stream();
+	}
+
+	/**
+	 * Copies a directory tree (or a single file) using the common {@linkplain ForkJoinPool}.
+	 *
+	 * @param source the directory tree or file to copy.
+	 * @param target the target path to copy to.
+	 * @param options the {@linkplain CopyOption}s to use.
+	 * @return the statistics of the copy operation.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws IllegalArgumentException if an unsupported {@linkplain CopyOption} is submitted.
+	 * @see #copyTree(Path, Path, ForkJoinPool, CopyOption...)
+	 */
+	public static CopyTreeStats copyTree(Path source, Path target, CopyOption... options) throws IOException {
+		return copyTree(source, target, ForkJoinPool.commonPool(), options);
+	}
+
+	/**
+	 * Copies a directory tree (or a single file).
+	 * <p>
+	 * The tree is walked sequentially and all directories are created during the walk. The file copies are fanned out
+	 * to the submitted {@linkplain ForkJoinPool}. Large files are copied via {@linkplain FileChannel} transfers. The
+	 * following {@linkplain CopyOption}s are supported:
+	 * <ul>
+	 * <li>{@linkplain StandardCopyOption#REPLACE_EXISTING}: Replace existing target files (existing target directories
+	 * are always re-used).</li>
+	 * <li>{@linkplain StandardCopyOption#COPY_ATTRIBUTES}: Copy file and directory attributes (see
+	 * {@linkplain FileAttributes#copy(Path, Path, LinkOption...)}).</li>
+	 * <li>{@linkplain LinkOption#NOFOLLOW_LINKS}: Copy symbolic links as links (instead of following them).</li>
+	 * </ul>
+	 * Any other {@linkplain CopyOption} (e.g. {@linkplain StandardCopyOption#ATOMIC_MOVE}) is rejected.
+	 *
+	 * @param source the directory tree or file to copy.
+	 * @param target the target path to copy to.
+	 * @param pool the {@linkplain ForkJoinPool} to use for copying.
+	 * @param options the {@linkplain CopyOption}s to use.
+	 * @return the statistics of the copy operation.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws IllegalArgumentException if an unsupported {@linkplain CopyOption} is submitted.
+	 */
+	public static CopyTreeStats copyTree(Path source, Path target, ForkJoinPool pool, CopyOption... options)
+			throws IOException {
+		Path absoluteSource = source.toAbsolutePath().normalize();
+		Path absoluteTarget = target.toAbsolutePath().normalize();
+
+		if (absoluteTarget.startsWith(absoluteSource) && Files.isDirectory(absoluteSource)) {
+			throw new IOException("Cannot copy directory tree " + source + " into itself: " + target);
+		}
+		return new TreeCopier(source, target, pool, options).run();
+	}
+
 	/**
 	 * Splits a path into it's three parts directory, name and extension.
 	 * <p>
@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.nio.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.util.Check;
+import de.carne.util.Exceptions;
+import de.carne.util.logging.Log;
+
+/**
+ * {@linkplain WatchService} based file change watcher.
+ * <p>
+ * The watched directory (and by default all it's sub-directories) are registered with the file system's
+ * {@linkplain WatchService}. Directories created later on are registered as soon as their creation is reported. The
+ * received events are coalesced per path within the configured time window (e.g. a creation followed by any number of
+ * modifications is reported as a single creation) and handed over to the listener in batches via the configured
+ * {@linkplain Executor}.
+ * <p>
+ * If events have been lost (due to an event queue overflow) the affected directory is reported via
+ * {@linkplain FileChangeKind#OVERFLOW} and it's directory tree is re-scanned to register any missed sub-directory.
+ */
+public final class FileWatcher implements Closeable {
+
+	private static final Log LOG = new Log();
+
+	private final Path root;
+	private boolean recursive = true;
+	private Duration window = Duration.ofMillis(100);
+	private Executor executor = Runnable::run;
+	private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+	private volatile @Nullable WatchService watchService = null;
+
+	/**
+	 * Constructs a new {@linkplain FileWatcher} instance.
+	 *
+	 * @param root the directory to watch.
+	 */
+	public FileWatcher(Path root) {
+		this.root = root;
+	}
+
+	/**
+	 * Sets whether the sub-directories of the watched directory are watched as well.
+	 *
+	 * @param watchRecursive whether to watch the sub-directories ({@code true}) or the watched directory only
+	 * ({@code false}).
+	 * @return the updated {@linkplain FileWatcher}.
+	 */
+	public FileWatcher recursive(boolean watchRecursive) {
+		this.recursive = watchRecursive;
+		return this;
+	}
+
+	/**
+	 * Sets the time window used to coalesce events.
+	 * <p>
+	 * The window starts with the first event received after the previous batch has been dispatched.
+	 *
+	 * @param coalesceWindow the time window to use for coalescing events.
+	 * @return the updated {@linkplain FileWatcher}.
+	 */
+	public FileWatcher window(Duration coalesceWindow) {
+		Check.isTrue(!coalesceWindow.isNegative());
+
+		this.window = coalesceWindow;
+		return this;
+	}
+
+	/**
+	 * Sets the {@linkplain Executor} used to invoke the listener.
+	 * <p>
+	 * By default the listener is invoked directly by the watcher thread. If an {@linkplain Executor} with multiple
+	 * threads is set, the listener may receive the batches concurrently and out of order.
+	 *
+	 * @param listenerExecutor the {@linkplain Executor} to use for invoking the listener.
+	 * @return the updated {@linkplain FileWatcher}.
+	 */
+	public FileWatcher executor(Executor listenerExecutor) {
+		this.executor = listenerExecutor;
+		return this;
+	}
+
+	/**
+	 * Starts watching.
+	 * <p>
+	 * All directories to watch are registered before this function returns. Changes are watched by a dedicated daemon
+	 * thread until this watcher is closed.
+	 *
+	 * @param listener the listener to invoke with each batch of coalesced changes.
+	 * @return the started {@linkplain FileWatcher}.
+	 * @throws IOException if an I/O error occurs while registering the directories to watch.
+	 */
+	public FileWatcher start(Consumer<List<FileChange>> listener) throws IOException {
+		Check.isTrue(this.watchService == null, "Watcher already started: {0}", this.root);
+
+		WatchService startedWatchService = this.root.getFileSystem().newWatchService();
+
+		try {
+			registerTree(startedWatchService, this.root, null);
+		} catch (IOException e) {
+			startedWatchService.close();
+			throw e;
+		}
+		this.watchService = startedWatchService;
+
+		Thread watcherThread = new Thread(() -> watch(startedWatchService, listener),
+				FileWatcher.class.getSimpleName() + ":" + this.root);
+
+		watcherThread.setDaemon(true);
+		watcherThread.start();
+		return this;
+	}
+
+	/**
+	 * Gets the number of currently watched directories.
+	 *
+	 * @return the number of currently watched directories.
+	 */
+	public int watchedDirectoryCount() {
+		return this.watchedDirectories.size();
+	}
+
+	/**
+	 * Stops watching.
+	 * <p>
+	 * Changes not yet dispatched to the listener are discarded.
+	 */
+	@Override
+	public void close() throws IOException {
+		WatchService closingWatchService = this.watchService;
+
+		if (closingWatchService != null) {
+			closingWatchService.close();
+			this.watchedDirectories.clear();
+		}
+	}
+
+	private void watch(WatchService service, Consumer<List<FileChange>> listener) {
+		Map<Path, FileChangeKind> changes = new LinkedHashMap<>();
+		long windowNanos = this.window.toNanos();
+		long deadline = 0;
+
+		try {
+			while (true) {
+				WatchKey key = (changes.isEmpty() ? service.take()
+						: service.poll(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS));
+
+				if (key != null) {
+					boolean windowStarted = !changes.isEmpty();
+
+					processKey(service, key, changes);
+					if (!windowStarted && !changes.isEmpty()) {
+						deadline = System.nanoTime() + windowNanos;
+					}
+				}
+				if (!changes.isEmpty() && deadline - System.nanoTime() <= 0) {
+					dispatch(listener, changes);
+					changes = new LinkedHashMap<>();
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			Exceptions.ignore(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void processKey(WatchService service, WatchKey key, Map<Path, FileChangeKind> changes) {
+		Path directory = this.watchedDirectories.get(key);
+
+		if (directory != null) {
+			for (WatchEvent<?> event : key.pollEvents()) {
+				WatchEvent.Kind<?> eventKind = event.kind();
+
+				if (eventKind == StandardWatchEventKinds.OVERFLOW) {
+					recordChange(changes, directory, FileChangeKind.OVERFLOW);
+					registerNewTree(service, directory, null);
+				} else {
+					Path path = directory.resolve((Path) event.context());
+
+					if (eventKind == StandardWatchEventKinds.ENTRY_CREATE) {
+						recordChange(changes, path, FileChangeKind.CREATED);
+						if (this.recursive && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+							registerNewTree(service, path, changes);
+						}
+					} else if (eventKind == StandardWatchEventKinds.ENTRY_MODIFY) {
+						recordChange(changes, path, FileChangeKind.MODIFIED);
+					} else {
+						recordChange(changes, path, FileChangeKind.DELETED);
+					}
+				}
+			}
+		}
+		if (!key.reset()) {
+			this.watchedDirectories.remove(key);
+		}
+	}
+
+	private void registerNewTree(WatchService service, Path directory, @Nullable Map<Path, FileChangeKind> changes) {
+		try {
+			registerTree(service, directory, changes);
+		} catch (IOException e) {
+			// The directory may already have been deleted again (which will be reported separately)
+			LOG.debug(e, "Failed to register directory ''{0}''", directory);
+		}
+	}
+
+	private void registerTree(WatchService service, Path directory, @Nullable Map<Path, FileChangeKind> changes)
+			throws IOException {
+		if (this.recursive) {
+			Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+				@Override
+				public FileVisitResult preVisitDirectory(@Nullable Path dir, @Nullable BasicFileAttributes attrs)
+						throws IOException {
+					Path checkedDir = Objects.requireNonNull(dir);
+
+					registerDirectory(service, checkedDir);
+					if (changes != null && !checkedDir.equals(directory)) {
+						recordChange(changes, checkedDir, FileChangeKind.CREATED);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(@Nullable Path file, @Nullable BasicFileAttributes attrs) {
+					if (changes != null) {
+						recordChange(changes, Objects.requireNonNull(file), FileChangeKind.CREATED);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(@Nullable Path file, @Nullable IOException exc)
+						throws IOException {
+					if (directory.equals(file) && exc != null) {
+						throw exc;
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+			});
+		} else {
+			registerDirectory(service, directory);
+		}
+	}
+
+	private void registerDirectory(WatchService service, Path directory) throws IOException {
+		WatchKey key = directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+		this.watchedDirectories.put(key, directory);
+	}
+
+	private static void recordChange(Map<Path, FileChangeKind> changes, Path path, FileChangeKind kind) {
+		FileChangeKind previousKind = changes.remove(path);
+		@Nullable FileChangeKind coalescedKind;
+
+		if (previousKind == null || kind == FileChangeKind.OVERFLOW) {
+			coalescedKind = kind;
+		} else {
+			switch (previousKind) {
+			case CREATED:
+				// A creation followed by a deletion is no change at all
+				coalescedKind = (kind != FileChangeKind.DELETED ? FileChangeKind.CREATED : null);
+				break;
+			case DELETED:
+				// A deletion followed by a re-creation is a modification
+				coalescedKind = (kind == FileChangeKind.CREATED ? FileChangeKind.MODIFIED : kind);
+				break;
+			case OVERFLOW:
+				coalescedKind = FileChangeKind.OVERFLOW;
+				break;
+			default:
+				coalescedKind = (kind == FileChangeKind.CREATED ? FileChangeKind.MODIFIED : kind);
+			}
+		}
+		if (coalescedKind != null) {
+			changes.put(path, coalescedKind);
+		}
+	}
+
+	private void dispatch(Consumer<List<FileChange>> listener, Map<Path, FileChangeKind> changes) {
+		List<FileChange> batch = new ArrayList<>(changes.size());
+
+		changes.forEach((path, kind) -> batch.add(new FileChange(path, kind)));
+		try {
+			this.executor.execute(() -> {
+				try {
+					listener.accept(batch);
+				} catch (RuntimeException e) {
+					LOG.warning(e, "File change listener failed for ''{0}''", this.root);
+				}
+			});
+		} catch (RuntimeException e) {
+			LOG.warning(e, "Failed to dispatch file changes for ''{0}''", this.root);
+		}
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.nio.file;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * File scan result as provided by {@linkplain FileScanner}.
+ */
+public final class ScannedFile {
+
+	private final Path path;
+	private final BasicFileAttributes attributes;
+
+	ScannedFile(Path path, BasicFileAttributes attributes) {
+		this.path = path;
+		this.attributes = attributes;
+	}
+
+	/**
+	 * Gets the scanned file's path.
+	 *
+	 * @return the scanned file's path.
+	 */
+	public Path path() {
+		return this.path;
+	}
+
+	/**
+	 * Gets the scanned file's attributes.
+	 *
+	 * @return the scanned file's attributes.
+	 */
+	public BasicFileAttributes attributes() {
+		return this.attributes;
+	}
+
+	@Override
+	public String toString() {
+		return this.path.toString();
+	}
+
+}
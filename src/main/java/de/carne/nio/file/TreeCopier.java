@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.nio.file;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.io.IOUtil;
+import de.carne.nio.file.attribute.FileAttributes;
+
+/**
+ * {@linkplain java.nio.file.FileVisitor} implementation performing a parallel directory tree copy.
+ * <p>
+ * The tree is walked sequentially. Directories are created during the walk (hence ahead of their files) while the file
+ * copies are fanned out to a {@linkplain ForkJoinPool} (small files in batches, large files individually). Directory
+ * attributes are copied after all files have been copied.
+ */
+final class TreeCopier extends SimpleFileVisitor<Path> {
+
+	private static final long LARGE_FILE_SIZE = 1l << 20;
+	private static final int BATCH_SIZE = 64;
+
+	private final Path source;
+	private final Path target;
+	private final ForkJoinPool pool;
+	private final boolean replaceExisting;
+	private final boolean copyAttributes;
+	private final boolean followLinks;
+	private final CopyOption[] fileCopyOptions;
+	private final LinkOption[] linkOptions;
+	private final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+	private final List<Path> directories = new ArrayList<>();
+	private final AtomicReference<@Nullable IOException> failure = new AtomicReference<>();
+	private List<Path> batch = new ArrayList<>(BATCH_SIZE);
+	private long fileCount = 0;
+	private long directoryCount = 0;
+	private long byteCount = 0;
+
+	TreeCopier(Path source, Path target, ForkJoinPool pool, CopyOption... options) {
+		boolean replaceExistingOption = false;
+		boolean copyAttributesOption = false;
+		boolean followLinksOption = true;
+
+		for (CopyOption option : options) {
+			if (option == StandardCopyOption.REPLACE_EXISTING) {
+				replaceExistingOption = true;
+			} else if (option == StandardCopyOption.COPY_ATTRIBUTES) {
+				copyAttributesOption = true;
+			} else if (option == LinkOption.NOFOLLOW_LINKS) {
+				followLinksOption = false;
+			} else {
+				throw new IllegalArgumentException("Unsupported copy option: " + option);
+			}
+		}
+		this.source = source;
+		this.target = target;
+		this.pool = pool;
+		this.replaceExisting = replaceExistingOption;
+		this.copyAttributes = copyAttributesOption;
+		this.followLinks = followLinksOption;
+
+		List<CopyOption> fileCopyOptionList = new ArrayList<>();
+
+		if (replaceExistingOption) {
+			fileCopyOptionList.add(StandardCopyOption.REPLACE_EXISTING);
+		}
+		if (!followLinksOption) {
+			fileCopyOptionList.add(LinkOption.NOFOLLOW_LINKS);
+		}
+		this.fileCopyOptions = fileCopyOptionList.toArray(new CopyOption[fileCopyOptionList.size()]);
+		this.linkOptions = (followLinksOption ? new LinkOption[0] : new LinkOption[] { LinkOption.NOFOLLOW_LINKS });
+	}
+
+	CopyTreeStats run() throws IOException {
+		long start = System.nanoTime();
+		Set<FileVisitOption> visitOptions = (this.followLinks ? EnumSet.of(FileVisitOption.FOLLOW_LINKS)
+				: EnumSet.noneOf(FileVisitOption.class));
+
+		try {
+			Files.walkFileTree(this.source, visitOptions, Integer.MAX_VALUE, this);
+			submitBatch();
+		} finally {
+			awaitTasks();
+		}
+
+		IOException copyFailure = this.failure.get();
+
+		if (copyFailure != null) {
+			throw copyFailure;
+		}
+		if (this.copyAttributes) {
+			// Directories have been recorded in post order (children first)
+			for (Path directory : this.directories) {
+				FileAttributes.copy(directory, resolveTarget(directory), this.linkOptions);
+			}
+		}
+		return new CopyTreeStats(this.fileCount, this.directoryCount, this.byteCount,
+				Duration.ofNanos(System.nanoTime() - start));
+	}
+
+	@Override
+	public FileVisitResult preVisitDirectory(@Nullable Path dir, @Nullable BasicFileAttributes attrs)
+			throws IOException {
+		Path targetDir = resolveTarget(Objects.requireNonNull(dir));
+
+		if (!Files.isDirectory(targetDir)) {
+			Files.createDirectory(targetDir);
+		}
+		this.directoryCount++;
+		return continueOrTerminate();
+	}
+
+	@Override
+	public FileVisitResult visitFile(@Nullable Path file, @Nullable BasicFileAttributes attrs) throws IOException {
+		Path checkedFile = Objects.requireNonNull(file);
+		BasicFileAttributes checkedAttrs = Objects.requireNonNull(attrs);
+
+		if (checkedAttrs.isRegularFile()) {
+			this.byteCount += checkedAttrs.size();
+		}
+		this.fileCount++;
+		if (checkedAttrs.isRegularFile() && checkedAttrs.size() >= LARGE_FILE_SIZE) {
+			this.tasks.add(this.pool.submit(() -> runCopy(() -> copyLargeFile(checkedFile))));
+		} else {
+			this.batch.add(checkedFile);
+			if (this.batch.size() >= BATCH_SIZE) {
+				submitBatch();
+			}
+		}
+		return continueOrTerminate();
+	}
+
+	@Override
+	public FileVisitResult postVisitDirectory(@Nullable Path dir, @Nullable IOException exc) throws IOException {
+		if (exc != null) {
+			throw exc;
+		}
+		this.directories.add(Objects.requireNonNull(dir));
+		return continueOrTerminate();
+	}
+
+	private FileVisitResult continueOrTerminate() {
+		return (this.failure.get() == null ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE);
+	}
+
+	private Path resolveTarget(Path path) {
+		return this.target.resolve(this.source.relativize(path).toString());
+	}
+
+	private void submitBatch() {
+		if (!this.batch.isEmpty()) {
+			List<Path> files = this.batch;
+
+			this.batch = new ArrayList<>(BATCH_SIZE);
+			this.tasks.add(this.pool.submit(() -> runCopy(() -> {
+				for (Path file : files) {
+					copySmallFile(file);
+				}
+			})));
+		}
+	}
+
+	private void awaitTasks() {
+		for (ForkJoinTask<?> task : this.tasks) {
+			task.quietlyJoin();
+		}
+		for (ForkJoinTask<?> task : this.tasks) {
+			// Re-throws any unchecked exception
+			task.join();
+		}
+	}
+
+	private interface CopyAction {
+
+		void run() throws IOException;
+
+	}
+
+	private void runCopy(CopyAction action) {
+		if (this.failure.get() == null) {
+			try {
+				action.run();
+			} catch (IOException e) {
+				this.failure.compareAndSet(null, e);
+			}
+		}
+	}
+
+	private void copySmallFile(Path file) throws IOException {
+		Path targetFile = resolveTarget(file);
+
+		Files.copy(file, targetFile, this.fileCopyOptions);
+		if (this.copyAttributes) {
+			FileAttributes.copy(file, targetFile, this.linkOptions);
+		}
+	}
+
+	private void copyLargeFile(Path file) throws IOException {
+		Path targetFile = resolveTarget(file);
+
+		try (FileChannel src = FileChannel.open(file, StandardOpenOption.READ);
+				FileChannel dst = (this.replaceExisting
+						? FileChannel.open(targetFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+								StandardOpenOption.TRUNCATE_EXISTING)
+						: FileChannel.open(targetFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW))) {
+			IOUtil.copyChannel(dst, src);
+		}
+		if (this.copyAttributes) {
+			FileAttributes.copy(file, targetFile, this.linkOptions);
+		}
+	}
+
+}
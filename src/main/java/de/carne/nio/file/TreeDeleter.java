@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.nio.file;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel directory tree deletion.
+ * <p>
+ * Each directory is handled by a dedicated task. The files of a directory are deleted in a batch by the directory's
+ * task, while the sub directories are forked and hence deleted concurrently.
+ */
+final class TreeDeleter {
+
+	private final ForkJoinPool pool;
+	private final DeletePolicy policy;
+	private final Queue<IOException> failures = new ConcurrentLinkedQueue<>();
+
+	TreeDeleter(ForkJoinPool pool, DeletePolicy policy) {
+		this.pool = pool;
+		this.policy = policy;
+	}
+
+	void run(Path directory) throws IOException {
+		this.pool.invoke(new DirectoryDeleter(directory));
+
+		IOException failure = this.failures.poll();
+
+		if (failure != null) {
+			IOException suppressed;
+
+			while ((suppressed = this.failures.poll()) != null) {
+				failure.addSuppressed(suppressed);
+			}
+			throw failure;
+		}
+	}
+
+	private boolean isAborted() {
+		return this.policy == DeletePolicy.FAIL_FAST && !this.failures.isEmpty();
+	}
+
+	private class DirectoryDeleter extends RecursiveTask<Boolean> {
+
+		private static final long serialVersionUID = 3425366213580307307L;
+
+		private final transient Path directory;
+
+		DirectoryDeleter(Path directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		protected Boolean compute() {
+			boolean deleted = false;
+
+			if (!isAborted()) {
+				List<DirectoryDeleter> subDirectoryDeleters = new ArrayList<>();
+				boolean complete = true;
+
+				try (DirectoryStream<Path> entries = Files.newDirectoryStream(this.directory)) {
+					for (Path entry : entries) {
+						if (isAborted()) {
+							complete = false;
+							break;
+						}
+						if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+							DirectoryDeleter subDirectoryDeleter = new DirectoryDeleter(entry);
+
+							subDirectoryDeleter.fork();
+							subDirectoryDeleters.add(subDirectoryDeleter);
+						} else {
+							complete &= deletePath(entry);
+						}
+					}
+				} catch (IOException e) {
+					TreeDeleter.this.failures.add(e);
+					complete = false;
+				} catch (DirectoryIteratorException e) {
+					TreeDeleter.this.failures.add(e.getCause());
+					complete = false;
+				}
+				for (DirectoryDeleter subDirectoryDeleter : subDirectoryDeleters) {
+					complete &= subDirectoryDeleter.join().booleanValue();
+				}
+				deleted = complete && deletePath(this.directory);
+			}
+			return Boolean.valueOf(deleted);
+		}
+
+		private boolean deletePath(Path path) {
+			boolean deleted = false;
+
+			try {
+				Files.delete(path);
+				deleted = true;
+			} catch (IOException e) {
+				TreeDeleter.this.failures.add(e);
+			}
+			return deleted;
+		}
+
+	}
+
+}
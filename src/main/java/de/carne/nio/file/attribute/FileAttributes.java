@@ -16,9 +16,18 @@
  */
 package de.carne.nio.file.attribute;
 
+import java.io.IOException;
 import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.DosFileAttributes;
 import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
@@ -38,6 +47,7 @@ public final class FileAttributes {
 	}
 
 	private static final String POSIX = "posix";
+	private static final String DOS = "dos";
 
 	/**
 	 * Gets the {@linkplain FileSystem} specific best choice for the access rights for a user's private directory.
@@ -97,4 +107,50 @@ public final class FileAttributes {
 		return userFileDefault(path.getFileSystem());
 	}
 
+	/**
+	 * Copies the attributes (time stamps and access rights) of a file or directory to another file or directory.
+	 * <p>
+	 * Only the attributes supported by the source as well as the target {@linkplain FileSystem} are copied. The time
+	 * stamps are copied first, as restrictive access rights may prevent further updates of the target.
+	 *
+	 * @param source the file or directory to copy the attributes from.
+	 * @param target the file or directory to copy the attributes to.
+	 * @param options the {@linkplain LinkOption}s to use for reading and writing the attributes.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static void copy(Path source, Path target, LinkOption... options) throws IOException {
+		Set<String> sourceViews = source.getFileSystem().supportedFileAttributeViews();
+		Set<String> targetViews = target.getFileSystem().supportedFileAttributeViews();
+
+		if (sourceViews.contains(POSIX) && targetViews.contains(POSIX)) {
+			PosixFileAttributes sourceAttributes = Files.readAttributes(source, PosixFileAttributes.class, options);
+			PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class,
+					options);
+
+			copyTimes(sourceAttributes, targetView);
+			targetView.setPermissions(sourceAttributes.permissions());
+		} else if (sourceViews.contains(DOS) && targetViews.contains(DOS)) {
+			DosFileAttributes sourceAttributes = Files.readAttributes(source, DosFileAttributes.class, options);
+			DosFileAttributeView targetView = Files.getFileAttributeView(target, DosFileAttributeView.class, options);
+
+			copyTimes(sourceAttributes, targetView);
+			targetView.setArchive(sourceAttributes.isArchive());
+			targetView.setHidden(sourceAttributes.isHidden());
+			targetView.setSystem(sourceAttributes.isSystem());
+			targetView.setReadOnly(sourceAttributes.isReadOnly());
+		} else {
+			BasicFileAttributes sourceAttributes = Files.readAttributes(source, BasicFileAttributes.class, options);
+			BasicFileAttributeView targetView = Files.getFileAttributeView(target, BasicFileAttributeView.class,
+					options);
+
+			copyTimes(sourceAttributes, targetView);
+		}
+	}
+
+	private static void copyTimes(BasicFileAttributes sourceAttributes, BasicFileAttributeView targetView)
+			throws IOException {
+		targetView.setTimes(sourceAttributes.lastModifiedTime(), sourceAttributes.lastAccessTime(),
+				sourceAttributes.creationTime());
+	}
+
 }
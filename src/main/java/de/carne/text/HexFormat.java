@@ -16,6 +16,8 @@
  */
 package de.carne.text;
 
+import java.nio.ByteBuffer;
+
 import org.eclipse.jdt.annotation.Nullable;
 
 /**
@@ -143,6 +145,45 @@ public final class HexFormat {
 		return buffer;
 	}
 
+	/**
+	 * Formats the remaining bytes of a {@linkplain ByteBuffer}.
+	 * <p>
+	 * The buffer's position is not modified.
+	 *
+	 * @param bs the {@linkplain ByteBuffer} to format.
+	 * @return the format result.
+	 */
+	public String format(ByteBuffer bs) {
+		return format(new StringBuilder(Math.max(((this.baseBufferSize + 3) * bs.remaining()) - 1, 0)), bs)
+				.toString();
+	}
+
+	/**
+	 * Formats the remaining bytes of a {@linkplain ByteBuffer}.
+	 * <p>
+	 * The buffer's position is not modified.
+	 *
+	 * @param buffer the {@linkplain StringBuilder} to format into.
+	 * @param bs the {@linkplain ByteBuffer} to format.
+	 * @return the format result.
+	 */
+	public StringBuilder format(StringBuilder buffer, ByteBuffer bs) {
+		int off = bs.position();
+		int len = bs.remaining();
+
+		if (bs.hasArray()) {
+			format(buffer, bs.array(), bs.arrayOffset() + off, len);
+		} else {
+			for (int bIndex = 0; bIndex < len; bIndex++) {
+				if (bIndex > 0) {
+					buffer.append(' ');
+				}
+				format(buffer, bs.get(off + bIndex));
+			}
+		}
+		return buffer;
+	}
+
 	/**
 	 * Formats a {@code short} value.
 	 *
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.util;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * {@code byte} array based {@linkplain ByteString} implementation.
+ */
+final class ArrayByteString extends ByteString {
+
+	// Serialization support
+	private static final long serialVersionUID = -6542815011379447407L;
+
+	private final byte[] bytes;
+	private final int start;
+	private final int length;
+
+	ArrayByteString(byte[] bytes) {
+		this(bytes, 0, bytes.length);
+	}
+
+	ArrayByteString(byte[] bytes, int start, int length) {
+		this.bytes = bytes;
+		this.start = start;
+		this.length = length;
+	}
+
+	@Override
+	public int length() {
+		return this.length;
+	}
+
+	@Override
+	public byte[] bytes() {
+		byte[] copy = new byte[this.length];
+
+		System.arraycopy(this.bytes, this.start, copy, 0, this.length);
+		return copy;
+	}
+
+	@Override
+	public byte byteAt(int index) {
+		Check.isTrue(0 <= index);
+		Check.isTrue(index < this.length);
+
+		return this.bytes[this.start + index];
+	}
+
+	@Override
+	public void copyTo(byte[] dest, int destPos) {
+		Check.isTrue(0 <= destPos);
+		Check.isTrue(dest.length - destPos >= this.length);
+
+		System.arraycopy(this.bytes, this.start, dest, destPos, this.length);
+	}
+
+	@Override
+	public void write(OutputStream out) throws IOException {
+		out.write(this.bytes, this.start, this.length);
+	}
+
+	@Override
+	void writeTo(DataOutput out) throws IOException {
+		out.write(this.bytes, this.start, this.length);
+	}
+
+	@Override
+	public ByteString slice(int sliceStart, int sliceLength) {
+		Check.isTrue(0 <= sliceStart);
+		Check.isTrue(0 <= sliceLength);
+		Check.isTrue(sliceStart + sliceLength <= this.length);
+
+		ByteString slice;
+
+		if (sliceStart == 0 && sliceLength == this.length) {
+			slice = this;
+		} else if (sliceLength == 0) {
+			slice = EMPTY;
+		} else {
+			slice = new ArrayByteString(this.bytes, this.start + sliceStart, sliceLength);
+		}
+		return slice;
+	}
+
+	@Override
+	public ByteBuffer asByteBuffer() {
+		return ByteBuffer.wrap(this.bytes, this.start, this.length).slice().asReadOnlyBuffer();
+	}
+
+	@Override
+	public int compareTo(ByteString o) {
+		int comparison;
+
+		if (o instanceof ArrayByteString) {
+			ArrayByteString o2 = (ArrayByteString) o;
+
+			comparison = Arrays.compareUnsigned(this.bytes, this.start, this.start + this.length, o2.bytes, o2.start,
+					o2.start + o2.length);
+		} else {
+			comparison = super.compareTo(o);
+		}
+		return comparison;
+	}
+
+	@Override
+	int computeHash() {
+		int hashLimit = this.start + this.length;
+		int computedHash = FNV_OFFSET_BASIS;
+
+		for (int hashIndex = this.start; hashIndex < hashLimit; hashIndex++) {
+			computedHash = (computedHash ^ (this.bytes[hashIndex] & 0xff)) * FNV_PRIME;
+		}
+		return computedHash;
+	}
+
+	@Override
+	boolean contentEquals(ByteString other) {
+		boolean equal;
+
+		if (other instanceof ArrayByteString) {
+			ArrayByteString other2 = (ArrayByteString) other;
+
+			equal = Arrays.equals(this.bytes, this.start, this.start + this.length, other2.bytes, other2.start,
+					other2.start + other2.length);
+		} else {
+			equal = super.contentEquals(other);
+		}
+		return equal;
+	}
+
+	// Serialize complete arrays without copying them (views are serialized as a compact copy of the viewed bytes)
+	@Override
+	byte[] serialBytes() {
+		return (this.start == 0 && this.length == this.bytes.length ? this.bytes : bytes());
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.util;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import de.carne.io.BufferPool;
+
+/**
+ * {@linkplain ByteBuffer} based {@linkplain ByteString} implementation (e.g. for memory mapped file regions).
+ */
+final class BufferByteString extends ByteString {
+
+	// Serialization support
+	private static final long serialVersionUID = 3170906232962155587L;
+
+	// Read-only buffer with position 0 and limit equal to the string's length
+	private final transient ByteBuffer buffer;
+
+	BufferByteString(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	@Override
+	public int length() {
+		return this.buffer.limit();
+	}
+
+	@Override
+	public byte byteAt(int index) {
+		Check.isTrue(0 <= index);
+		Check.isTrue(index < this.buffer.limit());
+
+		return this.buffer.get(index);
+	}
+
+	@Override
+	public void copyTo(byte[] dest, int destPos) {
+		Check.isTrue(0 <= destPos);
+		Check.isTrue(dest.length - destPos >= this.buffer.limit());
+
+		this.buffer.duplicate().get(dest, destPos, this.buffer.limit());
+	}
+
+	@Override
+	public void write(OutputStream out) throws IOException {
+		writeChunks(out::write);
+	}
+
+	@Override
+	void writeTo(DataOutput out) throws IOException {
+		writeChunks(out::write);
+	}
+
+	// Stream the buffer's bytes through a pooled chunk array (the buffer itself may not be array backed)
+	private void writeChunks(ChunkSink sink) throws IOException {
+		ByteBuffer source = this.buffer.duplicate();
+		ByteBuffer pooledChunk = BufferPool.HEAP.acquire();
+
+		try {
+			byte[] chunk = pooledChunk.array();
+
+			while (source.hasRemaining()) {
+				int chunkLength = Math.min(source.remaining(), chunk.length);
+
+				source.get(chunk, 0, chunkLength);
+				sink.write(chunk, 0, chunkLength);
+			}
+		} finally {
+			BufferPool.HEAP.release(pooledChunk);
+		}
+	}
+
+	@Override
+	public ByteString slice(int sliceStart, int sliceLength) {
+		Check.isTrue(0 <= sliceStart);
+		Check.isTrue(0 <= sliceLength);
+		Check.isTrue(sliceStart + sliceLength <= this.buffer.limit());
+
+		ByteString slice;
+
+		if (sliceStart == 0 && sliceLength == this.buffer.limit()) {
+			slice = this;
+		} else if (sliceLength == 0) {
+			slice = EMPTY;
+		} else {
+			ByteBuffer sliceBuffer = this.buffer.duplicate();
+
+			sliceBuffer.position(sliceStart);
+			sliceBuffer.limit(sliceStart + sliceLength);
+			slice = new BufferByteString(sliceBuffer.slice());
+		}
+		return slice;
+	}
+
+	@Override
+	public ByteBuffer asByteBuffer() {
+		return this.buffer.duplicate();
+	}
+
+	@FunctionalInterface
+	private interface ChunkSink {
+
+		void write(byte[] b, int off, int len) throws IOException;
+
+	}
+
+}
@@ -16,10 +16,19 @@
  */
 package de.carne.util;
 
+import java.io.DataOutput;
 import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.ObjectStreamField;
 import java.io.OutputStream;
 import java.io.Serializable;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
 
 import org.eclipse.jdt.annotation.Nullable;
 
@@ -27,29 +36,54 @@ import de.carne.text.HexFormat;
 
 /**
  * Immutable byte string support.
+ * <p>
+ * A byte string is either backed by a {@code byte} array, by a {@linkplain ByteBuffer} (e.g. a memory mapped file
+ * region) or by a sequence of segments (see {@linkplain #concat(ByteString...)}). All variants behave identically.
+ * <p>
+ * The hash code is derived from the complete content and cached after it's first computation. Hence the content of
+ * wrapped arrays or buffers must not be modified once the hash code has been requested (e.g. by using the byte string
+ * as a map key).
+ * <p>
+ * Only the viewed bytes are serialized (e.g. a slice of a large array or buffer is serialized as a compact copy of the
+ * slice's bytes). All variants share the serialized form of the original array based implementation, hence streams
+ * written by earlier versions remain readable and vice versa. See {@linkplain ByteStrings} for a binary codec suitable
+ * for bulk transfers.
+ * <p>
+ * This class is only concrete to retain the original serialized form. Direct instances solely serve as serial proxy
+ * for all variants: they are created by {@code writeReplace} and resolved to an actual variant by
+ * {@code readResolve}, hence they are never visible to callers. The content accessors of this class are overridden by
+ * all variants and fail if invoked on a serial proxy.
  */
-public final class ByteString implements Serializable, Comparable<ByteString> {
+public class ByteString implements Serializable, Comparable<ByteString> {
 
 	// Serialization support
 	private static final long serialVersionUID = 2167856394985799551L;
 
+	// Serialized form (the field layout of the original array based implementation)
+	private static final ObjectStreamField[] serialPersistentFields = { new ObjectStreamField("bytes", byte[].class),
+			new ObjectStreamField("start", int.class), new ObjectStreamField("length", int.class) };
+
 	/**
 	 * The empty byte string.
 	 */
-	public static final ByteString EMPTY = new ByteString(new byte[0]);
+	public static final ByteString EMPTY = new ArrayByteString(new byte[0]);
+
+	// FNV-1a parameters used for hash code computation (all bytes contribute equally to the hash code)
+	static final int FNV_OFFSET_BASIS = 0x811c9dc5;
+	static final int FNV_PRIME = 0x01000193;
+
+	// Cached hash code (0 if not yet computed)
+	private transient int hash = 0;
 
-	private final byte[] bytes;
-	private final int start;
-	private final int length;
+	// The content to write or the content read (only used by serial proxy instances)
+	private transient @Nullable ByteString serialContent = null;
 
-	private ByteString(byte[] bytes) {
-		this(bytes, 0, bytes.length);
+	ByteString() {
+		// Only package local sub-classing allowed
 	}
 
-	private ByteString(byte[] bytes, int start, int length) {
-		this.bytes = bytes;
-		this.start = start;
-		this.length = length;
+	private ByteString(ByteString serialContent) {
+		this.serialContent = serialContent;
 	}
 
 	/**
@@ -59,7 +93,7 @@ public final class ByteString implements Serializable, Comparable<ByteString> {
 	 * @return the constructed {@linkplain ByteString} instance.
 	 */
 	public static ByteString wrap(byte... bytes) {
-		return (bytes.length > 0 ? new ByteString(bytes) : EMPTY);
+		return (bytes.length > 0 ? new ArrayByteString(bytes) : EMPTY);
 	}
 
 	/**
@@ -75,7 +109,32 @@ public final class ByteString implements Serializable, Comparable<ByteString> {
 		Check.isTrue(0 <= length);
 		Check.isTrue(start + length <= bytes.length);
 
-		return (length > 0 ? new ByteString(bytes, start, length) : EMPTY);
+		return (length > 0 ? new ArrayByteString(bytes, start, length) : EMPTY);
+	}
+
+	/**
+	 * Constructs a new {@linkplain ByteString} instance by wrapping the remaining bytes of a {@linkplain ByteBuffer}
+	 * directly.
+	 * <p>
+	 * The buffer's position and limit are not modified by this call or by any later access to the returned
+	 * {@linkplain ByteString}. Any subsequent modification of the buffer's content is visible via the returned
+	 * {@linkplain ByteString}.
+	 *
+	 * @param buffer the {@linkplain ByteBuffer} to wrap.
+	 * @return the constructed {@linkplain ByteString} instance.
+	 */
+	public static ByteString wrap(ByteBuffer buffer) {
+		int length = buffer.remaining();
+		ByteString wrapped;
+
+		if (length == 0) {
+			wrapped = EMPTY;
+		} else if (buffer.hasArray()) {
+			wrapped = new ArrayByteString(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+		} else {
+			wrapped = new BufferByteString(buffer.slice().asReadOnlyBuffer());
+		}
+		return wrapped;
 	}
 
 	/**
@@ -101,7 +160,25 @@ public final class ByteString implements Serializable, Comparable<ByteString> {
 		Check.isTrue(0 <= length);
 		Check.isTrue(start + length <= bytes.length);
 
-		return (length > 0 ? new ByteString(Arrays.copyOfRange(bytes, start, start + length)) : EMPTY);
+		byte[] copy = new byte[length];
+
+		System.arraycopy(bytes, start, copy, 0, length);
+		return wrap(copy);
+	}
+
+	/**
+	 * Constructs a new {@linkplain ByteString} instance by copying the remaining bytes of a {@linkplain ByteBuffer}.
+	 * <p>
+	 * The buffer's position and limit are not modified by this call.
+	 *
+	 * @param buffer the {@linkplain ByteBuffer} to copy.
+	 * @return the constructed {@linkplain ByteString} instance.
+	 */
+	public static ByteString copy(ByteBuffer buffer) {
+		byte[] copy = new byte[buffer.remaining()];
+
+		buffer.duplicate().get(copy);
+		return wrap(copy);
 	}
 
 	/**
@@ -110,7 +187,7 @@ public final class ByteString implements Serializable, Comparable<ByteString> {
 	 * @return the length of this instance.
 	 */
 	public int length() {
-		return this.length;
+		throw serialProxyOnly();
 	}
 
 	/**
@@ -119,7 +196,10 @@ public final class ByteString implements Serializable, Comparable<ByteString> {
 	 * @return a copy of this instance's byte values.
 	 */
 	public byte[] bytes() {
-		return Arrays.copyOfRange(this.bytes, this.start, this.start + this.length);
+		byte[] bytes = new byte[length()];
+
+		copyTo(bytes, 0);
+		return bytes;
 	}
 
 	/**
@@ -129,10 +209,7 @@ public final class ByteString implements Serializable, Comparable<ByteString> {
 	 * @return the byte value at the given index.
 	 */
 	public byte byteAt(int index) {
-		Check.isTrue(0 <= index);
-		Check.isTrue(index < this.length);
-
-		return this.bytes[this.start + index];
+		throw serialProxyOnly();
 	}
 
 	/**
@@ -142,10 +219,7 @@ public final class ByteString implements Serializable, Comparable<ByteString> {
 	 * @param destPos the buffer position to start copying at.
 	 */
 	public void copyTo(byte[] dest, int destPos) {
-		Check.isTrue(0 <= destPos);
-		Check.isTrue(dest.length - destPos >= this.length);
-
-		System.arraycopy(this.bytes, this.start, dest, destPos, this.length);
+		throw serialProxyOnly();
 	}
 
 	/**
@@ -155,7 +229,11 @@ public final class ByteString implements Serializable, Comparable<ByteString> {
 	 * @throws IOException if an I/O error occurs.
 	 */
 	public void write(OutputStream out) throws IOException {
-		out.write(this.bytes, this.start, this.length);
+		throw serialProxyOnly();
+	}
+
+	void writeTo(DataOutput out) throws IOException {
+		throw serialProxyOnly();
 	}
 
 	/**
@@ -166,64 +244,405 @@ public final class ByteString implements Serializable, Comparable<ByteString> {
 	 * @return the sliced byte string.
 	 */
 	public ByteString slice(int sliceStart, int sliceLength) {
-		Check.isTrue(0 <= sliceStart);
-		Check.isTrue(0 <= sliceLength);
-		Check.isTrue(sliceStart + sliceLength <= this.length);
+		throw serialProxyOnly();
+	}
+
+	/**
+	 * Gets a read-only {@linkplain ByteBuffer} view of this instance's bytes.
+	 * <p>
+	 * The returned buffer's position is {@code 0} and it's limit is this instance's length. No bytes are copied.
+	 *
+	 * @return a read-only {@linkplain ByteBuffer} view of this instance's bytes.
+	 */
+	public ByteBuffer asByteBuffer() {
+		throw serialProxyOnly();
+	}
 
-		return (this.start == sliceStart && this.length == sliceLength ? this
-				: new ByteString(this.bytes, this.start + sliceStart, sliceLength));
+	/**
+	 * Gets read-only {@linkplain ByteBuffer} views of this instance's bytes.
+	 * <p>
+	 * Composite byte strings (see {@linkplain #concat(ByteString...)}) return one buffer per segment, all other byte
+	 * strings return a single buffer. Each returned buffer's position is {@code 0} and it's limit is the viewed
+	 * segment's length. No bytes are copied.
+	 *
+	 * @return read-only {@linkplain ByteBuffer} views of this instance's bytes.
+	 */
+	public ByteBuffer[] asByteBuffers() {
+		return new ByteBuffer[] { asByteBuffer() };
+	}
+
+	/**
+	 * Writes this instance's bytes to the given {@linkplain GatheringByteChannel}.
+	 * <p>
+	 * All segments are written via gathering writes (hence without merging them first). The channel has to be in
+	 * blocking mode.
+	 *
+	 * @param channel the {@linkplain GatheringByteChannel} to write to.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void write(GatheringByteChannel channel) throws IOException {
+		ByteBuffer[] buffers = asByteBuffers();
+		long remaining = length();
+
+		while (remaining > 0) {
+			remaining -= channel.write(buffers);
+		}
+	}
+
+	/**
+	 * Concatenates this instance with another {@linkplain ByteString}.
+	 *
+	 * @param byteString the {@linkplain ByteString} to append.
+	 * @return the concatenated byte string.
+	 * @see #concat(ByteString...)
+	 */
+	public ByteString concat(ByteString byteString) {
+		return concat(this, byteString);
+	}
+
+	/**
+	 * Concatenates multiple {@linkplain ByteString}s.
+	 * <p>
+	 * No bytes are copied. Instead a composite byte string referencing the submitted byte strings as segments is
+	 * constructed. Random access to a composite byte string's bytes requires {@code O(log n)} time ({@code n} being
+	 * the number of segments). A contiguous copy of the bytes is only created on demand (e.g. via
+	 * {@linkplain #asByteBuffer()}).
+	 *
+	 * @param byteStrings the {@linkplain ByteString}s to concatenate.
+	 * @return the concatenated byte string.
+	 */
+	public static ByteString concat(ByteString... byteStrings) {
+		return RopeByteString.of(byteStrings);
+	}
+
+	/**
+	 * Searches the first occurrence of a byte value.
+	 *
+	 * @param b the byte value to search.
+	 * @return the index of the first occurrence or {@code -1} if the byte value does not occur.
+	 */
+	public int indexOf(byte b) {
+		return indexOf(b, 0);
+	}
+
+	/**
+	 * Searches the first occurrence of a byte value starting at the given index.
+	 * <p>
+	 * As for {@linkplain String#indexOf(int, int)} there is no restriction on the start index.
+	 *
+	 * @param b the byte value to search.
+	 * @param fromIndex the index to start the search at.
+	 * @return the index of the first occurrence or {@code -1} if the byte value does not occur.
+	 */
+	public int indexOf(byte b, int fromIndex) {
+		ByteBuffer[] buffers = asByteBuffers();
+		int searchIndex = Math.max(fromIndex, 0);
+		int bufferIndex = 0;
+		int bufferStart = 0;
+		int index = -1;
+
+		while (index < 0 && bufferIndex < buffers.length) {
+			ByteBuffer buffer = buffers[bufferIndex].order(ByteOrder.LITTLE_ENDIAN);
+			int bufferEnd = bufferStart + buffer.limit();
+
+			if (searchIndex < bufferEnd) {
+				int bufferMatch = ByteStringMatcher.indexOf(buffer, b, Math.max(searchIndex - bufferStart, 0),
+						buffer.limit());
+
+				if (bufferMatch >= 0) {
+					index = bufferStart + bufferMatch;
+				}
+			}
+			bufferIndex++;
+			bufferStart = bufferEnd;
+		}
+		return index;
+	}
+
+	/**
+	 * Searches the last occurrence of a byte value.
+	 *
+	 * @param b the byte value to search.
+	 * @return the index of the last occurrence or {@code -1} if the byte value does not occur.
+	 */
+	public int lastIndexOf(byte b) {
+		return lastIndexOf(b, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Searches the last occurrence of a byte value searching backward starting at the given index.
+	 * <p>
+	 * As for {@linkplain String#lastIndexOf(int, int)} there is no restriction on the start index.
+	 *
+	 * @param b the byte value to search.
+	 * @param fromIndex the index to start the search at.
+	 * @return the index of the last occurrence or {@code -1} if the byte value does not occur.
+	 */
+	public int lastIndexOf(byte b, int fromIndex) {
+		ByteBuffer[] buffers = asByteBuffers();
+		int searchIndex = Math.min(fromIndex, length() - 1);
+		int bufferIndex = buffers.length - 1;
+		int bufferEnd = length();
+		int index = -1;
+
+		while (index < 0 && bufferIndex >= 0) {
+			ByteBuffer buffer = buffers[bufferIndex].order(ByteOrder.LITTLE_ENDIAN);
+			int bufferStart = bufferEnd - buffer.limit();
+
+			if (searchIndex >= bufferStart) {
+				int bufferMatch = ByteStringMatcher.lastIndexOf(buffer, b,
+						Math.min(searchIndex - bufferStart, buffer.limit() - 1));
+
+				if (bufferMatch >= 0) {
+					index = bufferStart + bufferMatch;
+				}
+			}
+			bufferIndex--;
+			bufferEnd = bufferStart;
+		}
+		return index;
+	}
+
+	/**
+	 * Searches the first occurrence of a pattern.
+	 *
+	 * @param pattern the pattern to search.
+	 * @return the index of the first occurrence or {@code -1} if the pattern does not occur.
+	 * @see ByteStringMatcher
+	 */
+	public int indexOf(ByteString pattern) {
+		return indexOf(pattern, 0);
+	}
+
+	/**
+	 * Searches the first occurrence of a pattern starting at the given index.
+	 * <p>
+	 * Use a {@linkplain ByteStringMatcher} to search the same pattern repeatedly.
+	 *
+	 * @param pattern the pattern to search.
+	 * @param fromIndex the index to start the search at.
+	 * @return the index of the first occurrence or {@code -1} if the pattern does not occur.
+	 * @see ByteStringMatcher#indexIn(ByteString, int)
+	 */
+	public int indexOf(ByteString pattern, int fromIndex) {
+		return new ByteStringMatcher(pattern).indexIn(this, fromIndex);
+	}
+
+	/**
+	 * Searches the last occurrence of a pattern.
+	 *
+	 * @param pattern the pattern to search.
+	 * @return the index of the last occurrence or {@code -1} if the pattern does not occur.
+	 * @see ByteStringMatcher
+	 */
+	public int lastIndexOf(ByteString pattern) {
+		return lastIndexOf(pattern, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Searches the last occurrence of a pattern searching backward starting at the given index.
+	 * <p>
+	 * Use a {@linkplain ByteStringMatcher} to search the same pattern repeatedly.
+	 *
+	 * @param pattern the pattern to search.
+	 * @param fromIndex the index to start the search at.
+	 * @return the index of the last occurrence or {@code -1} if the pattern does not occur.
+	 * @see ByteStringMatcher#lastIndexIn(ByteString, int)
+	 */
+	public int lastIndexOf(ByteString pattern, int fromIndex) {
+		return new ByteStringMatcher(pattern).lastIndexIn(this, fromIndex);
+	}
+
+	/**
+	 * Checks whether this instance starts with the given prefix.
+	 *
+	 * @param prefix the prefix to check.
+	 * @return {@code true} if this instance starts with the given prefix.
+	 */
+	public boolean startsWith(ByteString prefix) {
+		int prefixLength = prefix.length();
+
+		return prefixLength <= length() && slice(0, prefixLength).contentEquals(prefix);
+	}
+
+	/**
+	 * Checks whether this instance ends with the given suffix.
+	 *
+	 * @param suffix the suffix to check.
+	 * @return {@code true} if this instance ends with the given suffix.
+	 */
+	public boolean endsWith(ByteString suffix) {
+		int length = length();
+		int suffixLength = suffix.length();
+
+		return suffixLength <= length && slice(length - suffixLength, suffixLength).contentEquals(suffix);
 	}
 
 	@Override
 	public int compareTo(ByteString o) {
-		int byteIndex1 = this.start;
-		int byteIndexLimit1 = this.start + this.length;
-		int byteIndex2 = o.start;
-		int byteIndexLImit2 = o.start + o.length;
+		return compareBuffers(asByteBuffers(), length(), o.asByteBuffers(), o.length());
+	}
+
+	private static int compareBuffers(ByteBuffer[] buffers1, int length1, ByteBuffer[] buffers2, int length2) {
+		int bufferIndex1 = 0;
+		int position1 = 0;
+		int bufferIndex2 = 0;
+		int position2 = 0;
+		boolean mismatched = false;
 		int comparison = 0;
 
-		while (byteIndex1 < byteIndexLimit1 && byteIndex2 < byteIndexLImit2 && comparison == 0) {
-			comparison = Integer.compare(Byte.toUnsignedInt(this.bytes[byteIndex1]),
-					Byte.toUnsignedInt(o.bytes[byteIndex2]));
-			byteIndex1++;
-			byteIndex2++;
-		}
-		if (comparison == 0) {
-			if (byteIndex1 < byteIndexLimit1) {
-				comparison = 1;
-			} else if (byteIndex2 < byteIndexLImit2) {
-				comparison = -1;
+		while (!mismatched && bufferIndex1 < buffers1.length && bufferIndex2 < buffers2.length) {
+			ByteBuffer buffer1 = buffers1[bufferIndex1];
+			ByteBuffer buffer2 = buffers2[bufferIndex2];
+			int regionLength = Math.min(buffer1.limit() - position1, buffer2.limit() - position2);
+			int mismatch = region(buffer1, position1, regionLength).mismatch(region(buffer2, position2, regionLength));
+
+			if (mismatch >= 0) {
+				comparison = Integer.compare(Byte.toUnsignedInt(buffer1.get(position1 + mismatch)),
+						Byte.toUnsignedInt(buffer2.get(position2 + mismatch)));
+				mismatched = true;
+			} else {
+				position1 += regionLength;
+				if (position1 == buffer1.limit()) {
+					bufferIndex1++;
+					position1 = 0;
+				}
+				position2 += regionLength;
+				if (position2 == buffer2.limit()) {
+					bufferIndex2++;
+					position2 = 0;
+				}
 			}
 		}
-		return comparison;
+		return (mismatched ? comparison : Integer.compare(length1, length2));
+	}
+
+	private static ByteBuffer region(ByteBuffer buffer, int position, int length) {
+		ByteBuffer region = buffer;
+
+		if (position > 0 || length < buffer.limit()) {
+			region = buffer.duplicate();
+			region.position(position);
+			region.limit(position + length);
+		}
+		return region;
 	}
 
 	@Override
 	public int hashCode() {
-		int hashLimit = Math.min(4, this.length);
-		int hash = 0;
+		int checkedHash = this.hash;
+
+		if (checkedHash == 0) {
+			checkedHash = computeHash();
+			this.hash = checkedHash;
+		}
+		return checkedHash;
+	}
+
+	int computeHash() {
+		int computedHash = FNV_OFFSET_BASIS;
+
+		for (ByteBuffer buffer : asByteBuffers()) {
+			int hashLimit = buffer.limit();
 
-		for (int hashIndex = 0; hashIndex < hashLimit; hashIndex++) {
-			hash = (hash << 8) | (this.bytes[this.start + hashIndex] & 0xff);
+			for (int hashIndex = 0; hashIndex < hashLimit; hashIndex++) {
+				computedHash = (computedHash ^ (buffer.get(hashIndex) & 0xff)) * FNV_PRIME;
+			}
 		}
-		return hash;
+		return computedHash;
 	}
 
 	@Override
 	public boolean equals(@Nullable Object obj) {
-		return this == obj || (obj instanceof ByteString && compareTo((ByteString) obj) == 0);
+		boolean equal;
+
+		if (this == obj) {
+			equal = true;
+		} else if (obj instanceof ByteString) {
+			ByteString other = (ByteString) obj;
+
+			// Compare the already computed hashes (if any) before touching the content
+			equal = length() == other.length() && (this.hash == 0 || other.hash == 0 || this.hash == other.hash)
+					&& contentEquals(other);
+		} else {
+			equal = false;
+		}
+		return equal;
+	}
+
+	boolean contentEquals(ByteString other) {
+		return compareTo(other) == 0;
 	}
 
 	@Override
 	public String toString() {
 		StringBuilder buffer = new StringBuilder();
-		int formatLimit = Math.min(16, this.length);
+		int length = length();
+		int formatLimit = Math.min(16, length);
 
-		HexFormat.LOWER_CASE.format(buffer, this.bytes, this.start, formatLimit);
-		if (formatLimit < this.length) {
+		HexFormat.LOWER_CASE.format(buffer, slice(0, formatLimit).asByteBuffer());
+		if (formatLimit < length) {
 			buffer.append(Strings.ELLIPSIS);
 		}
 		return buffer.toString();
 	}
 
+	// Content accessors are overridden by all variants; only serial proxies end up here (see class comment)
+	private static IllegalStateException serialProxyOnly() {
+		return Check.fail("Unexpected serial proxy access");
+	}
+
+	// Gets the bytes to serialize (a compact copy of the viewed bytes unless the variant can provide them directly)
+	byte[] serialBytes() {
+		return bytes();
+	}
+
+	// Serialize all variants via a serial proxy instance
+	Object writeReplace() throws ObjectStreamException {
+		return (getClass() == ByteString.class ? this : new ByteString(this));
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ByteString checkedSerialContent = this.serialContent;
+
+		if (checkedSerialContent == null) {
+			throw new NotSerializableException(getClass().getName());
+		}
+
+		byte[] bytesFieldValue = checkedSerialContent.serialBytes();
+		ObjectOutputStream.PutField fields = out.putFields();
+
+		fields.put("bytes", bytesFieldValue);
+		fields.put("start", 0);
+		fields.put("length", bytesFieldValue.length);
+		out.writeFields();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		Object bytesField = fields.get("bytes", null);
+		int startField = fields.get("start", 0);
+		int lengthField = fields.get("length", 0);
+
+		if (!(bytesField instanceof byte[])) {
+			throw new InvalidObjectException("Missing bytes");
+		}
+
+		byte[] bytesFieldValue = (byte[]) bytesField;
+
+		if (startField < 0 || lengthField < 0 || bytesFieldValue.length - startField < lengthField) {
+			throw new InvalidObjectException("Invalid range: " + startField + "/" + lengthField);
+		}
+		this.serialContent = wrap(bytesFieldValue, startField, lengthField);
+	}
+
+	private Object readResolve() throws ObjectStreamException {
+		ByteString checkedSerialContent = this.serialContent;
+
+		if (checkedSerialContent == null) {
+			throw new InvalidObjectException("Missing bytes");
+		}
+		return checkedSerialContent;
+	}
+
 }
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Precompiled {@linkplain ByteString} pattern for repeated searches of the same pattern in multiple byte strings.
+ * <p>
+ * Short patterns are located by a word-at-a-time scan for the pattern's first byte followed by a direct comparison of
+ * the remaining bytes. Longer patterns are located via the Boyer-Moore-Horspool algorithm using shift tables computed
+ * once during construction.
+ * <p>
+ * Searching a composite byte string (see {@linkplain ByteString#concat(ByteString...)}) for a pattern of more than one
+ * byte requires it's contiguous copy (which is created once and cached by the byte string).
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public final class ByteStringMatcher {
+
+	// Patterns up to this length are matched by scanning for their first byte
+	private static final int SHORT_PATTERN_LIMIT = 8;
+
+	private static final long ONE_BYTES = 0x0101010101010101l;
+	private static final long LOW_BITS = 0x7f7f7f7f7f7f7f7fl;
+
+	private static final int[] NO_SHIFTS = new int[0];
+
+	private final ByteString pattern;
+	private final byte[] patternBytes;
+	// Forward shifts indexed by the text byte aligned with the pattern's last byte
+	private final int[] shifts;
+	// Backward shifts indexed by the text byte aligned with the pattern's first byte
+	private final int[] reverseShifts;
+
+	/**
+	 * Constructs a new {@linkplain ByteStringMatcher} instance.
+	 *
+	 * @param pattern the pattern to search for.
+	 */
+	public ByteStringMatcher(ByteString pattern) {
+		this.pattern = pattern;
+		this.patternBytes = pattern.bytes();
+
+		int patternLength = this.patternBytes.length;
+
+		if (patternLength > SHORT_PATTERN_LIMIT) {
+			this.shifts = new int[256];
+			this.reverseShifts = new int[256];
+			Arrays.fill(this.shifts, patternLength);
+			Arrays.fill(this.reverseShifts, patternLength);
+			for (int patternIndex = 0; patternIndex < patternLength - 1; patternIndex++) {
+				this.shifts[this.patternBytes[patternIndex] & 0xff] = patternLength - 1 - patternIndex;
+			}
+			for (int patternIndex = patternLength - 1; patternIndex > 0; patternIndex--) {
+				this.reverseShifts[this.patternBytes[patternIndex] & 0xff] = patternIndex;
+			}
+		} else {
+			this.shifts = NO_SHIFTS;
+			this.reverseShifts = NO_SHIFTS;
+		}
+	}
+
+	/**
+	 * Gets the pattern this matcher searches for.
+	 *
+	 * @return the pattern this matcher searches for.
+	 */
+	public ByteString pattern() {
+		return this.pattern;
+	}
+
+	/**
+	 * Searches the first occurrence of this matcher's pattern in the given {@linkplain ByteString}.
+	 *
+	 * @param text the {@linkplain ByteString} to search.
+	 * @return the index of the first occurrence or {@code -1} if the pattern does not occur.
+	 */
+	public int indexIn(ByteString text) {
+		return indexIn(text, 0);
+	}
+
+	/**
+	 * Searches the first occurrence of this matcher's pattern in the given {@linkplain ByteString} starting at the
+	 * given index.
+	 * <p>
+	 * As for {@linkplain String#indexOf(String, int)} there is no restriction on the start index.
+	 *
+	 * @param text the {@linkplain ByteString} to search.
+	 * @param fromIndex the index to start the search at.
+	 * @return the index of the first occurrence or {@code -1} if the pattern does not occur.
+	 */
+	public int indexIn(ByteString text, int fromIndex) {
+		int patternLength = this.patternBytes.length;
+		int textLength = text.length();
+		int startIndex = Math.max(fromIndex, 0);
+		int index;
+
+		if (patternLength == 0) {
+			index = Math.min(startIndex, textLength);
+		} else if (startIndex > textLength - patternLength) {
+			index = -1;
+		} else if (patternLength == 1) {
+			index = text.indexOf(this.patternBytes[0], startIndex);
+		} else {
+			ByteBuffer textBuffer = text.asByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+
+			index = (patternLength > SHORT_PATTERN_LIMIT ? horspoolIndexIn(textBuffer, startIndex)
+					: scanIndexIn(textBuffer, startIndex));
+		}
+		return index;
+	}
+
+	/**
+	 * Searches the last occurrence of this matcher's pattern in the given {@linkplain ByteString}.
+	 *
+	 * @param text the {@linkplain ByteString} to search.
+	 * @return the index of the last occurrence or {@code -1} if the pattern does not occur.
+	 */
+	public int lastIndexIn(ByteString text) {
+		return lastIndexIn(text, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Searches the last occurrence of this matcher's pattern in the given {@linkplain ByteString} searching backward
+	 * starting at the given index.
+	 * <p>
+	 * As for {@linkplain String#lastIndexOf(String, int)} there is no restriction on the start index.
+	 *
+	 * @param text the {@linkplain ByteString} to search.
+	 * @param fromIndex the index to start the search at.
+	 * @return the index of the last occurrence or {@code -1} if the pattern does not occur.
+	 */
+	public int lastIndexIn(ByteString text, int fromIndex) {
+		int patternLength = this.patternBytes.length;
+		int startIndex = Math.min(fromIndex, text.length() - patternLength);
+		int index;
+
+		if (startIndex < 0) {
+			index = -1;
+		} else if (patternLength == 0) {
+			index = startIndex;
+		} else if (patternLength == 1) {
+			index = text.lastIndexOf(this.patternBytes[0], startIndex);
+		} else {
+			ByteBuffer textBuffer = text.asByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+
+			index = (patternLength > SHORT_PATTERN_LIMIT ? horspoolLastIndexIn(textBuffer, startIndex)
+					: scanLastIndexIn(textBuffer, startIndex));
+		}
+		return index;
+	}
+
+	private int scanIndexIn(ByteBuffer textBuffer, int startIndex) {
+		int lastIndex = textBuffer.limit() - this.patternBytes.length;
+		int searchIndex = startIndex;
+		int index = -1;
+
+		while (index < 0 && searchIndex <= lastIndex) {
+			int candidateIndex = indexOf(textBuffer, this.patternBytes[0], searchIndex, lastIndex + 1);
+
+			if (candidateIndex < 0) {
+				searchIndex = lastIndex + 1;
+			} else if (regionMatches(textBuffer, candidateIndex, 1, this.patternBytes.length)) {
+				index = candidateIndex;
+			} else {
+				searchIndex = candidateIndex + 1;
+			}
+		}
+		return index;
+	}
+
+	private int scanLastIndexIn(ByteBuffer textBuffer, int startIndex) {
+		int searchIndex = startIndex;
+		int index = -1;
+
+		while (index < 0 && searchIndex >= 0) {
+			int candidateIndex = lastIndexOf(textBuffer, this.patternBytes[0], searchIndex);
+
+			if (candidateIndex < 0) {
+				searchIndex = -1;
+			} else if (regionMatches(textBuffer, candidateIndex, 1, this.patternBytes.length)) {
+				index = candidateIndex;
+			} else {
+				searchIndex = candidateIndex - 1;
+			}
+		}
+		return index;
+	}
+
+	private int horspoolIndexIn(ByteBuffer textBuffer, int startIndex) {
+		int patternLast = this.patternBytes.length - 1;
+		byte patternLastByte = this.patternBytes[patternLast];
+		int lastIndex = textBuffer.limit() - this.patternBytes.length;
+		int searchIndex = startIndex;
+		int index = -1;
+
+		while (index < 0 && searchIndex <= lastIndex) {
+			byte textByte = textBuffer.get(searchIndex + patternLast);
+
+			if (textByte == patternLastByte && regionMatches(textBuffer, searchIndex, 0, patternLast)) {
+				index = searchIndex;
+			} else {
+				searchIndex += this.shifts[textByte & 0xff];
+			}
+		}
+		return index;
+	}
+
+	private int horspoolLastIndexIn(ByteBuffer textBuffer, int startIndex) {
+		byte patternFirstByte = this.patternBytes[0];
+		int searchIndex = startIndex;
+		int index = -1;
+
+		while (index < 0 && searchIndex >= 0) {
+			byte textByte = textBuffer.get(searchIndex);
+
+			if (textByte == patternFirstByte && regionMatches(textBuffer, searchIndex, 1, this.patternBytes.length)) {
+				index = searchIndex;
+			} else {
+				searchIndex -= this.reverseShifts[textByte & 0xff];
+			}
+		}
+		return index;
+	}
+
+	private boolean regionMatches(ByteBuffer textBuffer, int textIndex, int patternStart, int patternEnd) {
+		boolean matches = true;
+
+		for (int patternIndex = patternStart; matches && patternIndex < patternEnd; patternIndex++) {
+			matches = textBuffer.get(textIndex + patternIndex) == this.patternBytes[patternIndex];
+		}
+		return matches;
+	}
+
+	// Word-at-a-time byte search (buffer must be in little-endian byte order)
+	static int indexOf(ByteBuffer buffer, byte b, int fromIndex, int toIndex) {
+		long bytePattern = (b & 0xffl) * ONE_BYTES;
+		int searchIndex = fromIndex;
+		int index = -1;
+
+		while (index < 0 && searchIndex + Long.BYTES <= toIndex) {
+			long matches = zeroBytes(buffer.getLong(searchIndex) ^ bytePattern);
+
+			if (matches != 0) {
+				index = searchIndex + (Long.numberOfTrailingZeros(matches) >>> 3);
+			} else {
+				searchIndex += Long.BYTES;
+			}
+		}
+		while (index < 0 && searchIndex < toIndex) {
+			if (buffer.get(searchIndex) == b) {
+				index = searchIndex;
+			} else {
+				searchIndex++;
+			}
+		}
+		return index;
+	}
+
+	// Word-at-a-time backward byte search (buffer must be in little-endian byte order)
+	static int lastIndexOf(ByteBuffer buffer, byte b, int fromIndex) {
+		long bytePattern = (b & 0xffl) * ONE_BYTES;
+		int searchEnd = fromIndex + 1;
+		int index = -1;
+
+		while (index < 0 && searchEnd >= Long.BYTES) {
+			int wordIndex = searchEnd - Long.BYTES;
+			long matches = zeroBytes(buffer.getLong(wordIndex) ^ bytePattern);
+
+			if (matches != 0) {
+				index = wordIndex + ((Long.SIZE - 1 - Long.numberOfLeadingZeros(matches)) >>> 3);
+			} else {
+				searchEnd = wordIndex;
+			}
+		}
+		while (index < 0 && searchEnd > 0) {
+			searchEnd--;
+			if (buffer.get(searchEnd) == b) {
+				index = searchEnd;
+			}
+		}
+		return index;
+	}
+
+	// Sets the high bit of every zero byte in the given word (exact, hence usable in both search directions)
+	private static long zeroBytes(long word) {
+		return ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+	}
+
+	@Override
+	public String toString() {
+		return this.pattern.toString();
+	}
+
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Utility class providing a compact binary codec for {@linkplain ByteString}s.
+ * <p>
+ * A single {@linkplain ByteString} is encoded as it's length (unsigned LEB128 variable length integer) followed by it's
+ * bytes. A sequence of {@linkplain ByteString}s is encoded as the sequence length (encoded the same way) followed by
+ * the encoded elements. Compared to Java serialization no class descriptors or object headers are written.
+ */
+public final class ByteStrings {
+
+	private ByteStrings() {
+		// Prevent instantiation
+	}
+
+	private static final int INITIAL_LIST_CAPACITY_LIMIT = 1024;
+
+	// Initial buffer size used while reading (the buffer grows only as the announced bytes actually arrive)
+	private static final int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Gets the number of bytes required to encode a {@linkplain ByteString}.
+	 *
+	 * @param byteString the {@linkplain ByteString} to encode.
+	 * @return the number of bytes required to encode the {@linkplain ByteString}.
+	 */
+	public static int encodedLength(ByteString byteString) {
+		int length = byteString.length();
+
+		return lengthSize(length) + length;
+	}
+
+	/**
+	 * Gets the number of bytes required to encode a sequence of {@linkplain ByteString}s.
+	 *
+	 * @param byteStrings the {@linkplain ByteString}s to encode.
+	 * @return the number of bytes required to encode the {@linkplain ByteString}s.
+	 */
+	public static long encodedLength(Collection<ByteString> byteStrings) {
+		long encodedLength = lengthSize(byteStrings.size());
+
+		for (ByteString byteString : byteStrings) {
+			encodedLength += encodedLength(byteString);
+		}
+		return encodedLength;
+	}
+
+	/**
+	 * Writes a {@linkplain ByteString} to a {@linkplain DataOutput}.
+	 *
+	 * @param out the {@linkplain DataOutput} to write to.
+	 * @param byteString the {@linkplain ByteString} to write.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static void write(DataOutput out, ByteString byteString) throws IOException {
+		writeLength(out, byteString.length());
+		byteString.writeTo(out);
+	}
+
+	/**
+	 * Writes a sequence of {@linkplain ByteString}s to a {@linkplain DataOutput}.
+	 *
+	 * @param out the {@linkplain DataOutput} to write to.
+	 * @param byteStrings the {@linkplain ByteString}s to write.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static void writeAll(DataOutput out, Collection<ByteString> byteStrings) throws IOException {
+		writeLength(out, byteStrings.size());
+		for (ByteString byteString : byteStrings) {
+			write(out, byteString);
+		}
+	}
+
+	/**
+	 * Reads a {@linkplain ByteString} from a {@linkplain DataInput}.
+	 * <p>
+	 * The encoded length is not trusted: The read buffer grows in bounded steps as the bytes arrive. Hence truncated or
+	 * malicious input cannot trigger the allocation of a buffer much larger than the actual input.
+	 *
+	 * @param in the {@linkplain DataInput} to read from.
+	 * @return the read {@linkplain ByteString}.
+	 * @throws IOException if an I/O error occurs or if the input is malformed.
+	 */
+	public static ByteString read(DataInput in) throws IOException {
+		int length = readLength(in);
+		byte[] bytes = new byte[Math.min(length, INITIAL_READ_BUFFER_SIZE)];
+		int readLength = 0;
+
+		while (readLength < length) {
+			if (readLength == bytes.length) {
+				bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+			}
+
+			int chunkLength = bytes.length - readLength;
+
+			in.readFully(bytes, readLength, chunkLength);
+			readLength += chunkLength;
+		}
+		return ByteString.wrap(bytes);
+	}
+
+	/**
+	 * Reads a sequence of {@linkplain ByteString}s from a {@linkplain DataInput}.
+	 *
+	 * @param in the {@linkplain DataInput} to read from.
+	 * @return the read {@linkplain ByteString}s.
+	 * @throws IOException if an I/O error occurs or if the input is malformed.
+	 */
+	public static List<ByteString> readAll(DataInput in) throws IOException {
+		int count = readLength(in);
+		List<ByteString> byteStrings = new ArrayList<>(Math.min(count, INITIAL_LIST_CAPACITY_LIMIT));
+
+		for (int byteStringIndex = 0; byteStringIndex < count; byteStringIndex++) {
+			byteStrings.add(read(in));
+		}
+		return byteStrings;
+	}
+
+	/**
+	 * Writes a {@linkplain ByteString} to a {@linkplain ByteBuffer}.
+	 * <p>
+	 * The segments of a composite {@linkplain ByteString} are written one by one (without merging them first).
+	 *
+	 * @param dst the {@linkplain ByteBuffer} to write to.
+	 * @param byteString the {@linkplain ByteString} to write.
+	 * @throws BufferOverflowException if the buffer's remaining space is insufficient.
+	 */
+	public static void write(ByteBuffer dst, ByteString byteString) {
+		if (dst.remaining() < encodedLength(byteString)) {
+			throw new BufferOverflowException();
+		}
+		writeLength(dst, byteString.length());
+		for (ByteBuffer segment : byteString.asByteBuffers()) {
+			dst.put(segment);
+		}
+	}
+
+	/**
+	 * Writes a sequence of {@linkplain ByteString}s to a {@linkplain ByteBuffer}.
+	 *
+	 * @param dst the {@linkplain ByteBuffer} to write to.
+	 * @param byteStrings the {@linkplain ByteString}s to write.
+	 * @throws BufferOverflowException if the buffer's remaining space is insufficient.
+	 * @see #encodedLength(Collection)
+	 */
+	public static void writeAll(ByteBuffer dst, Collection<ByteString> byteStrings) {
+		writeLength(dst, byteStrings.size());
+		for (ByteString byteString : byteStrings) {
+			write(dst, byteString);
+		}
+	}
+
+	/**
+	 * Reads a {@linkplain ByteString} from a {@linkplain ByteBuffer}.
+	 * <p>
+	 * The returned {@linkplain ByteString} wraps the corresponding buffer region directly (no bytes are copied).
+	 *
+	 * @param src the {@linkplain ByteBuffer} to read from.
+	 * @return the read {@linkplain ByteString}.
+	 * @throws BufferUnderflowException if the buffer's remaining bytes are insufficient.
+	 * @throws IllegalArgumentException if the input is malformed.
+	 */
+	public static ByteString read(ByteBuffer src) {
+		int length = readLength(src);
+
+		if (length > src.remaining()) {
+			throw new BufferUnderflowException();
+		}
+
+		ByteBuffer bytes = src.duplicate();
+
+		bytes.limit(bytes.position() + length);
+		src.position(src.position() + length);
+		return ByteString.wrap(bytes);
+	}
+
+	/**
+	 * Reads a sequence of {@linkplain ByteString}s from a {@linkplain ByteBuffer}.
+	 * <p>
+	 * The returned {@linkplain ByteString}s wrap the corresponding buffer regions directly (no bytes are copied).
+	 *
+	 * @param src the {@linkplain ByteBuffer} to read from.
+	 * @return the read {@linkplain ByteString}s.
+	 * @throws BufferUnderflowException if the buffer's remaining bytes are insufficient.
+	 * @throws IllegalArgumentException if the input is malformed.
+	 */
+	public static List<ByteString> readAll(ByteBuffer src) {
+		int count = readLength(src);
+		List<ByteString> byteStrings = new ArrayList<>(Math.min(count, INITIAL_LIST_CAPACITY_LIMIT));
+
+		for (int byteStringIndex = 0; byteStringIndex < count; byteStringIndex++) {
+			byteStrings.add(read(src));
+		}
+		return byteStrings;
+	}
+
+	private static int lengthSize(int length) {
+		int size = 1;
+
+		for (int remaining = length >>> 7; remaining != 0; remaining >>>= 7) {
+			size++;
+		}
+		return size;
+	}
+
+	private static void writeLength(DataOutput out, int length) throws IOException {
+		int remaining = length;
+
+		while ((remaining & ~0x7f) != 0) {
+			out.write((remaining & 0x7f) | 0x80);
+			remaining >>>= 7;
+		}
+		out.write(remaining);
+	}
+
+	private static void writeLength(ByteBuffer dst, int length) {
+		int remaining = length;
+
+		while ((remaining & ~0x7f) != 0) {
+			dst.put((byte) ((remaining & 0x7f) | 0x80));
+			remaining >>>= 7;
+		}
+		dst.put((byte) remaining);
+	}
+
+	private static boolean isValidLength(int length, int shift, int lastByte) {
+		// The 5th byte may only carry the remaining 3 bits of a non-negative length
+		return (lastByte & 0x80) == 0 && length >= 0 && (shift < 35 || lastByte <= 0x07);
+	}
+
+	private static int readLength(DataInput in) throws IOException {
+		int length = 0;
+		int shift = 0;
+		int b;
+
+		do {
+			b = in.readUnsignedByte();
+			length |= (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0 && shift < 35);
+		if (!isValidLength(length, shift, b)) {
+			throw new StreamCorruptedException("Invalid length encoding");
+		}
+		return length;
+	}
+
+	private static int readLength(ByteBuffer src) {
+		int length = 0;
+		int shift = 0;
+		int b;
+
+		do {
+			b = Byte.toUnsignedInt(src.get());
+			length |= (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0 && shift < 35);
+		Check.isTrue(isValidLength(length, shift, b), "Invalid length encoding");
+		return length;
+	}
+
+}
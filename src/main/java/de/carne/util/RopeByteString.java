@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.util;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Composite {@linkplain ByteString} implementation concatenating multiple segments without copying them.
+ * <p>
+ * The segments are organized as a balanced binary tree (rope) whose leaves are the non-composite segments. A rope of
+ * depth {@code d} is considered balanced if it's length is at least the {@code (d + 1)}-th Fibonacci number. Hence the
+ * depth is bounded by {@code O(log n)} and locating the segment of a byte requires {@code O(log n)} time. Concatenating
+ * two ropes only creates a new root node (sharing both sub-trees). An unbalanced result is rebuilt from it's balanced
+ * sub-trees.
+ */
+final class RopeByteString extends ByteString {
+
+	// Serialization support
+	private static final long serialVersionUID = -2384911907306385218L;
+
+	// Minimum length of a balanced rope by depth (the (d + 1)-th Fibonacci number 1, 1, 2, 3, 5, ... for depth d)
+	private static final int[] MIN_LENGTH_BY_DEPTH = minLengthByDepth();
+
+	private final transient ByteString left;
+	private final transient ByteString right;
+	private final transient int leftLength;
+	private final transient int length;
+	private final transient int depth;
+	private final transient int segmentCount;
+	// Contiguous copy (created on demand)
+	private transient @Nullable ByteString flattened = null;
+
+	private RopeByteString(ByteString left, ByteString right) {
+		this.left = left;
+		this.right = right;
+		this.leftLength = left.length();
+		this.length = this.leftLength + right.length();
+		this.depth = Math.max(depth(left), depth(right)) + 1;
+		this.segmentCount = segmentCount(left) + segmentCount(right);
+	}
+
+	private static int[] minLengthByDepth() {
+		int[] minLengths = new int[64];
+		int depth = 0;
+		long minLength1 = 1;
+		long minLength2 = 1;
+
+		while (minLength1 <= Integer.MAX_VALUE) {
+			minLengths[depth] = (int) minLength1;
+			depth++;
+
+			long nextMinLength = minLength1 + minLength2;
+
+			minLength1 = minLength2;
+			minLength2 = nextMinLength;
+		}
+		return Arrays.copyOf(minLengths, depth);
+	}
+
+	static ByteString of(ByteString... byteStrings) {
+		long totalLength = 0;
+
+		for (ByteString byteString : byteStrings) {
+			totalLength += byteString.length();
+		}
+
+		Check.isTrue(totalLength <= Integer.MAX_VALUE, "Concatenated length exceeds maximum: {0}", totalLength);
+
+		return (byteStrings.length > 0 ? concat(byteStrings, 0, byteStrings.length) : EMPTY);
+	}
+
+	private static ByteString concat(ByteString[] byteStrings, int from, int to) {
+		ByteString concatenated;
+
+		if (to - from == 1) {
+			concatenated = byteStrings[from];
+		} else {
+			int middle = (from + to) >>> 1;
+
+			concatenated = concat(concat(byteStrings, from, middle), concat(byteStrings, middle, to));
+		}
+		return concatenated;
+	}
+
+	private static ByteString concat(ByteString left, ByteString right) {
+		ByteString concatenated;
+
+		if (right.length() == 0) {
+			concatenated = left;
+		} else if (left.length() == 0) {
+			concatenated = right;
+		} else if (left instanceof RopeByteString && depth(((RopeByteString) left).left) > depth(
+				((RopeByteString) left).right) && ((RopeByteString) left).depth > depth(right)) {
+			// Appending to a left-heavy rope (the typical result of repeated appends): rotate to keep the depth
+			RopeByteString leftRope = (RopeByteString) left;
+
+			concatenated = new RopeByteString(leftRope.left, new RopeByteString(leftRope.right, right));
+		} else {
+			RopeByteString rope = new RopeByteString(left, right);
+
+			concatenated = (rope.isBalanced() ? rope : new Balancer().balance(rope));
+		}
+		return concatenated;
+	}
+
+	private static int depth(ByteString byteString) {
+		return (byteString instanceof RopeByteString ? ((RopeByteString) byteString).depth : 0);
+	}
+
+	private static int segmentCount(ByteString byteString) {
+		return (byteString instanceof RopeByteString ? ((RopeByteString) byteString).segmentCount : 1);
+	}
+
+	private static int minLength(int depth) {
+		return (depth < MIN_LENGTH_BY_DEPTH.length ? MIN_LENGTH_BY_DEPTH[depth] : Integer.MAX_VALUE);
+	}
+
+	private boolean isBalanced() {
+		return this.length >= minLength(this.depth);
+	}
+
+	@Override
+	public int length() {
+		return this.length;
+	}
+
+	@Override
+	public byte byteAt(int index) {
+		Check.isTrue(0 <= index);
+		Check.isTrue(index < this.length);
+
+		ByteString node = this;
+		int nodeIndex = index;
+
+		while (node instanceof RopeByteString) {
+			RopeByteString rope = (RopeByteString) node;
+
+			if (nodeIndex < rope.leftLength) {
+				node = rope.left;
+			} else {
+				node = rope.right;
+				nodeIndex -= rope.leftLength;
+			}
+		}
+		return node.byteAt(nodeIndex);
+	}
+
+	@Override
+	public void copyTo(byte[] dest, int destPos) {
+		Check.isTrue(0 <= destPos);
+		Check.isTrue(dest.length - destPos >= this.length);
+
+		this.left.copyTo(dest, destPos);
+		this.right.copyTo(dest, destPos + this.leftLength);
+	}
+
+	@Override
+	public void write(OutputStream out) throws IOException {
+		this.left.write(out);
+		this.right.write(out);
+	}
+
+	@Override
+	void writeTo(DataOutput out) throws IOException {
+		this.left.writeTo(out);
+		this.right.writeTo(out);
+	}
+
+	@Override
+	public ByteString slice(int sliceStart, int sliceLength) {
+		Check.isTrue(0 <= sliceStart);
+		Check.isTrue(0 <= sliceLength);
+		Check.isTrue(sliceStart + sliceLength <= this.length);
+
+		int sliceEnd = sliceStart + sliceLength;
+		ByteString slice;
+
+		if (sliceStart == 0 && sliceLength == this.length) {
+			slice = this;
+		} else if (sliceLength == 0) {
+			slice = EMPTY;
+		} else if (sliceEnd <= this.leftLength) {
+			slice = this.left.slice(sliceStart, sliceLength);
+		} else if (sliceStart >= this.leftLength) {
+			slice = this.right.slice(sliceStart - this.leftLength, sliceLength);
+		} else {
+			slice = concat(this.left.slice(sliceStart, this.leftLength - sliceStart),
+					this.right.slice(0, sliceEnd - this.leftLength));
+		}
+		return slice;
+	}
+
+	@Override
+	public ByteBuffer asByteBuffer() {
+		return flatten().asByteBuffer();
+	}
+
+	@Override
+	public ByteBuffer[] asByteBuffers() {
+		ByteBuffer[] buffers = new ByteBuffer[this.segmentCount];
+		Deque<ByteString> pending = new ArrayDeque<>(this.depth + 1);
+		int bufferIndex = 0;
+
+		pending.push(this);
+		while (!pending.isEmpty()) {
+			ByteString node = pending.pop();
+
+			if (node instanceof RopeByteString) {
+				pending.push(((RopeByteString) node).right);
+				pending.push(((RopeByteString) node).left);
+			} else {
+				buffers[bufferIndex] = node.asByteBuffer();
+				bufferIndex++;
+			}
+		}
+		return buffers;
+	}
+
+	private ByteString flatten() {
+		ByteString checkedFlattened = this.flattened;
+
+		if (checkedFlattened == null) {
+			checkedFlattened = new ArrayByteString(bytes());
+			this.flattened = checkedFlattened;
+		}
+		return checkedFlattened;
+	}
+
+	// Rebuilds an unbalanced rope from it's balanced sub-trees (stack of sub-trees with increasing depth bins)
+	private static final class Balancer {
+
+		private final Deque<ByteString> prefixes = new ArrayDeque<>();
+
+		ByteString balance(RopeByteString rope) {
+			collect(rope);
+
+			ByteString balanced = this.prefixes.pop();
+
+			while (!this.prefixes.isEmpty()) {
+				balanced = new RopeByteString(this.prefixes.pop(), balanced);
+			}
+			return balanced;
+		}
+
+		private void collect(ByteString node) {
+			if (node instanceof RopeByteString && !((RopeByteString) node).isBalanced()) {
+				collect(((RopeByteString) node).left);
+				collect(((RopeByteString) node).right);
+			} else {
+				insert(node);
+			}
+		}
+
+		private void insert(ByteString node) {
+			int depthBin = depthBin(node.length());
+			ByteString top = this.prefixes.peek();
+
+			if (top == null || top.length() >= minLength(depthBin + 1)) {
+				this.prefixes.push(node);
+			} else {
+				int binStart = minLength(depthBin);
+				ByteString newTree = this.prefixes.pop();
+
+				top = this.prefixes.peek();
+				while (top != null && top.length() < binStart) {
+					newTree = new RopeByteString(this.prefixes.pop(), newTree);
+					top = this.prefixes.peek();
+				}
+				newTree = new RopeByteString(newTree, node);
+				top = this.prefixes.peek();
+				while (top != null && top.length() < minLength(depthBin(newTree.length()) + 1)) {
+					newTree = new RopeByteString(this.prefixes.pop(), newTree);
+					top = this.prefixes.peek();
+				}
+				this.prefixes.push(newTree);
+			}
+		}
+
+		private static int depthBin(int length) {
+			int depthBin = Arrays.binarySearch(MIN_LENGTH_BY_DEPTH, length);
+
+			return (depthBin >= 0 ? depthBin : -(depthBin + 1) - 1);
+		}
+
+	}
+
+}
@@ -43,4 +43,26 @@ public class FunctionException extends RuntimeException {
 		return exceptionType.cast(getCause());
 	}
 
+	/**
+	 * Gets the wrapped exception for re-throwing (for functional interfaces throwing one of two exception types).
+	 * <p>
+	 * A wrapped exception of the second type is thrown directly, a wrapped exception of the first type is returned.
+	 *
+	 * @param <T1> the first wrapped exception type.
+	 * @param <T2> the second wrapped exception type.
+	 * @param exceptionType1 the first wrapped exception type.
+	 * @param exceptionType2 the second wrapped exception type.
+	 * @return the wrapped exception.
+	 * @throws T2 if the wrapped exception is of the second type.
+	 */
+	public <T1 extends Exception, T2 extends Exception> T1 rethrow(Class<T1> exceptionType1,
+			Class<T2> exceptionType2) throws T2 {
+		Throwable cause = getCause();
+
+		if (exceptionType2.isInstance(cause)) {
+			throw exceptionType2.cast(cause);
+		}
+		return exceptionType1.cast(cause);
+	}
+
 }
@@ -16,13 +16,18 @@
  */
 package de.carne.test.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import de.carne.io.AnsiFilter;
+import de.carne.io.AnsiFilterOutputStream;
 
 /**
  * Test {@linkplain AnsiFilter} class.
@@ -47,6 +52,7 @@ class AnsiFilterTest {
 		Assertions.assertArrayEquals(OUT_NO_ANSI, filterChar(IN_NO_ANSI));
 		Assertions.assertArrayEquals(OUT_NO_ANSI, filterArray(IN_NO_ANSI));
 		Assertions.assertEquals(new String(OUT_NO_ANSI), filterString(new String(IN_NO_ANSI)));
+		Assertions.assertEquals(new String(OUT_NO_ANSI), filterStream(new String(IN_NO_ANSI)));
 	}
 
 	@Test
@@ -54,6 +60,7 @@ class AnsiFilterTest {
 		Assertions.assertArrayEquals(OUT_VALID_ANSI_1, filterChar(IN_VALID_ANSI_1));
 		Assertions.assertArrayEquals(OUT_VALID_ANSI_1, filterArray(IN_VALID_ANSI_1));
 		Assertions.assertEquals(new String(OUT_VALID_ANSI_1), filterString(new String(IN_VALID_ANSI_1)));
+		Assertions.assertEquals(new String(OUT_VALID_ANSI_1), filterStream(new String(IN_VALID_ANSI_1)));
 	}
 
 	@Test
@@ -61,6 +68,7 @@ class AnsiFilterTest {
 		Assertions.assertArrayEquals(OUT_VALID_ANSI_2, filterChar(IN_VALID_ANSI_2));
 		Assertions.assertArrayEquals(OUT_VALID_ANSI_2, filterArray(IN_VALID_ANSI_2));
 		Assertions.assertEquals(new String(OUT_VALID_ANSI_2), filterString(new String(IN_VALID_ANSI_2)));
+		Assertions.assertEquals(new String(OUT_VALID_ANSI_2), filterStream(new String(IN_VALID_ANSI_2)));
 	}
 
 	@Test
@@ -68,6 +76,7 @@ class AnsiFilterTest {
 		Assertions.assertArrayEquals(OUT_VALID_ANSI_3, filterChar(IN_VALID_ANSI_3));
 		Assertions.assertArrayEquals(OUT_VALID_ANSI_3, filterArray(IN_VALID_ANSI_3));
 		Assertions.assertEquals(new String(OUT_VALID_ANSI_3), filterString(new String(IN_VALID_ANSI_3)));
+		Assertions.assertEquals(new String(OUT_VALID_ANSI_3), filterStream(new String(IN_VALID_ANSI_3)));
 	}
 
 	@Test
@@ -75,6 +84,7 @@ class AnsiFilterTest {
 		Assertions.assertArrayEquals(OUT_UNKNOWN_ANSI_1, filterChar(IN_UNKNOWN_ANSI_1));
 		Assertions.assertArrayEquals(OUT_UNKNOWN_ANSI_1, filterArray(IN_UNKNOWN_ANSI_1));
 		Assertions.assertEquals(new String(OUT_UNKNOWN_ANSI_1), filterString(new String(IN_UNKNOWN_ANSI_1)));
+		Assertions.assertEquals(new String(OUT_UNKNOWN_ANSI_1), filterStream(new String(IN_UNKNOWN_ANSI_1)));
 	}
 
 	@Test
@@ -82,6 +92,51 @@ class AnsiFilterTest {
 		Assertions.assertArrayEquals(OUT_UNKNOWN_ANSI_2, filterChar(IN_UNKNOWN_ANSI_2));
 		Assertions.assertArrayEquals(OUT_UNKNOWN_ANSI_2, filterArray(IN_UNKNOWN_ANSI_2));
 		Assertions.assertEquals(new String(OUT_UNKNOWN_ANSI_2), filterString(new String(IN_UNKNOWN_ANSI_2)));
+		Assertions.assertEquals(new String(OUT_UNKNOWN_ANSI_2), filterStream(new String(IN_UNKNOWN_ANSI_2)));
+	}
+
+	@Test
+	void testMixedAnsi() throws IOException {
+		Random random = new Random(42);
+		String[] fragments = { "plain text ", "\u001b", "\u009b", "\u001b\u009b1;31m", "\u001b\u009b0 @", "\u00e4\u20ac",
+				"\u001b\u001b", "\u001bx", "\u001b\u00c2", "\u00c2\u009b", "\u001b\u009b\u001b\u009bm", "\n" };
+
+		for (int round = 0; round < 100; round++) {
+			StringBuilder in = new StringBuilder();
+
+			for (int fragmentIndex = 0; fragmentIndex < 50; fragmentIndex++) {
+				in.append(fragments[random.nextInt(fragments.length)]);
+			}
+
+			String inString = in.toString();
+			String expected = new String(filterArray(inString.toCharArray()));
+			StringWriter charBuffer = new StringWriter();
+
+			try (AnsiFilter filter = new AnsiFilter(charBuffer)) {
+				inString.chars().forEach(c -> {
+					try {
+						filter.write(c);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+				filter.flush();
+			}
+			Assertions.assertEquals(expected, charBuffer.toString());
+			Assertions.assertEquals(expected, filterString(inString));
+			Assertions.assertEquals(expected, filterStream(inString));
+			Assertions.assertEquals(expected, filterStreamBytewise(inString));
+		}
+	}
+
+	@Test
+	void testRawCsiStream() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		try (AnsiFilterOutputStream filter = new AnsiFilterOutputStream(buffer)) {
+			filter.write(new byte[] { 'a', 0x1b, (byte) 0x9b, '1', 'm', 'b' });
+		}
+		Assertions.assertEquals("ab", buffer.toString(StandardCharsets.UTF_8));
 	}
 
 	private char[] filterChar(char[] in) throws IOException {
@@ -104,6 +159,30 @@ class AnsiFilterTest {
 		return buffer.toString().toCharArray();
 	}
 
+	private String filterStream(String in) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		byte[] inBytes = in.getBytes(StandardCharsets.UTF_8);
+
+		try (AnsiFilterOutputStream filter = new AnsiFilterOutputStream(buffer)) {
+			int split = inBytes.length / 3;
+
+			filter.write(inBytes, 0, split);
+			filter.write(inBytes, split, inBytes.length - split);
+		}
+		return buffer.toString(StandardCharsets.UTF_8);
+	}
+
+	private String filterStreamBytewise(String in) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		try (AnsiFilterOutputStream filter = new AnsiFilterOutputStream(buffer)) {
+			for (byte b : in.getBytes(StandardCharsets.UTF_8)) {
+				filter.write(b);
+			}
+		}
+		return buffer.toString(StandardCharsets.UTF_8);
+	}
+
 	private String filterString(String in) throws IOException {
 		StringWriter buffer = new StringWriter();
 		@SuppressWarnings("resource") AnsiFilter filter = new AnsiFilter(buffer);
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.test.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.carne.io.AsyncIOUtil;
+import de.carne.io.Defaults;
+
+/**
+ * Test {@linkplain AsyncIOUtil} class.
+ */
+class AsyncIOUtilTest {
+
+	@Test
+	void testWriteAndReadAsync(@TempDir Path tempDir) throws IOException {
+		byte[] data1 = randomData(1234);
+		byte[] data2 = randomData(1024 * 1024 + 17);
+		Path file = tempDir.resolve("test.bin");
+		long written = AsyncIOUtil
+				.writeAsync(file, ByteBuffer.wrap(data1), ByteBuffer.allocate(0), ByteBuffer.wrap(data2)).join()
+				.longValue();
+
+		Assertions.assertEquals(data1.length + data2.length, written);
+
+		byte[] read = AsyncIOUtil.readAllBytesAsync(file).join();
+
+		Assertions.assertArrayEquals(Files.readAllBytes(file), read);
+		Assertions.assertEquals(0, AsyncIOUtil.writeAsync(file).join().longValue());
+		Assertions.assertEquals(0, AsyncIOUtil.readAllBytesAsync(file).join().length);
+	}
+
+	@Test
+	void testCopyAsync(@TempDir Path tempDir) throws IOException {
+		byte[] data = randomData(3 * 1024 * 1024 + 4321);
+		Path src = Files.write(tempDir.resolve("src.bin"), data);
+		Path dst = Files.write(tempDir.resolve("dst.bin"), randomData(data.length * 2));
+
+		Assertions.assertEquals(data.length, AsyncIOUtil.copyAsync(dst, src).join().longValue());
+		Assertions.assertArrayEquals(data, Files.readAllBytes(dst));
+	}
+
+	@Test
+	void testConcurrentOperations(@TempDir Path tempDir) throws IOException {
+		int fileCount = Defaults.MAX_ASYNC_OPERATIONS * 4;
+		List<byte[]> datas = new ArrayList<>(fileCount);
+		List<CompletableFuture<byte[]>> reads = new ArrayList<>(fileCount);
+
+		for (int fileIndex = 0; fileIndex < fileCount; fileIndex++) {
+			byte[] data = randomData(fileIndex * 100);
+
+			datas.add(data);
+			Files.write(tempDir.resolve("file" + fileIndex), data);
+		}
+		for (int fileIndex = 0; fileIndex < fileCount; fileIndex++) {
+			reads.add(AsyncIOUtil.readAllBytesAsync(tempDir.resolve("file" + fileIndex)));
+		}
+		for (int fileIndex = 0; fileIndex < fileCount; fileIndex++) {
+			Assertions.assertArrayEquals(datas.get(fileIndex), reads.get(fileIndex).join());
+		}
+	}
+
+	@Test
+	void testAsyncFailure(@TempDir Path tempDir) {
+		Path missing = tempDir.resolve("missing");
+		CompletionException readException = Assertions.assertThrows(CompletionException.class,
+				() -> AsyncIOUtil.readAllBytesAsync(missing).join());
+
+		Assertions.assertEquals(NoSuchFileException.class, readException.getCause().getClass());
+
+		CompletionException copyException = Assertions.assertThrows(CompletionException.class,
+				() -> AsyncIOUtil.copyAsync(tempDir.resolve("copy"), missing).join());
+
+		Assertions.assertEquals(NoSuchFileException.class, copyException.getCause().getClass());
+
+		CompletionException writeException = Assertions.assertThrows(CompletionException.class,
+				() -> AsyncIOUtil.writeAsync(missing.resolve("file"), ByteBuffer.allocate(1)).join());
+
+		Assertions.assertEquals(NoSuchFileException.class, writeException.getCause().getClass());
+	}
+
+	private static byte[] randomData(int length) {
+		byte[] data = new byte[length];
+
+		new Random(length).nextBytes(data);
+		return data;
+	}
+
+}
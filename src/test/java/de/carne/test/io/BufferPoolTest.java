@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.test.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.carne.io.BufferPool;
+import de.carne.io.Defaults;
+
+/**
+ * Test {@linkplain BufferPool} class.
+ */
+class BufferPoolTest {
+
+	@Test
+	void testHeapPool() {
+		ByteBuffer buffer = testPool(BufferPool.HEAP);
+
+		Assertions.assertFalse(buffer.isDirect());
+		Assertions.assertTrue(buffer.hasArray());
+	}
+
+	@Test
+	void testDirectPool() {
+		ByteBuffer buffer = testPool(BufferPool.DIRECT);
+
+		Assertions.assertTrue(buffer.isDirect());
+	}
+
+	@Test
+	void testSharedFreeList() throws InterruptedException {
+		BufferPool pool = BufferPool.HEAP;
+		ByteBuffer buffer1 = pool.acquire();
+		ByteBuffer buffer2 = pool.acquire();
+
+		// At most one of the released buffers fits into the thread local cache; the other one is shared
+		pool.release(buffer1);
+		pool.release(buffer2);
+
+		long hitCount = pool.hitCount();
+		AtomicReference<ByteBuffer> acquired = new AtomicReference<>();
+		Thread thread = new Thread(() -> acquired.set(pool.acquire()));
+
+		thread.start();
+		thread.join();
+
+		Assertions.assertNotNull(acquired.get());
+		Assertions.assertEquals(hitCount + 1, pool.hitCount());
+	}
+
+	@Test
+	void testForeignAndRepeatedRelease() {
+		BufferPool pool = BufferPool.HEAP;
+		ByteBuffer wrapped = ByteBuffer.wrap(new byte[Defaults.DEFAULT_BUFFER_SIZE]);
+		ByteBuffer slice = ByteBuffer.wrap(new byte[Defaults.DEFAULT_BUFFER_SIZE * 2], 1, Defaults.DEFAULT_BUFFER_SIZE)
+				.slice();
+		ByteBuffer buffer = pool.acquire();
+
+		pool.release(wrapped);
+		pool.release(slice);
+		pool.release(buffer.duplicate());
+		pool.release(buffer);
+		pool.release(buffer);
+
+		ByteBuffer buffer1 = pool.acquire();
+		ByteBuffer buffer2 = pool.acquire();
+
+		Assertions.assertNotSame(buffer1, buffer2);
+		for (ByteBuffer acquired : new ByteBuffer[] { buffer1, buffer2 }) {
+			Assertions.assertNotSame(wrapped, acquired);
+			Assertions.assertNotSame(slice, acquired);
+			Assertions.assertEquals(0, acquired.arrayOffset());
+		}
+		pool.release(buffer2);
+		pool.release(buffer1);
+	}
+
+	private ByteBuffer testPool(BufferPool pool) {
+		ByteBuffer buffer1 = pool.acquire();
+
+		Assertions.assertEquals(Defaults.DEFAULT_BUFFER_SIZE, buffer1.capacity());
+		Assertions.assertEquals(0, buffer1.position());
+		Assertions.assertEquals(buffer1.capacity(), buffer1.limit());
+
+		buffer1.put((byte) 0x42);
+		buffer1.order(ByteOrder.LITTLE_ENDIAN);
+		pool.release(buffer1);
+
+		long hitCount = pool.hitCount();
+		long missCount = pool.missCount();
+		ByteBuffer buffer2 = pool.acquire(Defaults.DEFAULT_BUFFER_SIZE - 1);
+
+		Assertions.assertSame(buffer1, buffer2);
+		Assertions.assertEquals(0, buffer2.position());
+		Assertions.assertEquals(ByteOrder.BIG_ENDIAN, buffer2.order());
+		Assertions.assertEquals(hitCount + 1, pool.hitCount());
+		Assertions.assertEquals(missCount, pool.missCount());
+
+		ByteBuffer buffer3 = pool.acquire(Defaults.DEFAULT_BUFFER_SIZE + 1);
+
+		Assertions.assertEquals(Defaults.DEFAULT_BUFFER_SIZE * 2, buffer3.capacity());
+		Assertions.assertEquals(hitCount + missCount + 2, pool.hitCount() + pool.missCount());
+
+		long oversizedMissCount = pool.missCount();
+		ByteBuffer buffer4 = pool.acquire(Defaults.MAX_BUFFER_SIZE + 1);
+
+		Assertions.assertEquals(Defaults.MAX_BUFFER_SIZE + 1, buffer4.capacity());
+		Assertions.assertEquals(oversizedMissCount + 1, pool.missCount());
+
+		pool.release(buffer4);
+		pool.release(buffer3);
+		pool.release(buffer2);
+		return buffer2;
+	}
+
+}
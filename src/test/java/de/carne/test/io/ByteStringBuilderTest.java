@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.test.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.carne.io.ByteStringBuilder;
+import de.carne.io.Defaults;
+import de.carne.util.ByteString;
+
+/**
+ * Test {@linkplain ByteStringBuilder} class.
+ */
+class ByteStringBuilderTest {
+
+	@Test
+	void testSmallBuild() throws IOException {
+		try (ByteStringBuilder builder = new ByteStringBuilder()) {
+			Assertions.assertSame(ByteString.EMPTY, builder.toByteString());
+
+			builder.write(0x01);
+			builder.write(new byte[] { 0x02, 0x03 });
+			builder.write(ByteBuffer.wrap(new byte[] { 0x04 }));
+			builder.append((byte) 0x05).append(ByteString.wrap((byte) 0x06));
+
+			Assertions.assertEquals(6, builder.length());
+			Assertions.assertEquals(ByteString.wrap((byte) 0x01, (byte) 0x02, (byte) 0x03, (byte) 0x04, (byte) 0x05,
+					(byte) 0x06), builder.toByteString());
+
+			builder.reset();
+
+			Assertions.assertEquals(0, builder.length());
+			Assertions.assertSame(ByteString.EMPTY, builder.toByteString());
+		}
+	}
+
+	@Test
+	void testLargeBuild() throws IOException {
+		byte[] bytes = new byte[Defaults.DEFAULT_BUFFER_SIZE * 5 + 17];
+
+		new Random(42).nextBytes(bytes);
+
+		try (ByteStringBuilder builder = new ByteStringBuilder()) {
+			int bytesPos = 0;
+			int writeLength = 1;
+
+			while (bytesPos < bytes.length) {
+				int length = Math.min(writeLength, bytes.length - bytesPos);
+
+				if ((writeLength & 1) == 0) {
+					builder.write(bytes, bytesPos, length);
+				} else {
+					builder.write(ByteBuffer.wrap(bytes, bytesPos, length));
+				}
+				bytesPos += length;
+				writeLength = writeLength * 3 + 1;
+			}
+
+			ByteString byteString = builder.toByteString();
+
+			Assertions.assertEquals(ByteString.wrap(bytes), byteString);
+
+			// Further appends must not affect the already returned byte string
+			builder.append(new byte[Defaults.DEFAULT_BUFFER_SIZE]);
+
+			Assertions.assertEquals(ByteString.wrap(bytes), byteString);
+			Assertions.assertEquals(bytes.length + Defaults.DEFAULT_BUFFER_SIZE, builder.toByteString().length());
+			Assertions.assertEquals(byteString, builder.toByteString().slice(0, bytes.length));
+
+			// Neither must a reset
+			builder.reset();
+			builder.append(new byte[bytes.length]);
+
+			Assertions.assertEquals(ByteString.wrap(bytes), byteString);
+
+			ByteString large = ByteString.wrap(bytes);
+
+			builder.reset();
+			builder.append((byte) 0x00).append(large).append((byte) 0x01);
+
+			ByteString appended = builder.toByteString();
+
+			Assertions.assertEquals(bytes.length + 2, appended.length());
+			Assertions.assertEquals(large, appended.slice(1, bytes.length));
+		}
+	}
+
+	@Test
+	void testInterleavedByteStringAppends() throws IOException {
+		ByteString large = ByteString.wrap(new byte[2048]);
+		int rounds = 200;
+
+		try (ByteStringBuilder builder = new ByteStringBuilder()) {
+			for (int round = 0; round < rounds; round++) {
+				builder.append(large).appendInt(round);
+			}
+
+			// Referenced byte strings must not retire the current chunk
+			Assertions.assertEquals(Defaults.DEFAULT_BUFFER_SIZE, builder.capacity());
+			Assertions.assertEquals(rounds * (large.length() + Integer.BYTES), builder.length());
+
+			ByteString built = builder.toByteString();
+
+			for (int round = 0; round < rounds; round++) {
+				int intPos = round * (large.length() + Integer.BYTES) + large.length();
+
+				Assertions.assertEquals(large, built.slice(intPos - large.length(), large.length()));
+				Assertions.assertEquals(round, built.slice(intPos, Integer.BYTES).asByteBuffer().getInt());
+			}
+		}
+	}
+
+	@Test
+	void testAppendPrimitives() throws IOException {
+		ByteArrayOutputStream expectedBytes = new ByteArrayOutputStream();
+		ByteBuffer expectedLE = ByteBuffer.allocate(Defaults.DEFAULT_BUFFER_SIZE * 4).order(ByteOrder.LITTLE_ENDIAN);
+
+		try (ByteStringBuilder builder = new ByteStringBuilder(); ByteStringBuilder builderLE = new ByteStringBuilder();
+				DataOutputStream expected = new DataOutputStream(expectedBytes)) {
+			for (int valueIndex = 0; valueIndex < Defaults.DEFAULT_BUFFER_SIZE / 16; valueIndex++) {
+				builder.appendShort((short) valueIndex).appendInt(-valueIndex).appendLong(valueIndex * 31l)
+						.appendFloat(valueIndex / 3.0f).appendDouble(valueIndex / 7.0).append((byte) valueIndex);
+				builderLE.appendShortLE((short) valueIndex).appendIntLE(-valueIndex)
+						.appendLongLE(valueIndex * 31l).appendFloatLE(valueIndex / 3.0f)
+						.appendDoubleLE(valueIndex / 7.0).append((byte) valueIndex);
+				expected.writeShort(valueIndex);
+				expected.writeInt(-valueIndex);
+				expected.writeLong(valueIndex * 31l);
+				expected.writeFloat(valueIndex / 3.0f);
+				expected.writeDouble(valueIndex / 7.0);
+				expected.writeByte(valueIndex);
+				expectedLE.putShort((short) valueIndex).putInt(-valueIndex).putLong(valueIndex * 31l)
+						.putFloat(valueIndex / 3.0f).putDouble(valueIndex / 7.0).put((byte) valueIndex);
+			}
+			expected.flush();
+			expectedLE.flip();
+
+			Assertions.assertEquals(ByteString.wrap(expectedBytes.toByteArray()), builder.toByteString());
+			Assertions.assertEquals(ByteString.wrap(expectedLE), builderLE.toByteString());
+		}
+	}
+
+	@Test
+	void testClose() throws IOException {
+		ByteStringBuilder builder = new ByteStringBuilder();
+
+		builder.write(0x01);
+
+		Assertions.assertTrue(builder.isOpen());
+
+		builder.close();
+
+		Assertions.assertFalse(builder.isOpen());
+		Assertions.assertThrows(ClosedChannelException.class, () -> builder.write(0x02));
+		Assertions.assertThrows(ClosedChannelException.class, () -> builder.write(ByteBuffer.allocate(1)));
+		Assertions.assertEquals(ByteString.wrap((byte) 0x01, (byte) 0x02), builder.append((byte) 0x02).toByteString());
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.test.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.io.Checksum;
+import de.carne.io.ChecksumCheckpoint;
+import de.carne.io.MD5Checksum;
+import de.carne.io.XXHash64Checksum;
+import de.carne.test.annotation.io.TempFile;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test {@linkplain ChecksumCheckpoint} class.
+ */
+@ExtendWith(TempPathExtension.class)
+class ChecksumCheckpointTest {
+
+	@Test
+	void testResume(@TempFile File file) throws IOException {
+		byte[] data = new byte[100000];
+
+		for (int dataIndex = 0; dataIndex < data.length; dataIndex++) {
+			data[dataIndex] = (byte) (dataIndex * 13);
+		}
+
+		Checksum checksum = XXHash64Checksum.getInstance();
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(data, 0, 40000));
+
+			ChecksumCheckpoint checkpoint1 = ChecksumCheckpoint.resume(checksum, channel, null);
+
+			Assertions.assertEquals(40000, checkpoint1.offset());
+			Assertions.assertArrayEquals(checksumOf(data, 40000), checksum.getValue());
+
+			// Append and resume using a persisted checkpoint
+			channel.write(ByteBuffer.wrap(data, 40000, data.length - 40000), 40000);
+
+			ChecksumCheckpoint checkpoint2 = ChecksumCheckpoint.resume(checksum, channel, roundTrip(checkpoint1));
+
+			Assertions.assertEquals(data.length, checkpoint2.offset());
+			Assertions.assertArrayEquals(checksumOf(data, data.length), checksum.getValue());
+
+			// Truncate and resume (falls back to full hashing)
+			channel.truncate(1000);
+
+			ChecksumCheckpoint checkpoint3 = ChecksumCheckpoint.resume(checksum, channel, checkpoint2);
+
+			Assertions.assertEquals(1000, checkpoint3.offset());
+			Assertions.assertArrayEquals(checksumOf(data, 1000), checksum.getValue());
+		}
+	}
+
+	@Test
+	void testUnsupportedChecksum(@TempFile File file) throws IOException, NoSuchAlgorithmException {
+		Checksum md5 = MD5Checksum.getInstance();
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		// The closed channel ensures the check happens before any I/O
+		channel.close();
+		Assertions.assertThrows(UnsupportedOperationException.class,
+				() -> ChecksumCheckpoint.resume(md5, channel, null));
+	}
+
+	@Test
+	void testInvalidCheckpointData() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeLong(0);
+			out.writeInt(Integer.MAX_VALUE);
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			Assertions.assertThrows(IOException.class, () -> ChecksumCheckpoint.readFrom(in));
+		}
+	}
+
+	private static byte[] checksumOf(byte[] data, int length) {
+		Checksum checksum = XXHash64Checksum.getInstance();
+
+		checksum.update(data, 0, length);
+		return checksum.getValue();
+	}
+
+	private static ChecksumCheckpoint roundTrip(ChecksumCheckpoint checkpoint) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			checkpoint.writeTo(out);
+		}
+
+		ChecksumCheckpoint readCheckpoint;
+
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			readCheckpoint = ChecksumCheckpoint.readFrom(in);
+		}
+		Assertions.assertEquals(checkpoint.offset(), readCheckpoint.offset());
+		Assertions.assertArrayEquals(checkpoint.state(), readCheckpoint.state());
+		return readCheckpoint;
+	}
+
+}
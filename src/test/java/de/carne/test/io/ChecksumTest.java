@@ -17,20 +17,37 @@
 package de.carne.test.io;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import de.carne.io.Adler32Checksum;
+import de.carne.io.CRC32CChecksum;
+import de.carne.io.CRC32Checksum;
 import de.carne.io.Checksum;
+import de.carne.io.ChecksumFactory;
 import de.carne.io.ChecksumInputStream;
 import de.carne.io.ChecksumOutputStream;
+import de.carne.io.CompositeChecksum;
 import de.carne.io.IOUtil;
 import de.carne.io.MD5Checksum;
 import de.carne.io.NullOutputStream;
 import de.carne.io.SHA256Checksum;
+import de.carne.io.XXHash64Checksum;
 import de.carne.text.HexBytes;
 
 /**
@@ -48,6 +65,11 @@ class ChecksumTest {
 
 	private static final String TEST_DATA_SHA256 = "40aff2e9d2d8922e47afd4648e6967497158785fbd1da870e7110266bf944880";
 	private static final String TEST_DATA_MD5 = "e2c865db4162bed963bfaa9ef6ac18f0";
+	private static final String TEST_DATA_CRC32 = "29058c73";
+	private static final String TEST_DATA_CRC32C = "9c44184b";
+	private static final String TEST_DATA_ADLER32 = "adf67f81";
+	private static final String TEST_DATA_XXHASH64 = "1facbe8406cd904b";
+	private static final String TEST_DATA_XXHASH64_SEED42 = "e212741fa701583d";
 
 	@Test
 	void testSHA256Checksum() throws Exception {
@@ -75,6 +97,204 @@ class ChecksumTest {
 		testChecksumOutputStream(md5, TEST_DATA_MD5);
 	}
 
+	@Test
+	void testCRC32Checksum() throws Exception {
+		testNonCryptoChecksum(CRC32Checksum.getInstance(), TEST_DATA_CRC32);
+	}
+
+	@Test
+	void testCRC32CChecksum() throws Exception {
+		testNonCryptoChecksum(CRC32CChecksum.getInstance(), TEST_DATA_CRC32C);
+	}
+
+	@Test
+	void testAdler32Checksum() throws Exception {
+		testNonCryptoChecksum(Adler32Checksum.getInstance(), TEST_DATA_ADLER32);
+	}
+
+	@Test
+	void testXXHash64Checksum() throws Exception {
+		testNonCryptoChecksum(XXHash64Checksum.getInstance(), TEST_DATA_XXHASH64);
+		testNonCryptoChecksum(XXHash64Checksum.getInstance(42), TEST_DATA_XXHASH64_SEED42);
+
+		XXHash64Checksum xxhash64 = XXHash64Checksum.getInstance();
+
+		Assertions.assertEquals("ef46db3751d8e999", HexBytes.toStringL(xxhash64.getValue()));
+		xxhash64.update("abc".getBytes(StandardCharsets.US_ASCII));
+		Assertions.assertEquals(0x44bc2cf5ad770999l, xxhash64.getLongValue());
+	}
+
+	@Test
+	void testChecksumSnapshots() throws Exception {
+		testChecksumSnapshot(CRC32Checksum::getInstance, TEST_DATA_CRC32);
+		testChecksumSnapshot(CRC32CChecksum::getInstance, TEST_DATA_CRC32C);
+		testChecksumSnapshot(Adler32Checksum::getInstance, TEST_DATA_ADLER32);
+		testChecksumSnapshot(XXHash64Checksum::getInstance, TEST_DATA_XXHASH64);
+		testChecksumSnapshot(() -> XXHash64Checksum.getInstance(42), TEST_DATA_XXHASH64_SEED42);
+
+		Checksum md5 = MD5Checksum.getInstance();
+
+		Assertions.assertFalse(md5.isSnapshotSupported());
+		Assertions.assertThrows(UnsupportedOperationException.class, md5::snapshot);
+		testChecksumCopy(md5, TEST_DATA_MD5);
+		testChecksumCopy(SHA256Checksum.getInstance(), TEST_DATA_SHA256);
+
+		Checksum crc32 = CRC32Checksum.getInstance();
+		byte[] invalidState = new byte[3];
+
+		Assertions.assertThrows(IllegalArgumentException.class, () -> crc32.restore(invalidState));
+	}
+
+	private void testChecksumCopy(Checksum checksum, String expected) {
+		int split = TEST_DATA.length / 2;
+
+		checksum.reset();
+		checksum.update(TEST_DATA, 0, split);
+
+		Checksum copy = checksum.copy();
+
+		// Copy and original must continue independently
+		checksum.update(TEST_DATA, split, TEST_DATA.length - split);
+		Assertions.assertEquals(expected, HexBytes.toStringL(checksum.getValue()));
+		copy.update(TEST_DATA, split, TEST_DATA.length - split);
+		Assertions.assertEquals(expected, HexBytes.toStringL(copy.getValue()));
+	}
+
+	private void testChecksumSnapshot(ChecksumFactory factory, String expected) throws GeneralSecurityException {
+		for (int split = 0; split <= TEST_DATA.length; split += 7) {
+			Checksum checksum1 = factory.newChecksum();
+
+			Assertions.assertTrue(checksum1.isSnapshotSupported());
+
+			checksum1.update(TEST_DATA, 0, split);
+
+			byte[] state = checksum1.snapshot();
+
+			// Snapshot must not affect the original generator
+			checksum1.update(TEST_DATA, split, TEST_DATA.length - split);
+			Assertions.assertEquals(expected, HexBytes.toStringL(checksum1.getValue()));
+
+			Checksum checksum2 = factory.newChecksum();
+
+			checksum2.update(TEST_DATA);
+			checksum2.restore(state);
+			checksum2.update(TEST_DATA, split, TEST_DATA.length - split);
+			Assertions.assertEquals(expected, HexBytes.toStringL(checksum2.getValue()));
+		}
+	}
+
+	private void testNonCryptoChecksum(Checksum checksum, String expected) throws IOException {
+		testChecksumBulked(checksum, expected);
+		testChecksumChunked(checksum, expected);
+		testChecksumInputStream(checksum, expected);
+		testChecksumOutputStream(checksum, expected);
+
+		// Test direct buffer input (partial stripes included)
+		ByteBuffer directData = ByteBuffer.allocateDirect(TEST_DATA.length);
+
+		directData.put(TEST_DATA).flip();
+		checksum.reset();
+		for (int position = 0; position < TEST_DATA.length; position += 13) {
+			checksum.update(directData.duplicate().position(position)
+					.limit(Math.min(position + 13, TEST_DATA.length)));
+		}
+		Assertions.assertEquals(expected, HexBytes.toStringL(checksum.getValue()));
+		Assertions.assertEquals(expected, HexBytes.toStringL(checksumOf(checksum, directData)));
+	}
+
+	@Test
+	void testAsyncChecksumOutputStream() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		String actual1;
+		String actual2;
+
+		try (ChecksumOutputStream out = new ChecksumOutputStream(bytes, SHA256Checksum.getInstance(),
+				ForkJoinPool.commonPool())) {
+			out.write(TEST_DATA[0]);
+			out.write(TEST_DATA, 1, TEST_DATA.length - 1);
+			actual1 = HexBytes.toStringL(out.getChecksumValue());
+			for (int round = 0; round < 4096; round++) {
+				out.write(TEST_DATA);
+			}
+			actual2 = HexBytes.toStringL(out.getChecksumValue());
+		}
+		Assertions.assertEquals(TEST_DATA_SHA256, actual1);
+
+		ByteBuffer written = ByteBuffer.wrap(bytes.toByteArray());
+
+		Assertions.assertEquals(TEST_DATA.length * 4097, written.remaining());
+		Assertions.assertEquals(
+				HexBytes.toStringL(checksumOf(SHA256Checksum.getInstance(), written.position(TEST_DATA.length))),
+				actual2);
+	}
+
+	@Test
+	void testCompositeChecksum() throws Exception {
+		testCompositeChecksum(CompositeChecksum.of(MD5Checksum.getInstance(), SHA256Checksum.getInstance()));
+	}
+
+	@Test
+	void testParallelCompositeChecksum() throws Exception {
+		testCompositeChecksum(CompositeChecksum.parallel(MD5Checksum.getInstance(), SHA256Checksum.getInstance()));
+	}
+
+	@Test
+	void testRejectedParallelCompositeChecksum() throws NoSuchAlgorithmException {
+		AtomicInteger acceptedTasks = new AtomicInteger(3);
+		Executor rejectingExecutor = command -> {
+			if (acceptedTasks.getAndDecrement() <= 0) {
+				throw new RejectedExecutionException();
+			}
+			ForkJoinPool.commonPool().execute(command);
+		};
+		CompositeChecksum composite = CompositeChecksum.parallel(rejectingExecutor, MD5Checksum.getInstance(),
+				SHA256Checksum.getInstance());
+		byte[] largeData = new byte[16 * 1024 * 1024];
+
+		// Rejected buffers must be returned to the ring (feeding must neither block nor fail)
+		Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+			composite.update(largeData);
+			Assertions.assertThrows(RejectedExecutionException.class, composite::getValues);
+		});
+	}
+
+	private void testCompositeChecksum(CompositeChecksum composite) throws IOException, NoSuchAlgorithmException {
+		String expected = TEST_DATA_MD5 + TEST_DATA_SHA256;
+
+		testChecksumBulked(composite, expected);
+		testChecksumChunked(composite, expected);
+		testChecksumInputStream(composite, expected);
+		testChecksumOutputStream(composite, expected);
+
+		// Test large and buffer based input
+		ByteBuffer largeData = ByteBuffer.allocateDirect(TEST_DATA.length * 4096);
+
+		while (largeData.hasRemaining()) {
+			largeData.put(TEST_DATA);
+		}
+		largeData.flip();
+
+		composite.update(largeData.duplicate());
+
+		List<byte[]> values = composite.getValues();
+
+		Assertions.assertEquals(2, values.size());
+		Assertions.assertEquals(HexBytes.toStringL(checksumOf(MD5Checksum.getInstance(), largeData)),
+				HexBytes.toStringL(values.get(0)));
+		Assertions.assertEquals(HexBytes.toStringL(checksumOf(SHA256Checksum.getInstance(), largeData)),
+				HexBytes.toStringL(values.get(1)));
+
+		// Test reset discarding pending data
+		composite.update(TEST_DATA);
+		composite.reset();
+		testChecksumBulked(composite, expected);
+	}
+
+	private static byte[] checksumOf(Checksum checksum, ByteBuffer data) {
+		checksum.update(data.duplicate());
+		return checksum.getValue();
+	}
+
 	private void testChecksumBulked(Checksum checksum, String expected) {
 		checksum.reset();
 		checksum.update(TEST_DATA);
@@ -105,6 +325,13 @@ class ChecksumTest {
 			actual = HexBytes.toStringL(in.getChecksumValue());
 		}
 		Assertions.assertEquals(expected, actual);
+
+		try (ChecksumInputStream in = new ChecksumInputStream(new ByteArrayInputStream(TEST_DATA), checksum)) {
+			Assertions.assertEquals(TEST_DATA.length - 1, in.skip(TEST_DATA.length - 1l));
+			Assertions.assertEquals(1, in.skip(TEST_DATA.length));
+			actual = HexBytes.toStringL(in.getChecksumValue());
+		}
+		Assertions.assertEquals(expected, actual);
 	}
 
 	private void testChecksumOutputStream(Checksum checksum, String expected) throws IOException {
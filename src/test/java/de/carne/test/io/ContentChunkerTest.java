@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.test.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.io.Checksum;
+import de.carne.io.ContentChunk;
+import de.carne.io.ContentChunker;
+import de.carne.io.SHA256Checksum;
+import de.carne.io.XXHash64Checksum;
+import de.carne.test.annotation.io.TempFile;
+import de.carne.test.extension.io.TempPathExtension;
+import de.carne.text.HexBytes;
+
+/**
+ * Test {@linkplain ContentChunker} class.
+ */
+@ExtendWith(TempPathExtension.class)
+class ContentChunkerTest {
+
+	private static final int TEST_DATA_SIZE = 1024 * 1024;
+
+	@Test
+	void testStreamChunking() throws IOException, GeneralSecurityException {
+		byte[] data = randomData(TEST_DATA_SIZE);
+		ContentChunker chunker = new ContentChunker(SHA256Checksum::getInstance);
+		List<ContentChunk> chunks = streamChunks(chunker, data);
+
+		verifyChunks(data, chunks);
+		Assertions.assertTrue(chunks.size() > TEST_DATA_SIZE / ContentChunker.DEFAULT_MAX_SIZE);
+		Assertions.assertTrue(chunks.size() < TEST_DATA_SIZE / ContentChunker.DEFAULT_MIN_SIZE);
+		Assertions.assertEquals(chunks, streamChunks(chunker, data));
+		Assertions.assertEquals(0, streamChunks(chunker, new byte[0]).size());
+	}
+
+	@Test
+	void testFileChunking(@TempFile File file) throws IOException, GeneralSecurityException {
+		byte[] data = randomData(TEST_DATA_SIZE + 12345);
+		ContentChunker chunker = new ContentChunker(1024, 4096, 16384, XXHash64Checksum::getInstance);
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			Assertions.assertEquals(0, chunker.chunk(channel).size());
+
+			channel.write(ByteBuffer.wrap(data));
+
+			List<ContentChunk> chunks = chunker.chunk(channel);
+
+			Assertions.assertEquals(streamChunks(chunker, data), chunks);
+		}
+	}
+
+	@Test
+	void testDeduplication() throws IOException, GeneralSecurityException {
+		byte[] data = randomData(TEST_DATA_SIZE);
+		byte[] modifiedData = new byte[data.length + 3];
+		int insertPosition = data.length / 2;
+
+		System.arraycopy(data, 0, modifiedData, 0, insertPosition);
+		modifiedData[insertPosition] = 1;
+		modifiedData[insertPosition + 1] = 2;
+		modifiedData[insertPosition + 2] = 3;
+		System.arraycopy(data, insertPosition, modifiedData, insertPosition + 3, data.length - insertPosition);
+
+		ContentChunker chunker = new ContentChunker(SHA256Checksum::getInstance);
+		List<ContentChunk> chunks = streamChunks(chunker, data);
+		List<ContentChunk> modifiedChunks = streamChunks(chunker, modifiedData);
+		Set<String> digests = new HashSet<>();
+
+		chunks.forEach(chunk -> digests.add(HexBytes.toStringL(chunk.digest())));
+
+		long changedChunks = modifiedChunks.stream()
+				.filter(chunk -> !digests.contains(HexBytes.toStringL(chunk.digest()))).count();
+
+		Assertions.assertTrue(changedChunks <= 2);
+	}
+
+	private static byte[] randomData(int length) {
+		byte[] data = new byte[length];
+
+		new Random(length).nextBytes(data);
+		return data;
+	}
+
+	private static List<ContentChunk> streamChunks(ContentChunker chunker, byte[] data)
+			throws IOException, GeneralSecurityException {
+		List<ContentChunk> chunks = new ArrayList<>();
+
+		Assertions.assertEquals(data.length, chunker.chunk(new ByteArrayInputStream(data), chunks::add));
+		return chunks;
+	}
+
+	private static void verifyChunks(byte[] data, List<ContentChunk> chunks) throws GeneralSecurityException {
+		Checksum checksum = SHA256Checksum.getInstance();
+		long offset = 0;
+
+		for (ContentChunk chunk : chunks) {
+			Assertions.assertEquals(offset, chunk.offset());
+			Assertions.assertTrue(chunk.length() <= ContentChunker.DEFAULT_MAX_SIZE);
+			Assertions.assertTrue(chunk.length() >= ContentChunker.DEFAULT_MIN_SIZE
+					|| chunk.offset() + chunk.length() == data.length);
+
+			checksum.update(data, (int) chunk.offset(), chunk.length());
+			Assertions.assertTrue(Arrays.equals(checksum.getValue(), chunk.digest()));
+			offset += chunk.length();
+		}
+		Assertions.assertEquals(data.length, offset);
+	}
+
+}
@@ -20,19 +20,36 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import de.carne.io.Defaults;
 import de.carne.io.IOUtil;
+import de.carne.util.ByteString;
 import de.carne.test.annotation.io.TempFile;
 import de.carne.test.extension.io.TempPathExtension;
 
@@ -99,6 +116,189 @@ class IOUtilTest {
 		Assertions.assertArrayEquals(bufferBytes, fileDataOutputStream.toByteArray());
 	}
 
+	@Test
+	void testCopyTransfer(@TempFile File file1, @TempFile File file2) throws IOException, InterruptedException {
+		byte[] bytes = IOUtil.readAllBytes(Objects.requireNonNull(getClass().getResource("data.bin")));
+
+		IOUtil.copyStream(file1, new ByteArrayInputStream(bytes));
+
+		// Test file stream transfer (starting at the current stream position)
+		try (FileInputStream in = new FileInputStream(file1); FileOutputStream out = new FileOutputStream(file2)) {
+			Assertions.assertEquals(10, in.skip(10));
+			Assertions.assertEquals(bytes.length - 10l, IOUtil.copyStream(out, in));
+			Assertions.assertEquals(-1, in.read());
+		}
+		Assertions.assertArrayEquals(Arrays.copyOfRange(bytes, 10, bytes.length), IOUtil.readAllBytes(file2));
+
+		// Test one-sided file stream transfers
+		ByteArrayOutputStream streamBytes = new ByteArrayOutputStream();
+
+		try (FileInputStream in = new FileInputStream(file1)) {
+			Assertions.assertEquals(bytes.length, IOUtil.copyStream(streamBytes, in));
+		}
+		Assertions.assertArrayEquals(bytes, streamBytes.toByteArray());
+		try (FileOutputStream out = new FileOutputStream(file2)) {
+			out.write(bytes, 0, 10);
+			Assertions.assertEquals(bytes.length, IOUtil.copyStream(out, new ByteArrayInputStream(bytes)));
+		}
+		Assertions.assertArrayEquals(bytes, Arrays.copyOfRange(IOUtil.readAllBytes(file2), 10, 10 + bytes.length));
+
+		// Test transfer to a target temporarily not accepting any bytes
+		ByteArrayOutputStream stallingBytes = new ByteArrayOutputStream();
+		WritableByteChannel stallingChannel = new WritableByteChannel() {
+
+			private final WritableByteChannel channel = Channels.newChannel(stallingBytes);
+			private boolean stalled = false;
+
+			@Override
+			public boolean isOpen() {
+				return this.channel.isOpen();
+			}
+
+			@Override
+			public void close() throws IOException {
+				this.channel.close();
+			}
+
+			@Override
+			public int write(ByteBuffer src) throws IOException {
+				int written = 0;
+
+				if (this.stalled) {
+					written = this.channel.write(src);
+				} else {
+					this.stalled = true;
+				}
+				return written;
+			}
+
+		};
+
+		try (FileChannel file1Channel = FileChannel.open(file1.toPath(), StandardOpenOption.READ)) {
+			Assertions.assertEquals(bytes.length, IOUtil.copyChannel(stallingChannel, file1Channel));
+			Assertions.assertEquals(bytes.length, file1Channel.position());
+		}
+		Assertions.assertArrayEquals(bytes, stallingBytes.toByteArray());
+
+		// Test file channel to pipe transfer
+		Pipe pipe1 = Pipe.open();
+		ByteArrayOutputStream pipe1Bytes = new ByteArrayOutputStream();
+		Thread pipe1Reader = new Thread(() -> {
+			try (ReadableByteChannel source = pipe1.source()) {
+				IOUtil.copyChannel(Channels.newChannel(pipe1Bytes), source);
+			} catch (IOException e) {
+				Assertions.fail(e.getMessage());
+			}
+		});
+
+		pipe1Reader.start();
+		try (FileChannel file1Channel = FileChannel.open(file1.toPath(), StandardOpenOption.READ);
+				WritableByteChannel sink = pipe1.sink()) {
+			Assertions.assertEquals(bytes.length, IOUtil.copyChannel(sink, file1Channel));
+			Assertions.assertEquals(bytes.length, file1Channel.position());
+		}
+		pipe1Reader.join();
+
+		Assertions.assertArrayEquals(bytes, pipe1Bytes.toByteArray());
+
+		// Test pipe to file channel transfer
+		Pipe pipe2 = Pipe.open();
+		Thread pipe2Writer = new Thread(() -> {
+			try (WritableByteChannel sink = pipe2.sink()) {
+				IOUtil.copyChannel(sink, Channels.newChannel(new ByteArrayInputStream(bytes)));
+			} catch (IOException e) {
+				Assertions.fail(e.getMessage());
+			}
+		});
+
+		pipe2Writer.start();
+		try (FileChannel file2Channel = FileChannel.open(file2.toPath(), StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING); ReadableByteChannel source = pipe2.source()) {
+			Assertions.assertEquals(bytes.length, IOUtil.copyChannel(file2Channel, source));
+			Assertions.assertEquals(bytes.length, file2Channel.position());
+		}
+		pipe2Writer.join();
+
+		Assertions.assertArrayEquals(bytes, IOUtil.readAllBytes(file2));
+	}
+
+	@Test
+	void testCopyStreamPipelined() throws IOException, InterruptedException {
+		byte[] bytes = IOUtil.readAllBytes(Objects.requireNonNull(getClass().getResource("data.bin")));
+		ByteArrayOutputStream largeBytes = new ByteArrayOutputStream();
+
+		for (int round = 0; round < 32; round++) {
+			largeBytes.write(bytes);
+		}
+
+		ByteArrayOutputStream copyBytes = new ByteArrayOutputStream();
+
+		Assertions.assertEquals(largeBytes.size(), IOUtil
+				.copyStreamPipelined(copyBytes, new ByteArrayInputStream(largeBytes.toByteArray())).join().longValue());
+		Assertions.assertArrayEquals(largeBytes.toByteArray(), copyBytes.toByteArray());
+
+		// Test read failure
+		InputStream failingIn = new SequenceInputStream(new ByteArrayInputStream(bytes), new InputStream() {
+
+			@Override
+			public int read() throws IOException {
+				throw new IOException("read failure");
+			}
+
+		});
+		ExecutionException readFailure = Assertions.assertThrows(ExecutionException.class, () -> {
+			IOUtil.copyStreamPipelined(new ByteArrayOutputStream(), failingIn).get();
+		});
+
+		Assertions.assertEquals("read failure", Objects.requireNonNull(readFailure.getCause()).getMessage());
+
+		// Test write failure
+		OutputStream failingOut = new OutputStream() {
+
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("write failure");
+			}
+
+		};
+		ExecutionException writeFailure = Assertions.assertThrows(ExecutionException.class, () -> {
+			IOUtil.copyStreamPipelined(failingOut, new ByteArrayInputStream(bytes)).get();
+		});
+
+		Assertions.assertEquals("write failure", Objects.requireNonNull(writeFailure.getCause()).getMessage());
+
+		// Test unchecked read failure
+		InputStream uncheckedFailingIn = new InputStream() {
+
+			@Override
+			public int read() {
+				throw new IllegalStateException("unchecked read failure");
+			}
+
+		};
+		ExecutionException uncheckedReadFailure = Assertions.assertThrows(ExecutionException.class, () -> {
+			IOUtil.copyStreamPipelined(new ByteArrayOutputStream(), uncheckedFailingIn).get(10, TimeUnit.SECONDS);
+		});
+
+		Assertions.assertEquals("unchecked read failure",
+				Objects.requireNonNull(uncheckedReadFailure.getCause()).getMessage());
+
+		// Test rejected writer stage
+		AtomicInteger submittedStages = new AtomicInteger();
+		Executor rejectingExecutor = stage -> {
+			if (submittedStages.incrementAndGet() > 1) {
+				throw new RejectedExecutionException("writer rejected");
+			}
+			new Thread(stage).start();
+		};
+		ExecutionException rejectedWriter = Assertions.assertThrows(ExecutionException.class, () -> {
+			IOUtil.copyStreamPipelined(new ByteArrayOutputStream(), new ByteArrayInputStream(largeBytes.toByteArray()),
+					rejectingExecutor).get(10, TimeUnit.SECONDS);
+		});
+
+		Assertions.assertEquals("writer rejected", Objects.requireNonNull(rejectedWriter.getCause()).getMessage());
+	}
+
 	@Test
 	void testReadAllBytes(@TempFile File file) throws IOException {
 		// Prepare file
@@ -124,6 +324,50 @@ class IOUtilTest {
 		});
 	}
 
+	@Test
+	void testReadAllBytesChunked(@TempFile File file) throws IOException {
+		byte[] bytes = new byte[(Defaults.DEFAULT_BUFFER_SIZE * 5) + 17];
+
+		for (int byteIndex = 0; byteIndex < bytes.length; byteIndex++) {
+			bytes[byteIndex] = (byte) byteIndex;
+		}
+		IOUtil.copyStream(file, new ByteArrayInputStream(bytes));
+
+		Assertions.assertArrayEquals(bytes, IOUtil.readAllBytes(new ByteArrayInputStream(bytes)));
+		Assertions.assertArrayEquals(bytes, IOUtil.readAllBytes(new ByteArrayInputStream(bytes), bytes.length));
+		Assertions.assertArrayEquals(bytes, IOUtil.readAllBytes(file));
+		Assertions.assertArrayEquals(bytes, IOUtil.readAllBytes(file.toURI().toURL()));
+		Assertions.assertArrayEquals(new byte[0], IOUtil.readAllBytes(new ByteArrayInputStream(new byte[0])));
+
+		InterruptedIOException limitException = Assertions.assertThrows(InterruptedIOException.class, () -> {
+			IOUtil.readAllBytes(new ByteArrayInputStream(bytes), bytes.length - 1);
+		});
+
+		Assertions.assertEquals(bytes.length, limitException.bytesTransferred);
+	}
+
+	@Test
+	void testMapAllBytes(@TempFile File file) throws IOException {
+		byte[] bytes = IOUtil.readAllBytes(Objects.requireNonNull(getClass().getResource("data.bin")));
+
+		IOUtil.copyStream(file, new ByteArrayInputStream(bytes));
+
+		ByteBuffer mapped = IOUtil.mapAllBytes(file);
+
+		Assertions.assertTrue(mapped.isReadOnly());
+		Assertions.assertEquals(ByteString.wrap(bytes), ByteString.wrap(mapped));
+		Assertions.assertEquals(ByteString.wrap(bytes), IOUtil.mapByteString(file));
+
+		List<ByteBuffer> segments = IOUtil.mapAllBytes(file, 10000);
+		ByteArrayOutputStream segmentsBytes = new ByteArrayOutputStream();
+
+		Assertions.assertEquals((bytes.length + 9999) / 10000, segments.size());
+		for (ByteBuffer segment : segments) {
+			IOUtil.copyBuffer(segmentsBytes, segment);
+		}
+		Assertions.assertArrayEquals(bytes, segmentsBytes.toByteArray());
+	}
+
 	@Test
 	void testReadBlocking(@TempFile File file) throws IOException {
 		// Prepare file
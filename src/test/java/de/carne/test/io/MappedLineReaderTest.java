@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.test.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.io.LineSegment;
+import de.carne.io.MappedLineReader;
+import de.carne.test.annotation.io.TempFile;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test {@linkplain MappedLineReader} class.
+ */
+@ExtendWith(TempPathExtension.class)
+class MappedLineReaderTest {
+
+	private static final int TEST_LINE_COUNT = 100000;
+
+	@Test
+	void testSegments(@TempFile File file) throws IOException {
+		List<String> expectedLines = writeTestLines(file);
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedLineReader reader = new MappedLineReader(channel, StandardCharsets.UTF_8);
+
+			for (int segmentCount : new int[] { 1, 2, 7, 64, TEST_LINE_COUNT * 2 }) {
+				List<LineSegment> segments = reader.segments(segmentCount);
+				List<String> lines = new ArrayList<>();
+				long position = 0;
+
+				for (LineSegment segment : segments) {
+					Assertions.assertEquals(position, segment.position());
+					segment.forEachLine(line -> lines.add(line.toString()));
+					position += segment.length();
+				}
+				Assertions.assertEquals(channel.size(), position);
+				Assertions.assertTrue(segments.size() <= segmentCount);
+				Assertions.assertEquals(expectedLines, lines);
+			}
+		}
+	}
+
+	@Test
+	void testLines(@TempFile File file) throws IOException {
+		List<String> expectedLines = writeTestLines(file);
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedLineReader reader = new MappedLineReader(channel, StandardCharsets.UTF_8);
+
+			Assertions.assertEquals(expectedLines,
+					reader.lines().map(CharSequence::toString).collect(Collectors.toList()));
+
+			Pattern pattern = Pattern.compile("line 4\\d*7 ");
+
+			Assertions.assertEquals(expectedLines.stream().filter(line -> pattern.matcher(line).find()).count(),
+					reader.lines().filter(line -> pattern.matcher(line).find()).count());
+
+			LongAdder lineCount = new LongAdder();
+
+			reader.forEachSegment(segment -> segment.forEachLine(line -> lineCount.increment()), new ForkJoinPool(3));
+			Assertions.assertEquals(expectedLines.size(), lineCount.sum());
+			Assertions.assertThrows(IOException.class, () -> reader.forEachSegment(segment -> {
+				throw new IOException();
+			}));
+		}
+	}
+
+	@Test
+	void testLineCharSequence(@TempFile File file) throws IOException {
+		Files.write(file.toPath(), "ascii\r\näöü\n\nlast".getBytes(StandardCharsets.UTF_8));
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			List<CharSequence> lines = new MappedLineReader(channel, StandardCharsets.UTF_8).segments(1).get(0).lines()
+					.collect(Collectors.toList());
+
+			Assertions.assertEquals(4, lines.size());
+			Assertions.assertEquals(5, lines.get(0).length());
+			Assertions.assertEquals('c', lines.get(0).charAt(2));
+			Assertions.assertEquals("sci", lines.get(0).subSequence(1, 4).toString());
+			Assertions.assertThrows(IndexOutOfBoundsException.class, () -> lines.get(0).charAt(5));
+			Assertions.assertEquals(3, lines.get(1).length());
+			Assertions.assertEquals('ö', lines.get(1).charAt(1));
+			Assertions.assertEquals("ü", lines.get(1).subSequence(2, 3).toString());
+			Assertions.assertEquals("", lines.get(2).toString());
+			Assertions.assertEquals("last", lines.get(3).toString());
+		}
+		Assertions.assertThrows(IllegalArgumentException.class,
+				() -> new MappedLineReader(FileChannel.open(file.toPath()), StandardCharsets.UTF_16));
+	}
+
+	private static List<String> writeTestLines(File file) throws IOException {
+		List<String> lines = new ArrayList<>(TEST_LINE_COUNT);
+
+		for (int lineIndex = 0; lineIndex < TEST_LINE_COUNT; lineIndex++) {
+			lines.add((lineIndex % 10 == 0 ? "lïne " : "line ") + lineIndex + " " + "x".repeat(lineIndex % 37));
+		}
+		Files.write(file.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+		return lines;
+	}
+
+}
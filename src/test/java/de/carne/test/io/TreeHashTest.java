@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.test.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.io.Checksum;
+import de.carne.io.SHA256Checksum;
+import de.carne.io.TreeHash;
+import de.carne.test.annotation.io.TempFile;
+import de.carne.test.extension.io.TempPathExtension;
+import de.carne.text.HexBytes;
+
+/**
+ * Test {@linkplain TreeHash} class.
+ */
+@ExtendWith(TempPathExtension.class)
+class TreeHashTest {
+
+	private static final int TEST_LEAF_SIZE = 4096;
+
+	@Test
+	void testTreeHash(@TempFile File file) throws IOException, GeneralSecurityException {
+		byte[] data = new byte[TEST_LEAF_SIZE * 10 + 100];
+
+		for (int dataIndex = 0; dataIndex < data.length; dataIndex++) {
+			data[dataIndex] = (byte) (dataIndex * 31);
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(data));
+
+			TreeHash treeHash = TreeHash.compute(channel, TEST_LEAF_SIZE, SHA256Checksum::getInstance,
+					ForkJoinPool.commonPool());
+
+			Assertions.assertEquals(TEST_LEAF_SIZE, treeHash.leafSize());
+			Assertions.assertEquals(data.length, treeHash.size());
+			Assertions.assertEquals(11, treeHash.leafCount());
+			Assertions.assertEquals(HexBytes.toStringL(referenceRootHash(data)),
+					HexBytes.toStringL(treeHash.rootHash()));
+
+			// Modify a single leaf
+			channel.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), TEST_LEAF_SIZE * 3l + 10);
+			data[TEST_LEAF_SIZE * 3 + 10] = 1;
+			data[TEST_LEAF_SIZE * 3 + 11] = 2;
+			data[TEST_LEAF_SIZE * 3 + 12] = 3;
+
+			TreeHash rehashed = treeHash.rehash(channel, TEST_LEAF_SIZE * 3l + 10, 3);
+			BitSet diff = treeHash.diffLeaves(rehashed);
+
+			Assertions.assertEquals(1, diff.cardinality());
+			Assertions.assertTrue(diff.get(3));
+			Assertions.assertEquals(HexBytes.toStringL(referenceRootHash(data)),
+					HexBytes.toStringL(rehashed.rootHash()));
+			Assertions.assertEquals(HexBytes.toStringL(TreeHash.compute(channel, TEST_LEAF_SIZE,
+					SHA256Checksum::getInstance, ForkJoinPool.commonPool()).rootHash()),
+					HexBytes.toStringL(rehashed.rootHash()));
+
+			// Grow the channel
+			byte[] grownData = Arrays.copyOf(data, data.length + TEST_LEAF_SIZE);
+
+			channel.write(ByteBuffer.wrap(grownData, data.length, TEST_LEAF_SIZE), data.length);
+
+			TreeHash grown = rehashed.rehash(channel, 0, 0);
+
+			Assertions.assertEquals(12, grown.leafCount());
+			Assertions.assertEquals(HexBytes.toStringL(referenceRootHash(grownData)),
+					HexBytes.toStringL(grown.rootHash()));
+			Assertions.assertEquals(Arrays.asList(10, 11), rehashed.diffLeaves(grown).stream().boxed().collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	void testEmptyTreeHash(@TempFile File file) throws IOException, GeneralSecurityException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			TreeHash treeHash = TreeHash.compute(channel, SHA256Checksum::getInstance);
+
+			Assertions.assertEquals(1, treeHash.leafCount());
+			Assertions.assertEquals(HexBytes.toStringL(referenceRootHash(new byte[0])),
+					HexBytes.toStringL(treeHash.rootHash()));
+			Assertions.assertArrayEquals(treeHash.rootHash(), treeHash.leafHash(0));
+		}
+	}
+
+	private static byte[] referenceRootHash(byte[] data) throws GeneralSecurityException {
+		Checksum checksum = SHA256Checksum.getInstance();
+		int leafCount = Math.max((data.length + TEST_LEAF_SIZE - 1) / TEST_LEAF_SIZE, 1);
+		byte[][] level = new byte[leafCount][];
+
+		for (int leafIndex = 0; leafIndex < leafCount; leafIndex++) {
+			int leafStart = leafIndex * TEST_LEAF_SIZE;
+
+			checksum.update((byte) 0x00);
+			checksum.update(data, leafStart, Math.min(data.length - leafStart, TEST_LEAF_SIZE));
+			level[leafIndex] = checksum.getValue();
+		}
+		while (level.length > 1) {
+			byte[][] nextLevel = new byte[(level.length + 1) / 2][];
+
+			for (int nodeIndex = 0; nodeIndex < nextLevel.length; nodeIndex++) {
+				if (nodeIndex * 2 + 1 < level.length) {
+					checksum.update((byte) 0x01);
+					checksum.update(level[nodeIndex * 2]);
+					checksum.update(level[nodeIndex * 2 + 1]);
+					nextLevel[nodeIndex] = checksum.getValue();
+				} else {
+					nextLevel[nodeIndex] = level[nodeIndex * 2];
+				}
+			}
+			level = nextLevel;
+		}
+		return level[0];
+	}
+
+}
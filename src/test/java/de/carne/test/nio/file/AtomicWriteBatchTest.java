@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.test.nio.file;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.carne.nio.file.AtomicWriteBatch;
+import de.carne.util.function.FunctionException;
+
+/**
+ * Test {@linkplain AtomicWriteBatch} class.
+ */
+class AtomicWriteBatchTest {
+
+	@Test
+	void testWriteBatch(@TempDir Path tempDir) throws IOException {
+		Path dir1 = Files.createDirectory(tempDir.resolve("dir1"));
+		Path dir2 = Files.createDirectory(tempDir.resolve("dir2"));
+
+		try (AtomicWriteBatch batch = new AtomicWriteBatch()) {
+			for (int round = 0; round < 3; round++) {
+				for (int fileIndex = 0; fileIndex < 10; fileIndex++) {
+					byte[] data = ("round" + round).getBytes(StandardCharsets.UTF_8);
+
+					batch.write(dir1.resolve("state" + fileIndex), data);
+					batch.write(dir2.resolve("state" + fileIndex), data);
+				}
+				Assertions.assertEquals(2, batch.pendingDirectoryCount());
+				batch.commit();
+				Assertions.assertEquals(0, batch.pendingDirectoryCount());
+			}
+			batch.write(dir1.resolve("last"), new byte[0]);
+			Assertions.assertEquals(1, batch.pendingDirectoryCount());
+		}
+		assertStateFiles(dir1, 11, "round2");
+		assertStateFiles(dir2, 10, "round2");
+	}
+
+	@Test
+	void testConcurrentWriteBatch(@TempDir Path tempDir) throws IOException {
+		try (AtomicWriteBatch batch = new AtomicWriteBatch()) {
+			List<CompletableFuture<Void>> writers = new ArrayList<>();
+
+			for (int writerIndex = 0; writerIndex < 10; writerIndex++) {
+				Path file = tempDir.resolve("state" + writerIndex);
+
+				writers.add(CompletableFuture.runAsync(() -> {
+					try {
+						for (int round = 0; round < 10; round++) {
+							batch.write(file, ("round" + round).getBytes(StandardCharsets.UTF_8));
+							batch.commit();
+						}
+					} catch (IOException e) {
+						throw new FunctionException(e);
+					}
+				}));
+			}
+			writers.forEach(CompletableFuture::join);
+		}
+		assertStateFiles(tempDir, 10, "round9");
+	}
+
+	private static void assertStateFiles(Path dir, int count, String content) throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			Assertions.assertEquals(count, files.count());
+		}
+		try (Stream<Path> files = Files.list(dir)) {
+			Assertions.assertTrue(files.filter(file -> file.getFileName().toString().startsWith("state"))
+					.allMatch(file -> readString(file).equals(content)));
+		}
+	}
+
+	private static String readString(Path file) {
+		try {
+			return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new FunctionException(e);
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.test.nio.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.carne.io.Checksum;
+import de.carne.io.SHA256Checksum;
+import de.carne.io.XXHash64Checksum;
+import de.carne.nio.file.DuplicateFinder;
+import de.carne.nio.file.DuplicateGroup;
+
+/**
+ * Test {@linkplain DuplicateFinder} class.
+ */
+class DuplicateFinderTest {
+
+	private static final int TEST_PARTIAL_SIZE = 1024;
+
+	@Test
+	void testFindDuplicates(@TempDir Path tempDir) throws IOException, GeneralSecurityException {
+		Random random = new Random(42);
+		byte[] smallData = randomData(random, 100);
+		byte[] largeData = randomData(random, 2 * 1024 * 1024 + 17);
+		byte[] middleData = randomData(random, 4 * TEST_PARTIAL_SIZE);
+		byte[] middleVariantData = middleData.clone();
+
+		middleVariantData[middleData.length / 2] ^= 0x01;
+
+		Path dir1 = Files.createDirectories(tempDir.resolve("dir1"));
+		Path dir2 = Files.createDirectories(tempDir.resolve("dir2").resolve("sub"));
+
+		Files.write(dir1.resolve("small1"), smallData);
+		Files.write(dir2.resolve("small2"), smallData);
+		Files.write(tempDir.resolve("small3"), smallData);
+		Files.write(dir1.resolve("large1"), largeData);
+		Files.write(dir2.resolve("large2"), largeData);
+		Files.write(dir1.resolve("middle1"), middleData);
+		Files.write(dir2.resolve("middle2"), middleVariantData);
+		Files.write(dir1.resolve("unique"), randomData(random, smallData.length));
+		Files.write(dir1.resolve("empty1"), new byte[0]);
+		Files.write(dir2.resolve("empty2"), new byte[0]);
+
+		DuplicateFinder finder = new DuplicateFinder(SHA256Checksum::getInstance).partialSize(TEST_PARTIAL_SIZE);
+		List<DuplicateGroup> duplicates = finder.find(tempDir);
+
+		Assertions.assertEquals(2, duplicates.size());
+		assertDuplicateGroup(duplicates.get(0), largeData, dir1.resolve("large1"), dir2.resolve("large2"));
+		assertDuplicateGroup(duplicates.get(1), smallData, dir1.resolve("small1"), dir2.resolve("small2"),
+				tempDir.resolve("small3"));
+		Assertions.assertEquals(largeData.length, duplicates.get(0).wastedBytes());
+		Assertions.assertEquals(2l * smallData.length, duplicates.get(1).wastedBytes());
+
+		List<DuplicateGroup> overlappingDuplicates = finder.find(ForkJoinPool.commonPool(), dir1, tempDir, dir2);
+
+		Assertions.assertEquals(duplicates.toString(), overlappingDuplicates.toString());
+
+		List<DuplicateGroup> allDuplicates = new DuplicateFinder(XXHash64Checksum::getInstance).minSize(0)
+				.find(tempDir);
+
+		Assertions.assertEquals(3, allDuplicates.size());
+		Assertions.assertEquals(0, allDuplicates.get(2).size());
+		Assertions.assertEquals(Arrays.asList(dir1.resolve("empty1"), dir2.resolve("empty2")),
+				allDuplicates.get(2).paths());
+	}
+
+	@Test
+	void testFindNoDuplicates(@TempDir Path tempDir) throws IOException, GeneralSecurityException {
+		Random random = new Random(42);
+
+		for (int fileIndex = 0; fileIndex < 100; fileIndex++) {
+			Files.write(tempDir.resolve("file" + fileIndex), randomData(random, 4096));
+		}
+		Assertions.assertTrue(new DuplicateFinder(SHA256Checksum::getInstance).find(tempDir).isEmpty());
+	}
+
+	@Test
+	void testFindFailure(@TempDir Path tempDir) {
+		DuplicateFinder finder = new DuplicateFinder(SHA256Checksum::getInstance);
+		Path missing = tempDir.resolve("missing");
+
+		Assertions.assertThrows(IOException.class, () -> finder.find(missing));
+	}
+
+	private static void assertDuplicateGroup(DuplicateGroup duplicate, byte[] data, Path... paths)
+			throws GeneralSecurityException {
+		Checksum checksum = SHA256Checksum.getInstance();
+
+		checksum.update(data);
+		Assertions.assertEquals(data.length, duplicate.size());
+		Assertions.assertArrayEquals(checksum.getValue(), duplicate.digest());
+		Assertions.assertEquals(Arrays.asList(paths), duplicate.paths());
+	}
+
+	private static byte[] randomData(Random random, int length) {
+		byte[] data = new byte[length];
+
+		random.nextBytes(data);
+		return data;
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.test.nio.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.carne.nio.file.FileScanner;
+import de.carne.nio.file.FileUtil;
+import de.carne.nio.file.ScannedFile;
+
+/**
+ * Test {@linkplain FileScanner} class.
+ */
+class FileScannerTest {
+
+	private static Path testTree = FileUtil.tmpDir();
+
+	@BeforeAll
+	static void setUpTestTree(@TempDir Path tempDir) throws IOException {
+		testTree = tempDir;
+		for (int dirIndex = 0; dirIndex < 20; dirIndex++) {
+			Path dir = Files.createDirectories(testTree.resolve("dir" + dirIndex).resolve("sub"));
+
+			for (int fileIndex = 0; fileIndex < 250; fileIndex++) {
+				FileUtil.touch(dir.resolve("file" + fileIndex + (fileIndex % 2 == 0 ? ".tmp" : ".dat")));
+			}
+		}
+	}
+
+	@Test
+	void testScan() throws IOException {
+		Set<Path> expected;
+
+		try (Stream<Path> files = Files.walk(testTree)) {
+			expected = files.collect(Collectors.toSet());
+		}
+
+		Set<Path> actual;
+
+		try (Stream<ScannedFile> files = FileUtil.scan(testTree)) {
+			actual = files.map(ScannedFile::path).collect(Collectors.toSet());
+		}
+		Assertions.assertEquals(expected, actual);
+		try (Stream<ScannedFile> files = new FileScanner(testTree).parallelism(1).stream()) {
+			Assertions.assertEquals(expected.size(), files.count());
+		}
+	}
+
+	@Test
+	void testScanOptions() {
+		try (Stream<ScannedFile> files = new FileScanner(testTree).maxDepth(1).stream()) {
+			Assertions.assertEquals(21, files.count());
+		}
+		try (Stream<ScannedFile> files = new FileScanner(testTree).filter("**/*.tmp").stream()) {
+			Assertions.assertEquals(20 * 125, files.filter(file -> file.attributes().isRegularFile()).count());
+		}
+		try (Stream<ScannedFile> files = new FileScanner(testTree).stream()) {
+			Assertions.assertEquals(5, files.limit(5).count());
+		}
+	}
+
+	@Test
+	void testScanLinks() throws IOException {
+		Path link = testTree.resolve("dir0").resolve("sub").resolve("link");
+
+		try {
+			Files.createSymbolicLink(link, testTree);
+		} catch (UnsupportedOperationException | IOException e) {
+			return;
+		}
+		try {
+			try (Stream<ScannedFile> files = new FileScanner(testTree).followLinks(true).stream()) {
+				Assertions.assertTrue(files.count() >= 20 * 252 + 1);
+			}
+			try (Stream<ScannedFile> files = new FileScanner(testTree).stream()) {
+				Assertions.assertEquals(1, files.filter(file -> file.attributes().isSymbolicLink()).count());
+			}
+		} finally {
+			Files.delete(link);
+		}
+	}
+
+	@Test
+	void testScanFailure() {
+		Path missing = testTree.resolve("missing");
+
+		try (Stream<ScannedFile> files = FileUtil.scan(missing)) {
+			Assertions.assertThrows(UncheckedIOException.class, files::count);
+		}
+	}
+
+}
@@ -17,14 +17,27 @@
 package de.carne.test.nio.file;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import de.carne.nio.file.CopyTreeStats;
+import de.carne.nio.file.DeletePolicy;
 import de.carne.nio.file.FileUtil;
 import de.carne.util.Threads;
 
@@ -102,6 +115,134 @@ class FileUtilTest {
 		Assertions.assertFalse(FileUtil.delete(tempFile));
 	}
 
+	@Test
+	void testParallelDelete() throws IOException {
+		for (DeletePolicy policy : DeletePolicy.values()) {
+			Path tempDir = createTestTree();
+			Path linkTarget = Files.createTempDirectory(getClass().getName());
+
+			try {
+				Files.createSymbolicLink(tempDir.resolve("link"), linkTarget);
+			} catch (UnsupportedOperationException | IOException e) {
+				// Ignore missing link support
+			}
+
+			Assertions.assertTrue(FileUtil.delete(tempDir, ForkJoinPool.commonPool(), policy));
+			Assertions.assertFalse(Files.exists(tempDir));
+			Assertions.assertTrue(Files.isDirectory(linkTarget));
+			Assertions.assertFalse(FileUtil.delete(tempDir, ForkJoinPool.commonPool(), policy));
+			Assertions.assertTrue(FileUtil.delete(linkTarget, ForkJoinPool.commonPool(), policy));
+		}
+	}
+
+	@Test
+	void testDeleteInBackground() throws IOException {
+		Path tempDir = createTestTree();
+		Path tempDirParent = Objects.requireNonNull(tempDir.getParent());
+		String tempDirName = Objects.requireNonNull(tempDir.getFileName()).toString();
+		CompletableFuture<Boolean> deleted = FileUtil.deleteInBackground(tempDir);
+
+		Assertions.assertFalse(Files.exists(tempDir));
+		Assertions.assertTrue(deleted.join().booleanValue());
+		try (Stream<Path> files = Files.list(tempDirParent)) {
+			Assertions.assertFalse(files.anyMatch(file -> file.getFileName().toString().startsWith("." + tempDirName)));
+		}
+		Assertions.assertFalse(FileUtil.deleteInBackground(tempDir).join().booleanValue());
+	}
+
+	private Path createTestTree() throws IOException {
+		Path tempDir = Files.createTempDirectory(getClass().getName());
+
+		for (int dirIndex = 0; dirIndex < 10; dirIndex++) {
+			Path dir = Files.createDirectories(tempDir.resolve("dir" + dirIndex).resolve("sub" + dirIndex));
+
+			for (int fileIndex = 0; fileIndex < 20; fileIndex++) {
+				FileUtil.touch(dir.resolve("test" + fileIndex + ".tmp"));
+			}
+		}
+		return tempDir;
+	}
+
+	@Test
+	void testCopyTree() throws IOException {
+		Path sourceDir = Files.createTempDirectory(getClass().getName());
+		Path targetDir = Files.createTempDirectory(getClass().getName());
+		byte[] largeData = new byte[3 * 1024 * 1024];
+
+		Arrays.fill(largeData, (byte) 0x5a);
+		try {
+			FileTime mtime = FileTime.from(Instant.now().minusSeconds(3600).truncatedTo(ChronoUnit.SECONDS));
+
+			for (int dirIndex = 0; dirIndex < 5; dirIndex++) {
+				Path dir = Files.createDirectories(sourceDir.resolve("dir" + dirIndex).resolve("sub"));
+
+				for (int fileIndex = 0; fileIndex < 100; fileIndex++) {
+					Path file = dir.resolve("file" + fileIndex + ".txt");
+
+					Files.write(file, ("file" + dirIndex + "/" + fileIndex).getBytes(StandardCharsets.UTF_8));
+					Files.setLastModifiedTime(file, mtime);
+				}
+			}
+			Files.write(sourceDir.resolve("large.bin"), largeData);
+			Files.setLastModifiedTime(sourceDir.resolve("large.bin"), mtime);
+
+			Path target = targetDir.resolve("copy");
+			CopyTreeStats stats = FileUtil.copyTree(sourceDir, target, StandardCopyOption.COPY_ATTRIBUTES);
+
+			Assertions.assertEquals(501, stats.fileCount());
+			Assertions.assertEquals(11, stats.directoryCount());
+			Assertions.assertTrue(stats.byteCount() > largeData.length);
+			Assertions.assertTrue(stats.throughput() > 0.0);
+			Assertions.assertArrayEquals(largeData, Files.readAllBytes(target.resolve("large.bin")));
+			Assertions.assertEquals(mtime, Files.getLastModifiedTime(target.resolve("large.bin")));
+			for (int dirIndex = 0; dirIndex < 5; dirIndex++) {
+				for (int fileIndex = 0; fileIndex < 100; fileIndex++) {
+					Path file = target.resolve("dir" + dirIndex).resolve("sub").resolve("file" + fileIndex + ".txt");
+
+					Assertions.assertEquals("file" + dirIndex + "/" + fileIndex,
+							new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+					Assertions.assertEquals(mtime, Files.getLastModifiedTime(file));
+				}
+			}
+
+			// Existing files are only replaced on request
+			Assertions.assertThrows(FileAlreadyExistsException.class, () -> FileUtil.copyTree(sourceDir, target));
+			Assertions.assertEquals(501, FileUtil.copyTree(sourceDir, target, StandardCopyOption.REPLACE_EXISTING)
+					.fileCount());
+			Assertions.assertThrows(IOException.class, () -> FileUtil.copyTree(sourceDir, sourceDir.resolve("copy")));
+			Assertions.assertThrows(IllegalArgumentException.class,
+					() -> FileUtil.copyTree(sourceDir, target, StandardCopyOption.ATOMIC_MOVE));
+		} finally {
+			FileUtil.delete(sourceDir);
+			FileUtil.delete(targetDir);
+		}
+	}
+
+	@Test
+	void testWriteAtomic() throws IOException {
+		Path tempDir = Files.createTempDirectory(getClass().getName());
+		Path file = tempDir.resolve("state.txt");
+
+		try {
+			Assertions.assertEquals(file, FileUtil.writeAtomic(file, "first".getBytes(StandardCharsets.UTF_8)));
+			Assertions.assertEquals("first", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+			FileUtil.writeAtomic(file, ByteBuffer.wrap("sec".getBytes(StandardCharsets.UTF_8)),
+					ByteBuffer.wrap("ond".getBytes(StandardCharsets.UTF_8)));
+			Assertions.assertEquals("second", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+			try (Stream<Path> files = Files.list(tempDir)) {
+				Assertions.assertEquals(1, files.count());
+			}
+			if (tempDir.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+				Assertions.assertEquals(PosixFilePermissions.fromString("rw-------"),
+						Files.getPosixFilePermissions(file));
+			}
+			Assertions.assertThrows(IOException.class,
+					() -> FileUtil.writeAtomic(tempDir.resolve("missing").resolve("state.txt"), new byte[0]));
+		} finally {
+			FileUtil.delete(tempDir);
+		}
+	}
+
 	@Test
 	void testSplitPath() {
 		Assertions.assertArrayEquals(new String[] { "/directory", "name", "ext" },
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.test.nio.file;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.carne.nio.file.FileChange;
+import de.carne.nio.file.FileChangeKind;
+import de.carne.nio.file.FileWatcher;
+
+/**
+ * Test {@linkplain FileWatcher} class.
+ */
+class FileWatcherTest {
+
+	private static final Duration TEST_WINDOW = Duration.ofMillis(250);
+	private static final Duration AWAIT_TIMEOUT = Duration.ofSeconds(10);
+
+	@Test
+	void testCoalescedChanges(@TempDir Path tempDir) throws IOException, InterruptedException {
+		BlockingQueue<List<FileChange>> batches = new LinkedBlockingQueue<>();
+		AtomicInteger executions = new AtomicInteger();
+		Path file = tempDir.resolve("test.properties");
+
+		try (FileWatcher watcher = new FileWatcher(tempDir).window(TEST_WINDOW).executor(command -> {
+			executions.incrementAndGet();
+			command.run();
+		}).start(batches::add)) {
+			Assertions.assertEquals(1, watcher.watchedDirectoryCount());
+			for (int round = 0; round < 10; round++) {
+				Files.write(file, ("round=" + round).getBytes(StandardCharsets.UTF_8));
+			}
+
+			Map<Path, Set<FileChangeKind>> changes = awaitChanges(batches, Map.of(file, FileChangeKind.CREATED));
+
+			Assertions.assertEquals(Set.of(file), changes.keySet());
+
+			Files.write(file, "round=final".getBytes(StandardCharsets.UTF_8));
+			awaitChanges(batches, Map.of(file, FileChangeKind.MODIFIED));
+			Files.delete(file);
+			awaitChanges(batches, Map.of(file, FileChangeKind.DELETED));
+			// Each awaited change requires at least one further batch dispatched via the executor
+			Assertions.assertTrue(executions.get() >= 3);
+		}
+	}
+
+	@Test
+	void testRecursiveChanges(@TempDir Path tempDir) throws IOException, InterruptedException {
+		BlockingQueue<List<FileChange>> batches = new LinkedBlockingQueue<>();
+		Path existingDir = Files.createDirectories(tempDir.resolve("existing"));
+
+		try (FileWatcher watcher = new FileWatcher(tempDir).window(TEST_WINDOW).start(batches::add)) {
+			Assertions.assertEquals(2, watcher.watchedDirectoryCount());
+
+			Path existingFile = Files.createFile(existingDir.resolve("file"));
+
+			awaitChanges(batches, Map.of(existingFile, FileChangeKind.CREATED));
+
+			Path newDir = Files.createDirectories(tempDir.resolve("new").resolve("sub"));
+			Path newFile = Files.createFile(newDir.resolve("file"));
+			awaitChanges(batches,
+					Map.of(newDir.getParent(), FileChangeKind.CREATED, newFile, FileChangeKind.CREATED));
+			Assertions.assertEquals(4, watcher.watchedDirectoryCount());
+
+			Files.write(newFile, "modified".getBytes(StandardCharsets.UTF_8));
+			awaitChanges(batches, Map.of(newFile, FileChangeKind.MODIFIED));
+		}
+		try (FileWatcher watcher = new FileWatcher(tempDir).recursive(false).start(batches::add)) {
+			Assertions.assertEquals(1, watcher.watchedDirectoryCount());
+		}
+	}
+
+	@Test
+	void testStartFailure(@TempDir Path tempDir) {
+		FileWatcher watcher = new FileWatcher(tempDir.resolve("missing"));
+
+		Assertions.assertThrows(IOException.class, () -> watcher.start(batch -> {
+			// Not reached
+		}));
+	}
+
+	// Collects the changes of however many batches it takes until all expected changes have been reported (the
+	// changes may be split across batches depending on the timing of the watch events)
+	private static Map<Path, Set<FileChangeKind>> awaitChanges(BlockingQueue<List<FileChange>> batches,
+			Map<Path, FileChangeKind> expected) throws InterruptedException {
+		Map<Path, Set<FileChangeKind>> changes = new HashMap<>();
+		long deadline = System.nanoTime() + AWAIT_TIMEOUT.toNanos();
+
+		while (!expected.entrySet().stream().allMatch(
+				entry -> changes.getOrDefault(entry.getKey(), Set.of()).contains(entry.getValue()))) {
+			List<FileChange> batch = batches.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+			Assertions.assertNotNull(batch, () -> "Missing changes " + expected + " (received " + changes + ")");
+
+			Set<Path> batchPaths = new HashSet<>();
+
+			for (FileChange change : Objects.requireNonNull(batch)) {
+				// Changes of the same path are always coalesced within a batch
+				Assertions.assertTrue(batchPaths.add(change.path()));
+				changes.computeIfAbsent(change.path(), path -> EnumSet.noneOf(FileChangeKind.class))
+						.add(change.kind());
+			}
+		}
+		return changes;
+	}
+
+}
@@ -19,8 +19,11 @@ package de.carne.test.nio.file.attribute;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.PosixFileAttributeView;
 import java.nio.file.attribute.PosixFilePermission;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -75,6 +78,26 @@ class FileAttributesTest {
 		}
 	}
 
+	@Test
+	void testCopy() throws IOException {
+		Path sourceFile = Files.createTempFile(FileUtil.tmpDir(), getClass().getName(), null,
+				FileAttributes.userFileDefault(FileUtil.tmpDir()));
+		Path targetFile = Files.createTempFile(FileUtil.tmpDir(), getClass().getName(), null);
+
+		try {
+			FileTime mtime = FileTime.from(Instant.now().minusSeconds(3600).truncatedTo(ChronoUnit.SECONDS));
+
+			Files.setLastModifiedTime(sourceFile, mtime);
+			FileAttributes.copy(sourceFile, targetFile);
+
+			Assertions.assertEquals(mtime, Files.getLastModifiedTime(targetFile));
+			checkFilePermissions(targetFile, USER_FILE_PERMISSIONS);
+		} finally {
+			Files.delete(sourceFile);
+			Files.delete(targetFile);
+		}
+	}
+
 	private void checkFilePermissions(Path path, Map<String, Object[]> expectedPermissionsMap) throws IOException {
 		Set<String> fileAttributeViews = path.getFileSystem().supportedFileAttributeViews();
 
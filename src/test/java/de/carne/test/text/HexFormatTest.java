@@ -16,6 +16,8 @@
  */
 package de.carne.test.text;
 
+import java.nio.ByteBuffer;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -33,6 +35,9 @@ class HexFormatTest {
 		Assertions.assertEquals("00", formatter.format((byte) 0x00));
 		Assertions.assertEquals("ff", formatter.format((byte) 0xff));
 		Assertions.assertEquals("00 80 ff", formatter.format(new byte[] { 0x00, (byte) 0x80, (byte) 0xff }));
+		Assertions.assertEquals("80 ff",
+				formatter.format(ByteBuffer.wrap(new byte[] { 0x00, (byte) 0x80, (byte) 0xff }, 1, 2)));
+		Assertions.assertEquals("00 80", formatter.format(ByteBuffer.allocateDirect(2).put(1, (byte) 0x80)));
 		Assertions.assertEquals("0000", formatter.format((short) 0x0000));
 		Assertions.assertEquals("ffff", formatter.format((short) 0xffff));
 		Assertions.assertEquals("00000000", formatter.format(0x00000000));
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.test.util;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.carne.util.ByteString;
+import de.carne.util.ByteStringMatcher;
+
+/**
+ * Test {@linkplain ByteStringMatcher} class.
+ */
+class ByteStringMatcherTest {
+
+	@Test
+	void testMatchers() {
+		Random random = new Random(42);
+		byte[] textBytes = new byte[4096];
+
+		// Small alphabet to provoke partial matches
+		for (int byteIndex = 0; byteIndex < textBytes.length; byteIndex++) {
+			textBytes[byteIndex] = (byte) (0x80 + random.nextInt(3));
+		}
+
+		ByteBuffer directBuffer = ByteBuffer.allocateDirect(textBytes.length);
+
+		directBuffer.put(textBytes).flip();
+
+		ByteString arrayText = ByteString.wrap(textBytes);
+		ByteString bufferText = ByteString.wrap(directBuffer);
+		ByteString ropeText = ByteString.concat(arrayText.slice(0, 1000), bufferText.slice(1000, 3),
+				arrayText.slice(1003, textBytes.length - 1003));
+
+		for (int patternLength : new int[] { 0, 1, 2, 3, 5, 8, 9, 12, 24 }) {
+			for (int patternIndex = 0; patternIndex < 20; patternIndex++) {
+				int patternStart = random.nextInt(textBytes.length - patternLength);
+				byte[] patternBytes = arrayText.slice(patternStart, patternLength).bytes();
+
+				if (patternIndex % 4 == 0 && patternLength > 0) {
+					// Make some patterns unlikely to match
+					patternBytes[patternLength / 2] = (byte) 0x7f;
+				}
+
+				ByteStringMatcher matcher = new ByteStringMatcher(ByteString.wrap(patternBytes));
+
+				for (ByteString text : new ByteString[] { arrayText, bufferText, ropeText }) {
+					for (int fromIndex : new int[] { -1, 0, 17, patternStart, textBytes.length - patternLength,
+							textBytes.length, textBytes.length + 1 }) {
+						Assertions.assertEquals(naiveIndexOf(textBytes, patternBytes, fromIndex),
+								matcher.indexIn(text, fromIndex));
+						Assertions.assertEquals(naiveLastIndexOf(textBytes, patternBytes, fromIndex),
+								matcher.lastIndexIn(text, fromIndex));
+					}
+					Assertions.assertEquals(naiveIndexOf(textBytes, patternBytes, 0), matcher.indexIn(text));
+					Assertions.assertEquals(naiveLastIndexOf(textBytes, patternBytes, textBytes.length),
+							matcher.lastIndexIn(text));
+				}
+			}
+		}
+	}
+
+	@Test
+	void testRepeatedSearch() {
+		ByteStringMatcher matcher = new ByteStringMatcher(ByteString.wrap("\r\n".getBytes()));
+		ByteString text = ByteString.wrap("line 1\r\nline 2\r\n\r\nline 4".getBytes());
+		int matchCount = 0;
+		int matchIndex = matcher.indexIn(text);
+
+		while (matchIndex >= 0) {
+			matchCount++;
+			matchIndex = matcher.indexIn(text, matchIndex + matcher.pattern().length());
+		}
+
+		Assertions.assertEquals(3, matchCount);
+		Assertions.assertEquals(16, matcher.lastIndexIn(text));
+		Assertions.assertEquals(14, matcher.lastIndexIn(text, 15));
+	}
+
+	private static int naiveIndexOf(byte[] text, byte[] pattern, int fromIndex) {
+		int index = -1;
+
+		for (int textIndex = Math.max(fromIndex, 0); index < 0
+				&& textIndex <= text.length - pattern.length; textIndex++) {
+			if (matchesAt(text, pattern, textIndex)) {
+				index = textIndex;
+			}
+		}
+		return (pattern.length == 0 ? Math.min(Math.max(fromIndex, 0), text.length) : index);
+	}
+
+	private static int naiveLastIndexOf(byte[] text, byte[] pattern, int fromIndex) {
+		int index = -1;
+
+		for (int textIndex = Math.min(fromIndex, text.length - pattern.length); index < 0
+				&& textIndex >= 0; textIndex--) {
+			if (matchesAt(text, pattern, textIndex)) {
+				index = textIndex;
+			}
+		}
+		return index;
+	}
+
+	private static boolean matchesAt(byte[] text, byte[] pattern, int textIndex) {
+		boolean matches = true;
+
+		for (int patternIndex = 0; matches && patternIndex < pattern.length; patternIndex++) {
+			matches = text[textIndex + patternIndex] == pattern[patternIndex];
+		}
+		return matches;
+	}
+
+}
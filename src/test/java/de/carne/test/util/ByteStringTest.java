@@ -16,12 +16,27 @@
  */
 package de.carne.test.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import de.carne.util.ByteString;
 
@@ -92,6 +107,37 @@ class ByteStringTest {
 		Assertions.assertEquals(TEST_BYTES_1[1], bs1.byteAt(1));
 	}
 
+	@Test
+	void testBufferWrapping() throws IOException {
+		ByteBuffer directBuffer = ByteBuffer.allocateDirect(TEST_BYTES_3.length);
+
+		directBuffer.put(TEST_BYTES_3);
+		directBuffer.flip();
+
+		ByteString bs3 = ByteString.wrap(directBuffer);
+		ByteString bs3Heap = ByteString.wrap(TEST_BYTES_3);
+
+		Assertions.assertSame(ByteString.EMPTY, ByteString.wrap(ByteBuffer.allocateDirect(0)));
+		Assertions.assertEquals(0, directBuffer.position());
+		Assertions.assertEquals(TEST_BYTES_3.length, bs3.length());
+		Assertions.assertArrayEquals(TEST_BYTES_3, bs3.bytes());
+		Assertions.assertEquals(bs3Heap, bs3);
+		Assertions.assertEquals(bs3, bs3Heap);
+		Assertions.assertEquals(bs3Heap.hashCode(), bs3.hashCode());
+		Assertions.assertEquals(bs3Heap.toString(), bs3.toString());
+		Assertions.assertEquals(ByteString.wrap(TEST_BYTES_3, 3, 5), bs3.slice(3, 5));
+		Assertions.assertTrue(bs3.slice(0, 2).compareTo(bs3Heap) < 0);
+		Assertions.assertTrue(bs3.compareTo(ByteString.wrap(TEST_BYTES_1)) > 0);
+		Assertions.assertTrue(bs3.asByteBuffer().isReadOnly());
+		Assertions.assertEquals(ByteString.copy(directBuffer), bs3);
+
+		try (ByteArrayOutputStream bs3Copy = new ByteArrayOutputStream()) {
+			bs3.write(bs3Copy);
+
+			Assertions.assertArrayEquals(TEST_BYTES_3, bs3Copy.toByteArray());
+		}
+	}
+
 	@Test
 	void testCopyTo() {
 		ByteString bs1 = ByteString.wrap(TEST_BYTES_1);
@@ -171,6 +217,254 @@ class ByteStringTest {
 		Assertions.assertNotEquals(bs2, bs3);
 	}
 
+	@Test
+	void testHashSpread() {
+		Set<Integer> hashes = new HashSet<>();
+		byte[] bytes = Arrays.copyOf(TEST_BYTES_3, TEST_BYTES_3.length);
+
+		for (int keyIndex = 0; keyIndex < 1000; keyIndex++) {
+			bytes[bytes.length - 2] = (byte) (keyIndex >>> 8);
+			bytes[bytes.length - 1] = (byte) keyIndex;
+
+			ByteString heapKey = ByteString.copy(bytes);
+			ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length);
+
+			directBuffer.put(bytes).flip();
+
+			ByteString directKey = ByteString.wrap(directBuffer);
+
+			Assertions.assertEquals(heapKey, directKey);
+			Assertions.assertEquals(heapKey.hashCode(), directKey.hashCode());
+			hashes.add(heapKey.hashCode());
+		}
+		Assertions.assertEquals(1000, hashes.size());
+	}
+
+	@Test
+	void testCompareConsistency() {
+		Random random = new Random(42);
+
+		for (int round = 0; round < 1000; round++) {
+			byte[] bytes1 = randomBytes(random);
+			byte[] bytes2 = (random.nextInt(4) == 0 ? Arrays.copyOf(bytes1, bytes1.length) : randomBytes(random));
+			int expected = Integer.signum(referenceCompare(bytes1, bytes2));
+
+			for (ByteString bs1 : variants(bytes1)) {
+				for (ByteString bs2 : variants(bytes2)) {
+					Assertions.assertEquals(expected, Integer.signum(bs1.compareTo(bs2)));
+					Assertions.assertEquals(expected == 0, bs1.equals(bs2));
+					if (expected == 0) {
+						Assertions.assertEquals(bs1.hashCode(), bs2.hashCode());
+					}
+				}
+			}
+		}
+	}
+
+	private static byte[] randomBytes(Random random) {
+		byte[] bytes = new byte[random.nextInt(8)];
+
+		for (int byteIndex = 0; byteIndex < bytes.length; byteIndex++) {
+			bytes[byteIndex] = (byte) (random.nextBoolean() ? 0x7f : 0x80 + random.nextInt(2));
+		}
+		return bytes;
+	}
+
+	private static ByteString[] variants(byte[] bytes) {
+		byte[] paddedBytes = new byte[bytes.length + 2];
+		ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length);
+
+		System.arraycopy(bytes, 0, paddedBytes, 1, bytes.length);
+		directBuffer.put(bytes).flip();
+		return new ByteString[] { ByteString.copy(bytes), ByteString.wrap(paddedBytes, 1, bytes.length),
+				ByteString.wrap(directBuffer) };
+	}
+
+	private static int referenceCompare(byte[] bytes1, byte[] bytes2) {
+		int compareLength = Math.min(bytes1.length, bytes2.length);
+		int comparison = 0;
+
+		for (int byteIndex = 0; byteIndex < compareLength && comparison == 0; byteIndex++) {
+			comparison = Integer.compare(Byte.toUnsignedInt(bytes1[byteIndex]), Byte.toUnsignedInt(bytes2[byteIndex]));
+		}
+		return (comparison != 0 ? comparison : Integer.compare(bytes1.length, bytes2.length));
+	}
+
+	@Test
+	void testConcat(@TempDir Path tempDir) throws IOException {
+		ByteString bs3 = ByteString.wrap(TEST_BYTES_3);
+		ByteBuffer directBuffer = ByteBuffer.allocateDirect(TEST_BYTES_3.length);
+
+		directBuffer.put(TEST_BYTES_3).flip();
+
+		ByteString concatenated = ByteString.concat(bs3.slice(0, 2), ByteString.EMPTY,
+				ByteString.wrap(directBuffer).slice(2, 5), bs3.slice(7, 3).concat(bs3.slice(10, 7)));
+
+		Assertions.assertSame(ByteString.EMPTY, ByteString.concat());
+		Assertions.assertSame(bs3, ByteString.concat(ByteString.EMPTY, bs3));
+		Assertions.assertEquals(TEST_BYTES_3.length, concatenated.length());
+		Assertions.assertEquals(4, concatenated.asByteBuffers().length);
+		for (int byteIndex = 0; byteIndex < TEST_BYTES_3.length; byteIndex++) {
+			Assertions.assertEquals(TEST_BYTES_3[byteIndex], concatenated.byteAt(byteIndex));
+		}
+		Assertions.assertThrows(IllegalArgumentException.class, () -> concatenated.byteAt(TEST_BYTES_3.length));
+		for (int sliceStart = 0; sliceStart < TEST_BYTES_3.length; sliceStart++) {
+			for (int sliceLength = 0; sliceStart + sliceLength <= TEST_BYTES_3.length; sliceLength++) {
+				ByteString slice = concatenated.slice(sliceStart, sliceLength);
+
+				Assertions.assertEquals(bs3.slice(sliceStart, sliceLength), slice);
+				Assertions.assertArrayEquals(Arrays.copyOfRange(TEST_BYTES_3, sliceStart, sliceStart + sliceLength),
+						slice.bytes());
+			}
+		}
+		Assertions.assertEquals(bs3, concatenated);
+		Assertions.assertEquals(concatenated, bs3);
+		Assertions.assertEquals(bs3.hashCode(), concatenated.hashCode());
+		Assertions.assertEquals(0, concatenated.compareTo(bs3));
+		Assertions.assertTrue(concatenated.compareTo(ByteString.wrap(TEST_BYTES_2)) > 0);
+		Assertions.assertTrue(concatenated.slice(0, 2).compareTo(bs3) < 0);
+		Assertions.assertEquals(0, bs3.compareTo(concatenated.slice(0, 16).concat(ByteString.wrap((byte) 0xff))));
+		Assertions.assertTrue(bs3.compareTo(concatenated.slice(0, 16).concat(ByteString.wrap((byte) 0x00))) > 0);
+		Assertions.assertEquals(bs3.toString(), concatenated.toString());
+		Assertions.assertEquals(bs3, ByteString.wrap(concatenated.asByteBuffer()));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		concatenated.write(out);
+		Assertions.assertArrayEquals(TEST_BYTES_3, out.toByteArray());
+
+		Path file = tempDir.resolve("concat.bin");
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			concatenated.write(channel);
+		}
+		Assertions.assertArrayEquals(TEST_BYTES_3, Files.readAllBytes(file));
+	}
+
+	@Test
+	void testRepeatedConcat() {
+		int pieceCount = 100000;
+		byte[] expected = new byte[pieceCount];
+
+		for (int pieceIndex = 0; pieceIndex < pieceCount; pieceIndex++) {
+			expected[pieceIndex] = (byte) pieceIndex;
+		}
+
+		// Appending and prepending single pieces must neither copy the segments nor degrade the random access
+		ByteString concatenated = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			ByteString head = ByteString.EMPTY;
+			ByteString tail = ByteString.EMPTY;
+			int middle = pieceCount / 2;
+
+			for (int pieceIndex = 0; pieceIndex < middle; pieceIndex++) {
+				head = ByteString.wrap(expected, middle - 1 - pieceIndex, 1).concat(head);
+				tail = tail.concat(ByteString.wrap(expected, middle + pieceIndex, 1));
+			}
+			return head.concat(tail);
+		});
+
+		Assertions.assertEquals(pieceCount, concatenated.length());
+		Assertions.assertEquals(pieceCount, concatenated.asByteBuffers().length);
+		Assertions.assertArrayEquals(expected, concatenated.bytes());
+		for (int byteIndex = 0; byteIndex < pieceCount; byteIndex += 7) {
+			Assertions.assertEquals(expected[byteIndex], concatenated.byteAt(byteIndex));
+		}
+		Assertions.assertEquals(ByteString.wrap(expected, 12345, 54321), concatenated.slice(12345, 54321));
+		Assertions.assertEquals(ByteString.wrap(expected), concatenated);
+	}
+
+	@Test
+	void testSearch() {
+		ByteString bs3 = ByteString.wrap(TEST_BYTES_3);
+		ByteString rope = ByteString.concat(bs3.slice(0, 5), bs3.slice(5, 5), bs3.slice(10, 7));
+
+		for (ByteString bs : new ByteString[] { bs3, rope }) {
+			Assertions.assertEquals(0, bs.indexOf((byte) 0x01));
+			Assertions.assertEquals(1, bs.indexOf((byte) 0x01, 1));
+			Assertions.assertEquals(-1, bs.indexOf((byte) 0x01, 2));
+			Assertions.assertEquals(12, bs.indexOf((byte) 0x89, -1));
+			Assertions.assertEquals(16, bs.indexOf((byte) 0xff));
+			Assertions.assertEquals(-1, bs.indexOf((byte) 0x00));
+			Assertions.assertEquals(1, bs.lastIndexOf((byte) 0x01));
+			Assertions.assertEquals(0, bs.lastIndexOf((byte) 0x01, 0));
+			Assertions.assertEquals(-1, bs.lastIndexOf((byte) 0x01, -1));
+			Assertions.assertEquals(12, bs.lastIndexOf((byte) 0x89, 100));
+			Assertions.assertEquals(5, bs.indexOf(bs3.slice(5, 7)));
+			Assertions.assertEquals(1, bs.indexOf(ByteString.wrap((byte) 0x01, (byte) 0x7f)));
+			Assertions.assertEquals(-1, bs.indexOf(ByteString.wrap((byte) 0x01, (byte) 0x80)));
+			Assertions.assertEquals(0, bs.lastIndexOf(ByteString.wrap((byte) 0x01, (byte) 0x01)));
+			Assertions.assertEquals(17, bs.indexOf(ByteString.EMPTY, 20));
+			Assertions.assertTrue(bs.startsWith(bs3.slice(0, 10)));
+			Assertions.assertTrue(bs.startsWith(ByteString.EMPTY));
+			Assertions.assertFalse(bs.startsWith(bs3.slice(1, 10)));
+			Assertions.assertTrue(bs.endsWith(bs3.slice(7, 10)));
+			Assertions.assertTrue(bs.endsWith(bs));
+			Assertions.assertFalse(bs.endsWith(bs3.slice(6, 10)));
+			Assertions.assertFalse(bs.endsWith(bs.concat(bs)));
+		}
+	}
+
+	@Test
+	void testSerialization() throws IOException, ClassNotFoundException {
+		byte[] largeBytes = new byte[1024 * 1024];
+		ByteBuffer largeBuffer = ByteBuffer.allocateDirect(largeBytes.length);
+
+		System.arraycopy(TEST_BYTES_3, 0, largeBytes, 4096, TEST_BYTES_3.length);
+		largeBuffer.put(largeBytes).flip();
+
+		ByteString bs3 = ByteString.wrap(TEST_BYTES_3);
+		ByteString arraySlice = ByteString.wrap(largeBytes).slice(4096, TEST_BYTES_3.length);
+		ByteString bufferSlice = ByteString.wrap(largeBuffer).slice(4096, TEST_BYTES_3.length);
+		byte[] serializedArraySlice = serialize(arraySlice);
+		byte[] serializedBufferSlice = serialize(bufferSlice);
+
+		Assertions.assertTrue(serializedArraySlice.length < 1024);
+		Assertions.assertTrue(serializedBufferSlice.length < 1024);
+		Assertions.assertEquals(serialize(bs3).length, serializedArraySlice.length);
+		Assertions.assertEquals(bs3, deserialize(serializedArraySlice));
+		Assertions.assertEquals(bs3, deserialize(serializedBufferSlice));
+		ByteString rope = arraySlice.concat(bufferSlice);
+
+		Assertions.assertEquals(bs3, deserialize(serialize(rope.slice(0, TEST_BYTES_3.length))));
+		Assertions.assertEquals(bs3.concat(bs3), deserialize(serialize(rope)));
+		Assertions.assertSame(ByteString.EMPTY, deserialize(serialize(ByteString.EMPTY)));
+	}
+
+	@Test
+	void testBaselineDeserialization() throws IOException, ClassNotFoundException {
+		byte[] baselineBytes = new byte[] { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07 };
+
+		// Stream written by the original array based implementation (full string, view and empty string)
+		try (InputStream serialStream = Objects
+				.requireNonNull(getClass().getResourceAsStream(getClass().getSimpleName() + ".ser"));
+				ObjectInputStream in = new ObjectInputStream(serialStream)) {
+			ByteString bs = (ByteString) in.readObject();
+			ByteString view = (ByteString) in.readObject();
+			ByteString empty = (ByteString) in.readObject();
+
+			Assertions.assertEquals(ByteString.wrap(baselineBytes), bs);
+			Assertions.assertEquals(ByteString.wrap(baselineBytes, 2, 4), view);
+			Assertions.assertEquals(ByteString.wrap(baselineBytes).hashCode(), bs.hashCode());
+			Assertions.assertSame(ByteString.EMPTY, empty);
+			Assertions.assertEquals(bs, deserialize(serialize(bs)));
+		}
+	}
+
+	private static byte[] serialize(ByteString bs) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(bs);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static ByteString deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return (ByteString) in.readObject();
+		}
+	}
+
 	@Test
 	void testToString() {
 		ByteString bs2 = ByteString.wrap(TEST_BYTES_2);
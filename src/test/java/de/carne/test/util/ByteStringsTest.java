@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016-2021 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.test.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.carne.util.ByteString;
+import de.carne.util.ByteStrings;
+
+/**
+ * Test {@linkplain ByteStrings} class.
+ */
+class ByteStringsTest {
+
+	@Test
+	void testDataCodec() throws IOException {
+		List<ByteString> byteStrings = testByteStrings();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			ByteStrings.writeAll(out, byteStrings);
+			ByteStrings.write(out, byteStrings.get(1));
+		}
+
+		byte[] encoded = bytes.toByteArray();
+
+		Assertions.assertEquals(ByteStrings.encodedLength(byteStrings) + ByteStrings.encodedLength(byteStrings.get(1)),
+				encoded.length);
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+			Assertions.assertEquals(byteStrings, ByteStrings.readAll(in));
+			Assertions.assertEquals(byteStrings.get(1), ByteStrings.read(in));
+			Assertions.assertThrows(EOFException.class, () -> ByteStrings.read(in));
+		}
+	}
+
+	@Test
+	void testBufferCodec() {
+		List<ByteString> byteStrings = testByteStrings();
+		ByteBuffer buffer = ByteBuffer.allocate((int) ByteStrings.encodedLength(byteStrings));
+
+		ByteStrings.writeAll(buffer, byteStrings);
+		Assertions.assertFalse(buffer.hasRemaining());
+		buffer.flip();
+		Assertions.assertEquals(byteStrings, ByteStrings.readAll(buffer));
+		Assertions.assertFalse(buffer.hasRemaining());
+		Assertions.assertThrows(BufferUnderflowException.class, () -> ByteStrings.read(buffer));
+	}
+
+	@Test
+	void testBufferCodecSegments() {
+		ByteString rope = ByteString.concat(testByteStrings().toArray(new ByteString[0]));
+		ByteBuffer buffer = ByteBuffer.allocate(ByteStrings.encodedLength(rope));
+
+		Assertions.assertThrows(BufferOverflowException.class,
+				() -> ByteStrings.write(ByteBuffer.allocate(buffer.capacity() - 1), rope));
+		ByteStrings.write(buffer, rope);
+		Assertions.assertFalse(buffer.hasRemaining());
+		buffer.flip();
+		Assertions.assertEquals(rope, ByteStrings.read(buffer));
+	}
+
+	@Test
+	void testMalformedInput() {
+		byte[] truncated = new byte[] { 0x05, 0x01, 0x02 };
+		byte[] overlong = new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0x7f };
+		byte[] oversized = new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0x07, 0x01, 0x02 };
+
+		Assertions.assertThrows(BufferUnderflowException.class, () -> ByteStrings.read(ByteBuffer.wrap(truncated)));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> ByteStrings.read(ByteBuffer.wrap(overlong)));
+		Assertions.assertThrows(EOFException.class,
+				() -> ByteStrings.read(new DataInputStream(new ByteArrayInputStream(truncated))));
+		Assertions.assertThrows(StreamCorruptedException.class,
+				() -> ByteStrings.read(new DataInputStream(new ByteArrayInputStream(overlong))));
+		// Must fail on the missing bytes (not by allocating the announced length upfront)
+		Assertions.assertThrows(EOFException.class,
+				() -> ByteStrings.read(new DataInputStream(new ByteArrayInputStream(oversized))));
+	}
+
+	private static List<ByteString> testByteStrings() {
+		Random random = new Random(42);
+		List<ByteString> byteStrings = new ArrayList<>();
+
+		for (int length : new int[] { 0, 1, 127, 128, 16383, 16384, 100000 }) {
+			byte[] bytes = new byte[length + 2];
+
+			random.nextBytes(bytes);
+			byteStrings.add(ByteString.wrap(bytes, 1, length));
+
+			ByteBuffer directBuffer = ByteBuffer.allocateDirect(length);
+
+			directBuffer.put(Arrays.copyOfRange(bytes, 1, length + 1)).flip();
+			byteStrings.add(ByteString.wrap(directBuffer));
+		}
+		return byteStrings;
+	}
+
+}
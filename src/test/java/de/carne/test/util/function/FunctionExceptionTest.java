@@ -17,6 +17,7 @@
 package de.carne.test.util.function;
 
 import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.util.Arrays;
 
 import org.junit.jupiter.api.Assertions;
@@ -46,4 +47,15 @@ class FunctionExceptionTest {
 		});
 	}
 
+	@Test
+	void testRethrowEither() {
+		Assertions.assertThrows(IOException.class, () -> {
+			throw new FunctionException(new IOException()).rethrow(IOException.class, GeneralSecurityException.class);
+		});
+		Assertions.assertThrows(GeneralSecurityException.class, () -> {
+			throw new FunctionException(new GeneralSecurityException()).rethrow(IOException.class,
+					GeneralSecurityException.class);
+		});
+	}
+
 }